@@ -0,0 +1,89 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.headless.EnemyTurnCheck;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.CharacterStats;
+import com.monstrous.dungeon.populus.GameObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Turns on a large level crowded with enemies, with the enemies far from the rogue asleep (see ActivityZones)
+ * or, with an activeRoomDistance of -1, all of them awake.
+ *
+ * stay: the rogue stays in its room, so the zone doesn't change.
+ * walkRooms: the rogue jumps to the next room every turn, so every turn enemies are parked and woken up and caught up.
+ * Hit points of all enemies and the rogue are restored after every turn so that nobody dies, the enemies fight
+ * each other as well. That costs the same for every activeRoomDistance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ActivityZonesBenchmark {
+
+    @Param({"1000", "10000"})
+    public int enemies;
+
+    @Param({"-1", "1", "2"})
+    public int activeRoomDistance;
+
+    @Param({"40"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private World world;
+    private int savedDistance;
+    private int room;
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        savedDistance = Settings.activeRoomDistance;
+        Settings.activeRoomDistance = activeRoomDistance;
+        Settings.parallelEnemyTurns = false;
+        world = BenchmarkSupport.createWorld(seed, level);
+        world.events.enabled = false;
+        room = 0;
+        moveRogue();
+        world.levelData.gameObjects.setOccupant(world.rogue.x, world.rogue.y, world.rogue);    // keep the rogue's tile free
+        EnemyTurnCheck.addEnemies(world, enemies);
+        world.levelData.gameObjects.removeOccupant(world.rogue);
+    }
+
+    @Benchmark
+    public long stay(){
+        world.player.endTurn();
+        for(GameObject enemy : world.enemies.enemies)
+            enemy.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        world.rogue.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        world.rogue.stats.food = CharacterStats.MAX_FOOD;
+        return world.scheduler.now;
+    }
+
+    @Benchmark
+    public long walkRooms(){
+        moveRogue();
+        return stay();
+    }
+
+    // put the rogue in the centre of the next room, on top of any enemy there: enemies fill all floor tiles on a crowded level
+    private void moveRogue(){
+        Room next = world.map.rooms.get(room);
+        room = (room + 1) % world.map.rooms.size;
+        world.rogue.x = next.centre.x;
+        world.rogue.y = next.centre.y;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(){
+        world.dispose();
+        Settings.activeRoomDistance = savedDistance;
+        Settings.parallelEnemyTurns = true;
+    }
+}
@@ -0,0 +1,58 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.MessageBox;
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.headless.HeadlessSupport;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+
+
+
+/** Shared set-up for the benchmarks: a headless libGDX application (for Gdx.app and Gdx.audio) that only logs errors
+ * and no background level generation. */
+public class BenchmarkSupport {
+
+    private static boolean initialized = false;
+
+    public static synchronized void init(){
+        if(initialized)
+            return;
+        initialized = true;
+
+        HeadlessSupport.init();
+
+        Settings.preGenerateLevels = false;
+        new GameObjectTypes();
+        MessageBox.clear();
+    }
+
+    /** create a world and take the stairs down to the given level */
+    public static World createWorld(int seed, int level){
+        init();
+        World world = new World();
+        if(world.seed != seed) {
+            world.seed = seed;
+            world.restart(true);
+        }
+        for(int i = 0; i < level; i++)
+            world.levelDown();
+        MessageBox.clear();
+        return world;
+    }
+
+    /** stairs leading down into the given level, obtained by generating all levels above it */
+    public static Array<Room> getStairsFromAbove(int seed, int level){
+        Array<Room> stairsFromAbove = new Array<>();
+        for(int i = 0; i < level; i++){
+            Array<Room> stairsToBelow = new Array<>();
+            DungeonMap map = new DungeonMap(seed, i, World.MAP_WIDTH + World.DELTA_WIDTH*i, World.MAP_HEIGHT + World.DELTA_HEIGHT*i,
+                stairsFromAbove, stairsToBelow);
+            map.dispose();
+            stairsFromAbove = stairsToBelow;
+        }
+        return stairsFromAbove;
+    }
+}
@@ -0,0 +1,67 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.headless.HeadlessDungeonScenes;
+import com.monstrous.dungeon.map.FogOfWar;
+import com.monstrous.dungeon.map.TileType;
+import com.monstrous.dungeon.render.DungeonScenes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Uncovering corridor segments as the rogue walks through them: the field of view and fog of war update of
+ * Player.discoverMap() and the scenes picking up the revealed tiles, with the scene updates stubbed out.
+ * Each call visits the next corridor tile of the level after marking its 3x3 neighbourhood as unseen,
+ * so every call does the full amount of work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CorridorVisitBenchmark {
+
+    @Param({"0", "10"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private World world;
+    private DungeonScenes scenes;
+    private IntArray corridorTiles;     // x,y pairs
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        world = BenchmarkSupport.createWorld(seed, level);
+        scenes = new HeadlessDungeonScenes();
+        corridorTiles = new IntArray();
+        for(int y = 1; y < world.map.mapHeight-1; y++)
+            for(int x = 1; x < world.map.mapWidth-1; x++)
+                if(world.map.getGrid(x,y) == TileType.CORRIDOR)
+                    corridorTiles.add(x, y);
+    }
+
+    @Benchmark
+    public boolean visitCorridorSegment(){
+        int x = corridorTiles.get(index);
+        int y = corridorTiles.get(index+1);
+        index = (index + 2) % corridorTiles.size;
+
+        FogOfWar fog = world.levelData.fog;
+        for(int dy = -1; dy <= 1; dy++)
+            for(int dx = -1; dx <= 1; dx++)
+                fog.setTileSeen(x+dx, y+dy, false);
+        world.player.discoverMap(x, y);
+        scenes.showRevealed(world);
+        return fog.isTileSeen(x, y);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        world.dispose();
+    }
+}
@@ -0,0 +1,75 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.DistanceField;
+import com.monstrous.dungeon.map.Direction;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.TileType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** The distance field the enemies use to find the rogue: computing it for a new rogue position
+ * (once per turn in which the rogue moved) and looking up the best step for one enemy.
+ * The target moves over all corridor and room tiles in turn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DistanceFieldBenchmark {
+
+    @Param({"0", "20", "40"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private DungeonMap map;
+    private DistanceField field;
+    private IntArray floorTiles;     // x,y pairs
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        BenchmarkSupport.init();
+        map = new DungeonMap(seed, level, World.MAP_WIDTH + World.DELTA_WIDTH*level, World.MAP_HEIGHT + World.DELTA_HEIGHT*level,
+            BenchmarkSupport.getStairsFromAbove(seed, level), new Array<>());
+        field = new DistanceField();
+        floorTiles = new IntArray();
+        for(int y = 0; y < map.mapHeight; y++)
+            for(int x = 0; x < map.mapWidth; x++)
+                if(TileType.hasFloor(map.getGrid(x, y)))
+                    floorTiles.add(x, y);
+    }
+
+    /** new field for the next rogue position */
+    @Benchmark
+    public int update(){
+        int x = floorTiles.get(index);
+        int y = floorTiles.get(index+1);
+        index = (index + 2) % floorTiles.size;
+        field.update(map, x, y, World.CHASE_DISTANCE);
+        return field.getReachedCount();
+    }
+
+    /** one enemy finding its step, from every floor tile in turn */
+    @Benchmark
+    public Direction bestStep(){
+        if(index == 0)
+            field.update(map, floorTiles.get(0), floorTiles.get(1), World.CHASE_DISTANCE);
+        int x = floorTiles.get(index);
+        int y = floorTiles.get(index+1);
+        index = (index + 2) % floorTiles.size;
+        return field.bestStep(x, y);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        map.dispose();
+    }
+}
@@ -0,0 +1,42 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.Room;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Map generation (rooms, spanning tree, corridors) at several depths. Deeper levels have larger maps. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DungeonMapBenchmark {
+
+    @Param({"0", "5", "10", "20", "40"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private Array<Room> stairsFromAbove;
+    private int width, height;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        BenchmarkSupport.init();
+        stairsFromAbove = BenchmarkSupport.getStairsFromAbove(seed, level);
+        width = World.MAP_WIDTH + World.DELTA_WIDTH*level;
+        height = World.MAP_HEIGHT + World.DELTA_HEIGHT*level;
+    }
+
+    @Benchmark
+    public DungeonMap generateMap(){
+        // the constructor doesn't modify stairsFromAbove, so it can be reused
+        return new DungeonMap(seed, level, width, height, stairsFromAbove, new Array<>());
+    }
+}
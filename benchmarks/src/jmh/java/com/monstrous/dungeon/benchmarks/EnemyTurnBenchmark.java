@@ -0,0 +1,67 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.populus.CharacterStats;
+import com.monstrous.dungeon.populus.GameObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Enemy AI and combat.
+ * The world is rebuilt for every iteration and hit points are restored after every turn,
+ * otherwise the enemies kill each other off and the level empties out during the measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EnemyTurnBenchmark {
+
+    @Param({"1", "6", "12"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private World world;
+    private GameObject attacker;
+    private GameObject defender;
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        world = BenchmarkSupport.createWorld(seed, level);
+        if(world.enemies.enemies.size < 2)
+            throw new IllegalStateException("Need at least two enemies on level "+level);
+        attacker = world.enemies.enemies.get(0);
+        defender = world.enemies.enemies.get(1);
+    }
+
+    /** one turn for all enemies on the level */
+    @Benchmark
+    public int enemiesStep(){
+        world.enemies.step(world);
+        for(GameObject enemy : world.enemies.enemies)
+            enemy.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        world.rogue.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        world.events.clear();      // the game plays these back on the scenes
+        return world.enemies.enemies.size;
+    }
+
+    /** one attack of one enemy on another. Hit points are restored so that nobody dies. */
+    @Benchmark
+    public int fight(){
+        attacker.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        defender.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        attacker.attackedBy = defender;
+        attacker.defend(world);      // retaliates against attackedBy
+        world.events.clear();      // the game plays these back on the scenes
+        return defender.stats.hitPoints;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(){
+        world.dispose();
+    }
+}
@@ -0,0 +1,60 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.headless.EnemyTurnCheck;
+import com.monstrous.dungeon.populus.CharacterStats;
+import com.monstrous.dungeon.populus.GameObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** One turn of all enemies on a large level crowded with extra enemies, with and without parallel decisions.
+ * As in EnemyTurnBenchmark, hit points are restored after every turn so that the level doesn't empty out.
+ * The parallel variant uses a worker thread per available processor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EnemyTurnScalingBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int enemies;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    @Param({"40"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private World world;
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        world = BenchmarkSupport.createWorld(seed, level);
+        EnemyTurnCheck.addEnemies(world, enemies);
+        Settings.parallelEnemyTurns = parallel;
+    }
+
+    @Benchmark
+    public int enemiesStep(){
+        world.enemies.step(world);
+        for(GameObject enemy : world.enemies.enemies)
+            enemy.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        world.rogue.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        world.events.clear();      // the game plays these back on the scenes
+        return world.enemies.enemies.size;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(){
+        world.dispose();
+        Settings.parallelEnemyTurns = true;
+    }
+}
@@ -0,0 +1,64 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.FieldOfView;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Field of view computations per second, from every floor tile of the map in turn.
+ * Radius 6 is the view distance of the game (World.VIEW_RADIUS), the large radius is the worst case, e.g. for throwing.
+ * Level 40 is about the largest map a game gets to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FieldOfViewBenchmark {
+
+    @Param({"0", "20", "40"})
+    public int level;
+
+    @Param({"6", "50"})
+    public int radius;
+
+    @Param({"1234"})
+    public int seed;
+
+    private DungeonMap map;
+    private FieldOfView fov;
+    private IntArray origins;       // x,y pairs
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        BenchmarkSupport.init();
+        map = new DungeonMap(seed, level, World.MAP_WIDTH + World.DELTA_WIDTH*level, World.MAP_HEIGHT + World.DELTA_HEIGHT*level,
+            BenchmarkSupport.getStairsFromAbove(seed, level), new Array<>());
+        fov = new FieldOfView();
+        origins = new IntArray();
+        for(int y = 0; y < map.mapHeight; y++)
+            for(int x = 0; x < map.mapWidth; x++)
+                if(!FieldOfView.blocksView(map.getGrid(x, y)))
+                    origins.add(x, y);
+    }
+
+    @Benchmark
+    public boolean compute(){
+        int x = origins.get(index);
+        int y = origins.get(index+1);
+        index = (index + 2) % origins.size;
+        fov.compute(map, x, y, radius);
+        return fov.isVisible(x, y+1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        map.dispose();
+    }
+}
@@ -0,0 +1,72 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.GameObjects;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Spatial index of the game objects: room and area queries, moving an object and removing/re-adding one. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GameObjectsBenchmark {
+
+    @Param({"2", "12"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private World world;
+    private GameObjects gameObjects;
+    private final Array<GameObject> out = new Array<>();
+    private int roomIndex;
+    private int objectIndex;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        world = BenchmarkSupport.createWorld(seed, level);
+        gameObjects = world.levelData.gameObjects;
+    }
+
+    /** what is in the next room, as when a room is revealed */
+    @Benchmark
+    public int roomQuery(){
+        Room room = world.map.rooms.get(roomIndex);
+        roomIndex = (roomIndex + 1) % world.map.rooms.size;
+        out.clear();
+        return gameObjects.getOccupantsInRoom(room.id, out).size;
+    }
+
+    /** what is within 3 tiles of the rogue */
+    @Benchmark
+    public int radiusQuery(){
+        out.clear();
+        return gameObjects.getOccupantsInRadius(world.rogue.x, world.rogue.y, 3, out).size;
+    }
+
+    /** take an object out of the set and put it back (on the same tile) */
+    @Benchmark
+    public int removeAndAdd(){
+        GameObject go = gameObjects.gameObjects.get(objectIndex);
+        objectIndex = (objectIndex + 1) % gameObjects.gameObjects.size;
+        boolean placed = gameObjects.isOccupant(go);
+        gameObjects.remove(go);
+        gameObjects.add(go);
+        if(placed)
+            gameObjects.setOccupant(go.x, go.y, go);
+        return gameObjects.gameObjects.size;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        world.dispose();
+    }
+}
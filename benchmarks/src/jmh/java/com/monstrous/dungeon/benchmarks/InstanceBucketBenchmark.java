@@ -0,0 +1,65 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.render.InstanceBucket;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Removing a dynamic instance from the scene and adding it again, as when an enemy walks into and out of the fog.
+ * Compares the handle based bucket of the scene manager with a linear search in an Array (the old way). */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InstanceBucketBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int instances;
+
+    private InstanceBucket bucket;
+    private int[] handles;
+    private Array<ModelInstance> array;
+    private ModelInstance[] all;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        Model model = new Model();      // no meshes needed
+        bucket = new InstanceBucket();
+        array = new Array<>();
+        all = new ModelInstance[instances];
+        handles = new int[instances];
+        for(int i = 0; i < instances; i++){
+            all[i] = new ModelInstance(model);
+            handles[i] = bucket.add(all[i]);
+            array.add(all[i]);
+        }
+    }
+
+    // visit the instances in a scattered order, so they are not always near the end of the array
+    private int nextIndex(){
+        next = (next + 7919) % instances;
+        return next;
+    }
+
+    @Benchmark
+    public int bucketRemoveAndAdd(){
+        int i = nextIndex();
+        bucket.remove(handles[i]);
+        handles[i] = bucket.add(all[i]);
+        return bucket.size();
+    }
+
+    @Benchmark
+    public int arrayRemoveAndAdd(){
+        int i = nextIndex();
+        array.removeValue(all[i], true);
+        array.add(all[i]);
+        return array.size;
+    }
+}
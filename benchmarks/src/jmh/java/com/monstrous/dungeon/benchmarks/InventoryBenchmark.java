@@ -0,0 +1,61 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+import com.monstrous.dungeon.populus.Inventory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Adding and removing items on a partly filled inventory, for countable (gold, arrows) and unique items. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InventoryBenchmark {
+
+    private Inventory inventory;
+    private GameObject gold;
+    private GameObject arrow;
+    private GameObject knife;
+    private int arrowSlot;
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        BenchmarkSupport.init();
+        inventory = new Inventory(10);
+        inventory.addItem(new GameObject(GameObjectTypes.food, 1));
+        inventory.addItem(new GameObject(GameObjectTypes.shield1, 1));
+        inventory.addItem(new GameObject(GameObjectTypes.bottle_A_brown, 1));
+        inventory.addItem(new GameObject(GameObjectTypes.spellBookClosed, 1));
+        inventory.addItem(new GameObject(GameObjectTypes.gold, 10));
+        inventory.addItem(new GameObject(GameObjectTypes.arrow, 1));
+        inventory.addItem(new GameObject(GameObjectTypes.arrow, 1));     // makes a bundle of arrows
+        arrowSlot = 5;
+        gold = new GameObject(GameObjectTypes.gold, 5);
+        arrow = new GameObject(GameObjectTypes.arrow, 1);
+        knife = new GameObject(GameObjectTypes.knife, 1);
+    }
+
+    /** add to an existing pile and take one out again */
+    @Benchmark
+    public GameObject addRemoveCountable(){
+        inventory.addItem(arrow);
+        return inventory.removeItem(arrowSlot);
+    }
+
+    /** add to a new slot and take it out again */
+    @Benchmark
+    public GameObject addRemoveUnique(){
+        inventory.addItem(knife);
+        return inventory.removeItem(knife);
+    }
+
+    @Benchmark
+    public int addAndRemoveGold(){
+        inventory.addItem(gold);
+        return inventory.removeGold();
+    }
+}
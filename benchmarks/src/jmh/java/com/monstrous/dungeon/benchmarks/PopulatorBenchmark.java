@@ -0,0 +1,46 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.populus.Enemies;
+import com.monstrous.dungeon.populus.GameObjects;
+import com.monstrous.dungeon.populus.Populator;
+import com.monstrous.dungeon.rng.RandomStreams;
+import com.monstrous.dungeon.rng.Subsystem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Placing the enemies on a freshly generated level. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PopulatorBenchmark {
+
+    @Param({"0", "5", "10", "20"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private DungeonMap map;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        BenchmarkSupport.init();
+        map = new DungeonMap(seed, level, World.MAP_WIDTH + World.DELTA_WIDTH*level, World.MAP_HEIGHT + World.DELTA_HEIGHT*level,
+            BenchmarkSupport.getStairsFromAbove(seed, level), new Array<>());
+    }
+
+    @Benchmark
+    public Enemies distributeEnemies(){
+        GameObjects gameObjects = new GameObjects(map);
+        Enemies enemies = new Enemies();
+        Populator.distributeEnemies(map, level, gameObjects, enemies, RandomStreams.get(seed, level, Subsystem.ENEMIES));
+        return enemies;
+    }
+}
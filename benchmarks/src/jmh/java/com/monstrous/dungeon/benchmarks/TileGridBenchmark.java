@@ -0,0 +1,88 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** Full map scans over the packed TileGrid compared to the three grids of row arrays that DungeonMap used before.
+ * Both scans read type, orientation and room id per tile, as showRoom() and the corridor logic do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TileGridBenchmark {
+
+    @Param({"10", "40", "100"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private TileGrid tiles;
+
+    // the previous layout, filled from the same map
+    private TileType[][] grid;
+    private Direction[][] tileOrientation;
+    private int[][] roomCode;
+
+    @Setup(Level.Trial)
+    public void setup(){
+        BenchmarkSupport.init();
+        DungeonMap map = new DungeonMap(seed, level, World.MAP_WIDTH + World.DELTA_WIDTH*level, World.MAP_HEIGHT + World.DELTA_HEIGHT*level,
+            BenchmarkSupport.getStairsFromAbove(seed, level), new Array<>());
+        map.addCorridorWalls();
+        tiles = map.getTiles();
+
+        grid = new TileType[map.mapHeight][map.mapWidth];
+        tileOrientation = new Direction[map.mapHeight][map.mapWidth];
+        roomCode = new int[map.mapHeight][map.mapWidth];
+        for(int y = 0; y < map.mapHeight; y++) {
+            for (int x = 0; x < map.mapWidth; x++) {
+                grid[y][x] = map.getGrid(x, y);
+                tileOrientation[y][x] = map.getOrientation(x, y);
+                roomCode[y][x] = map.getRoomCode(x, y);
+            }
+        }
+    }
+
+    /** column by column, as the old scans did */
+    @Benchmark
+    public int scanArrays(){
+        int sum = 0;
+        for(int x = 0; x < tiles.width; x++) {
+            for (int y = 0; y < tiles.height; y++) {
+                if (TileType.hasFloor(grid[y][x]))
+                    sum += tileOrientation[y][x].ordinal() + roomCode[y][x];
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int scanPacked(){
+        int sum = 0;
+        int n = tiles.size();
+        for(int i = 0; i < n; i++) {
+            int cell = tiles.getCell(i);
+            if (TileType.hasFloor(TileGrid.typeOf(cell)))
+                sum += TileGrid.orientationOf(cell).ordinal() + TileGrid.roomOf(cell);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int scanPackedVisitor(){
+        int[] sum = new int[1];
+        tiles.forEach((x, y, cell) -> {
+            if (TileType.hasFloor(TileGrid.typeOf(cell)))
+                sum[0] += TileGrid.orientationOf(cell).ordinal() + TileGrid.roomOf(cell);
+        });
+        return sum[0];
+    }
+}
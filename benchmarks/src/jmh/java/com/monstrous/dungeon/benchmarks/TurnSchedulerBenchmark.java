@@ -0,0 +1,92 @@
+package com.monstrous.dungeon.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.headless.EnemyTurnCheck;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.CharacterStats;
+import com.monstrous.dungeon.populus.GameObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+
+/** One turn on a large level crowded with enemies of which only a few are awake: the ones in the activity zone
+ * around the rogue (Settings.activeRoomDistance rooms, -1: all). The others were parked by ActivityZones after their
+ * first turn, as in the game, and are out of the TurnScheduler.
+ *
+ * allEnemies steps every enemy, as each turn did before the scheduler. scheduledTurn lets the scheduler run
+ * one turn, in which only the awake enemies act and the timed effects on the rogue come up.
+ * Hit points of the awake enemies and the rogue are restored after every turn so that nobody dies.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TurnSchedulerBenchmark {
+
+    @Param({"1000", "10000"})
+    public int enemies;
+
+    @Param({"1", "2", "-1"})
+    public int activeRoomDistance;
+
+    @Param({"40"})
+    public int level;
+
+    @Param({"1234"})
+    public int seed;
+
+    private World world;
+    private final Array<GameObject> awake = new Array<>();
+
+    @Setup(Level.Iteration)
+    public void setup(){
+        Settings.parallelEnemyTurns = false;
+        Settings.activeRoomDistance = activeRoomDistance;
+        world = BenchmarkSupport.createWorld(seed, level);
+        world.events.enabled = false;
+        Room room = world.map.rooms.first();      // the zone is around the rogue's room
+        world.rogue.x = room.centre.x;
+        world.rogue.y = room.centre.y;
+        world.levelData.gameObjects.setOccupant(world.rogue.x, world.rogue.y, world.rogue);    // keep the rogue's tile free
+        EnemyTurnCheck.addEnemies(world, enemies);
+        world.levelData.gameObjects.removeOccupant(world.rogue);
+
+        // let every enemy take a turn: the ones outside the zone are parked afterwards
+        for(int turn = 0; turn < 4; turn++)
+            scheduledTurn();
+        awake.clear();
+        for(GameObject enemy : world.enemies.enemies)
+            if(enemy.dormantSince < 0)
+                awake.add(enemy);
+    }
+
+    @Benchmark
+    public int allEnemies(){
+        world.enemies.step(world);
+        for(GameObject enemy : world.enemies.enemies)
+            enemy.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        world.rogue.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        return world.enemies.enemies.size;
+    }
+
+    @Benchmark
+    public long scheduledTurn(){
+        world.player.endTurn();
+        for(GameObject enemy : awake)
+            enemy.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        world.rogue.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        world.rogue.stats.food = CharacterStats.MAX_FOOD;
+        return world.scheduler.now;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(){
+        world.dispose();
+        Settings.parallelEnemyTurns = true;
+        Settings.activeRoomDistance = 2;
+    }
+}
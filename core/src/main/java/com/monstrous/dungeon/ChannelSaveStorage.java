@@ -0,0 +1,50 @@
+package com.monstrous.dungeon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+
+/** Save game storage in a file, using NIO channels. For desktop and headless use (not available in the browser).
+ * Writes go to a temporary file first which then replaces the save, so a crash while saving doesn't lose the old save. */
+public class ChannelSaveStorage implements SaveGame.Storage {
+    private final Path path;
+
+    public ChannelSaveStorage(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        if(path.getParent() != null)
+            Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public byte[] read() throws IOException {
+        if(!Files.exists(path))
+            return null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE)
+                throw new IOException("Save file too large");
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining())
+                if(channel.read(buffer) < 0)
+                    throw new IOException("Unexpected end of save file");
+            return buffer.array();
+        }
+    }
+}
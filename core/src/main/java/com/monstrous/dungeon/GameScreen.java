@@ -7,8 +7,6 @@ import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.PerspectiveCamera;
 import com.badlogic.gdx.graphics.g3d.Environment;
-import com.badlogic.gdx.graphics.g3d.Model;
-import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
 import com.badlogic.gdx.graphics.g3d.environment.DirectionalLight;
 import com.badlogic.gdx.graphics.g3d.environment.PointLight;
@@ -22,6 +20,7 @@ import com.monstrous.dungeon.input.CamController;
 import com.monstrous.dungeon.input.KeyController;
 import com.monstrous.dungeon.input.OrbitCameraController;
 import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.render.AssetStreamer;
 import com.monstrous.dungeon.render.DungeonScenes;
 import com.monstrous.dungeon.render.GameObjectScenes;
 import com.monstrous.dungeon.render.SceneManager;
@@ -41,16 +40,6 @@ import com.monstrous.gdx.webgpu.wrappers.SkyBox;
 
 public class GameScreen extends ScreenAdapter {
 
-	final static String[] fileNames = {
-//        "models/Cube/Cube.gltf",
-        "models/DungeonModular/dungeonmodular.gltf",
-        "characters/Warrior.gltf",
-//        "models/Dungeon/dungeon-room.gltf",
-//        "models/Dungeon/dungeon-floor.gltf",
-//        "models/Dungeon/dungeon-walls.gltf",
-
-	};
-
     Main game;
     SceneManager sceneManager;
     GUI gui;
@@ -59,6 +48,7 @@ public class GameScreen extends ScreenAdapter {
     OrbitCameraController camController;
     KeyController keyController;
 	AssetManager assets;
+    AssetStreamer assetStreamer;
 	ScreenViewport viewport;
 	//WgStage stage;
 	//WgSkin skin;
@@ -92,15 +82,11 @@ public class GameScreen extends ScreenAdapter {
 
 
 		// queue for asynchronous loading
-        // load one asset first to appear responsive
-        // load the rest of the assets while the user is admiring the dragon :-)
+        // only the models for the first level, the others are loaded in the background while playing
 		assets = new WgAssetManager();
 		loadedAll = false;
-        for(int i = 0; i < fileNames.length; i++){
-            assets.load(fileNames[i], Model.class);
-        }
-        dungeonScenes.queueAssets(assets);
-        gameObjectScenes.queueAssets(assets);
+        assetStreamer = new AssetStreamer(assets, dungeonScenes, gameObjectScenes);
+        assetStreamer.start(game.world);
 
         torchLights = new TorchLights(sceneManager.environment);
         setLighting(sceneManager.environment);
@@ -199,25 +185,27 @@ public class GameScreen extends ScreenAdapter {
         if(Gdx.input.isKeyJustPressed(Input.Keys.ESCAPE)){
             Gdx.app.exit();
         }
+        if(Gdx.input.isKeyJustPressed(Input.Keys.F3))
+            Settings.showRenderStats = !Settings.showRenderStats;
+        if(Gdx.input.isKeyJustPressed(Input.Keys.F4))      // compare the draw calls with and without merged chunks
+            Settings.mergeStaticChunks = !Settings.mergeStaticChunks;
+        if(SaveGame.storage != null && loadedAll) {      // only on platforms that can save
+            if (Gdx.input.isKeyJustPressed(Input.Keys.F5))
+                MessageBox.addLine(SaveGame.save(game.world) ? "Game saved." : "Could not save the game.");
+            if (Gdx.input.isKeyJustPressed(Input.Keys.F9)) {
+                if (SaveGame.load(game.world)) {
+                    keyController.cancelModes();     // a choice started in the old game doesn't apply to the loaded one
+                    MessageBox.addLine("Game loaded.");
+                } else
+                    MessageBox.addLine("Could not load a saved game.");
+            }
+        }
 
         if(!loadedAll) {
-            if(assets.update()) {    // advance loading
+            if(assetStreamer.update()) {    // advance loading
                 loadedAll = true;
-                Model model = assets.get(fileNames[1], Model.class);
-                ModelInstance instance = new ModelInstance(model, 0,0, 0);
-                sceneManager.add(instance);
-                Model model2 = assets.get(fileNames[0], Model.class);
-                ModelInstance instance2 = new ModelInstance(model2, 0, 0, 0);
-                sceneManager.add(instance2);
-                dungeonScenes.loadAssets(assets);
-                gameObjectScenes.loadAssets(assets);
                 //dungeonScenes.showMap(game.world.map, game.world.levelData);
                 game.world.isRebuilt = true;
-
-
-
-
-
             } else {
                 WgScreenUtils.clear(Color.BLACK,true);
                 batch.begin();
@@ -226,17 +214,18 @@ public class GameScreen extends ScreenAdapter {
             }
             return;
         }
-        // if we arrive here, all assets are loaded
+        // if we arrive here, the assets for this level are loaded, others may still be loading
+        assetStreamer.update();
         if(game.world.isRebuilt){
             game.world.isRebuilt = false;
+            assetStreamer.enterLevel(game.world);      // waits for missing models, if any
 
             // refill scene manager
-            sceneManager.clear();
+            dungeonScenes.clear();
 //            for(GameObject object: world.levelData.gameObjects.gameObjects)
 //                object.scene = null;
 
             dungeonScenes.createRogueModel( game.world );
-            dungeonScenes.uncoverAreaInPlayerView( game.world );
             dungeonScenes.showMap( game.world.map, game.world.levelData );
             dungeonScenes.populateMap(game.world, game.world.levelData);
             focalActor = game.world.rogue;
@@ -253,8 +242,9 @@ public class GameScreen extends ScreenAdapter {
         game.world.rogue.animationController.update(delta);
 
         // update torches
-        int roomId = game.world.map.roomCode[focalActor.y][focalActor.x];
+        int roomId = game.world.map.getRoomCode(focalActor.x, focalActor.y);
         torchLights.update(delta, (roomId < 0 ? null :  game.world.map.rooms.get(roomId)));
+        sceneManager.setViewpointRoom(Settings.roomCulling && roomId >= 0 ? game.world.map.rooms.get(roomId) : null);
 
 
         mat.setToRotation(Vector3.Y, 180-focalActor.direction.ordinal() * 90);
@@ -265,6 +255,18 @@ public class GameScreen extends ScreenAdapter {
         //skyBox.renderPass(cam);
 
         gui.render(delta);
+        assetStreamer.firstFrame();
+
+        if(Settings.showRenderStats) {
+            batch.begin();
+            font.draw(batch, "draw calls: " + sceneManager.drawCalls + " (static " + sceneManager.staticDrawCalls
+                + ")  tiles: " + sceneManager.staticInstances + "  instances: " + sceneManager.dynamicInstances
+                + "  cpu: " + (int)(1000 * sceneManager.cpuFrameTime) + " us", 10, 40);
+            font.draw(batch, "chunks drawn: " + sceneManager.drawnChunks + " culled: " + sceneManager.culledChunks
+                + "  instances culled: " + sceneManager.culledInstances
+                + "  models: " + assetStreamer.getLoadedCount() + " (" + assetStreamer.getResidentBytes() / 1024 + " KB)", 10, 20);
+            batch.end();
+        }
 	}
 
 	@Override
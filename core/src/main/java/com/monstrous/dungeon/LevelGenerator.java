@@ -0,0 +1,339 @@
+package com.monstrous.dungeon;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.IntSet;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.GenerationProfile;
+import com.monstrous.dungeon.map.LevelData;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.Enemies;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.Populator;
+import com.monstrous.dungeon.rng.RandomStream;
+import com.monstrous.dungeon.rng.RandomStreams;
+import com.monstrous.dungeon.rng.Subsystem;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/** Generates dungeon levels: the map and, for a level that was not visited before, its population.
+ *
+ * Generation only depends on the world seed, the level number and the stairs of the level above,
+ * so it can run on a worker thread. While the player explores level N, request() builds level N+1 in the background
+ * (or the map of a level that was evicted from the level cache) and take() hands it over when the player takes the stairs.
+ * If the level was not requested, or generation failed, take() returns null and the caller generates the level itself.
+ *
+ * Alternatively pregenerate() builds all levels down to some depth at once, at the start of a game.
+ * The stairs of a level depend on the stairs of the level above, but they are cheap to lay out on their own
+ * (DungeonMap.generateStairs), so first the stairs of all levels are laid out one level after the other, then the
+ * levels themselves are generated in parallel on a fork-join pool. take() then hands them over without waiting.
+ * The time it took is logged at debug level: the wall-clock time and the time it would have taken one level after the other.
+ *
+ * Levels that are generated but never taken, because a request was replaced or the game restarted, have their maps released.
+ */
+public class LevelGenerator implements Disposable, Runnable {
+
+    /** output of the generator */
+    public static class Level {
+        public int levelNr;
+        public DungeonMap map;
+        public LevelData levelData;         // null for a level that was visited before
+        public Array<Room> stairPortals;    // stairs to the level below, to replace the ones in the existing level data
+        public GameObject rogue;            // only if the rogue was placed
+    }
+
+    private static class Job {
+        int seed;
+        int levelNr;
+        int swordLevel;
+        Array<Room> stairsFromAbove;
+        boolean isNew;
+        boolean started;
+        boolean done;
+        Level result;
+    }
+
+    private Thread worker;
+    private Job job;            // most recent request, null if there is none
+    private boolean disposed;
+
+    // one call of pregenerate()
+    private static class Pregeneration {
+        int seed;
+        int numLevels;
+        long startNanos;
+        long wallNanos;                 // until the last level was done, 0 while busy
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicLong serialNanos = new AtomicLong();   // sum of the generation times of the levels
+        final IntSet busy = new IntSet();                   // levels still being generated
+        final IntMap<Level> levels = new IntMap<>();        // levels done and not taken yet
+    }
+
+    // levels generated ahead by pregenerate(), guarded by this
+    private ForkJoinPool pool;
+    private Pregeneration pregeneration;    // null if cancelled
+
+
+    /** start generating a level on the worker thread. This replaces any earlier request.
+     * isNew: the level was not visited before, so it needs to be populated. */
+    public synchronized void request(int seed, int levelNr, int swordLevel, Array<Room> stairsFromAbove, boolean isNew){
+        if(disposed || (isNew && isAhead(seed, levelNr)))
+            return;     // already built ahead
+        if(job != null && job.done)
+            release(job.result);    // never taken; a job that is still running is released by the worker
+        job = new Job();
+        job.seed = seed;
+        job.levelNr = levelNr;
+        job.swordLevel = swordLevel;
+        job.stairsFromAbove = new Array<>(stairsFromAbove);  // copy, the main thread may regenerate the level above meanwhile
+        job.isNew = isNew;
+        if(worker == null) {
+            worker = new Thread(this, "level-generator");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        notifyAll();
+    }
+
+    /** get the requested level or the level built ahead, waiting for the worker if it is not finished yet.
+     * Returns null if this level was not requested or could not be generated. */
+    public Level take(int seed, int levelNr, boolean isNew){
+        synchronized (this) {
+            if(isNew && isAhead(seed, levelNr)) {
+                Pregeneration batch = pregeneration;
+                while(batch == pregeneration && batch.busy.contains(levelNr)) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                }
+                return batch == pregeneration ? batch.levels.remove(levelNr) : null;    // null if it failed
+            }
+
+            if (job == null || job.seed != seed || job.levelNr != levelNr || job.isNew != isNew)
+                return null;
+            while (!job.done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            Level level = job.result;
+            job = null;
+            return level;
+        }
+    }
+
+    /** forget any outstanding request and the levels generated ahead, e.g. on a restart.
+     * Levels that are done are released, the ones still being generated are released when they are done. */
+    public synchronized void cancel(){
+        if(job != null && job.done)
+            release(job.result);
+        job = null;
+        if(pregeneration != null) {
+            for(Level level : pregeneration.levels.values())
+                release(level);
+            pregeneration.levels.clear();
+        }
+        pregeneration = null;
+        notifyAll();
+    }
+
+    // is this new level being generated or done by pregenerate(), and not taken yet?
+    private boolean isAhead(int seed, int levelNr){
+        return pregeneration != null && seed == pregeneration.seed
+            && (pregeneration.busy.contains(levelNr) || pregeneration.levels.containsKey(levelNr));
+    }
+
+    // a level nobody is going to take
+    private static void release(Level level){
+        if(level != null)
+            level.map.dispose();
+    }
+
+    /** start generating the new levels 1 to deepest of a game in parallel, to be collected with take().
+     * Level 0 is left to the caller, the player needs it right away. */
+    public synchronized void pregenerate(int seed, int swordLevel, int deepest){
+        if(disposed)
+            return;
+        cancel();
+        Pregeneration batch = new Pregeneration();
+        batch.seed = seed;
+        batch.numLevels = deepest;
+        batch.startNanos = System.nanoTime();
+        batch.pending.set(deepest);
+        pregeneration = batch;
+
+        // the stairs of each level, one level after the other
+        Array<Array<Room>> stairsFromAbove = new Array<>();
+        stairsFromAbove.add(new Array<>());     // none for level 0
+        for(int levelNr = 0; levelNr < deepest; levelNr++)
+            stairsFromAbove.add(DungeonMap.generateStairs(seed, levelNr, getMapWidth(levelNr), getMapHeight(levelNr), stairsFromAbove.get(levelNr)));
+
+        // the levels themselves, in parallel
+        if(pool == null)
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        for(int levelNr = 1; levelNr <= deepest; levelNr++) {
+            final int nr = levelNr;
+            final Array<Room> stairs = stairsFromAbove.get(levelNr);
+            batch.busy.add(levelNr);
+            pool.execute(() -> generateAhead(batch, nr, swordLevel, stairs));
+        }
+    }
+
+    // task on the pool
+    private void generateAhead(Pregeneration batch, int levelNr, int swordLevel, Array<Room> stairs){
+        synchronized (this) {
+            if(batch != pregeneration)
+                return;     // cancelled before it started
+        }
+        long start = System.nanoTime();
+        Level level = null;
+        try {
+            level = generate(batch.seed, levelNr, swordLevel, stairs, true, false);
+        } catch (RuntimeException e) {
+            Gdx.app.error("LevelGenerator", "generation of level " + levelNr + " ahead failed", e);
+        }
+        long nanos = System.nanoTime() - start;
+        synchronized (this) {
+            batch.busy.remove(levelNr);
+            if(batch == pregeneration && level != null)
+                batch.levels.put(levelNr, level);
+            else
+                release(level);     // cancelled meanwhile
+            notifyAll();
+        }
+        levelDone(batch, nanos);
+    }
+
+    private void levelDone(Pregeneration batch, long nanos){
+        batch.serialNanos.addAndGet(nanos);
+        if(batch.pending.decrementAndGet() > 0)
+            return;
+        synchronized (this) {
+            batch.wallNanos = System.nanoTime() - batch.startNanos;
+            notifyAll();
+            if(batch != pregeneration)
+                return;     // cancelled
+        }
+        Gdx.app.debug("LevelGenerator", String.format("generated %d levels ahead in %.1f ms, %.1f ms one after the other",
+            batch.numLevels, batch.wallNanos / 1e6, batch.serialNanos.get() / 1e6));
+    }
+
+    /** wait until the levels of the last pregenerate() are done.
+     * Returns the wall-clock time it took in nanoseconds, 0 if it was cancelled. */
+    public synchronized long awaitPregeneration() throws InterruptedException {
+        Pregeneration batch = pregeneration;
+        while(batch != null && batch == pregeneration && batch.wallNanos == 0)
+            wait();
+        return batch == null ? 0 : batch.wallNanos;
+    }
+
+    /** time the levels of the last pregenerate() took added up: as if they were generated one after the other, in nanoseconds */
+    public synchronized long getPregenerationSerialNanos(){
+        return pregeneration == null ? 0 : pregeneration.serialNanos.get();
+    }
+
+    @Override
+    public void run() {
+        while(true) {
+            Job next;
+            synchronized (this) {
+                while (!disposed && (job == null || job.started)) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (disposed)
+                    return;
+                next = job;
+                next.started = true;
+            }
+
+            Level level = null;
+            try {
+                level = generate(next.seed, next.levelNr, next.swordLevel, next.stairsFromAbove, next.isNew, false);
+            } catch (RuntimeException e) {
+                Gdx.app.error("LevelGenerator", "background generation of level " + next.levelNr + " failed", e);
+            }
+
+            synchronized (this) {
+                if(next != job) {
+                    release(level);     // replaced by a newer request or cancelled meanwhile
+                    continue;
+                }
+                next.result = level;
+                next.done = true;
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        cancel();
+        disposed = true;
+        notifyAll();
+        if(pool != null)
+            pool.shutdownNow();
+    }
+
+
+    /** generate a level on the calling thread.
+     * Only uses random streams derived from the seed and level number, so it is safe to call from any thread. */
+    public static Level generate(int seed, int levelNr, int swordLevel, Array<Room> stairsFromAbove, boolean isNew, boolean placeRogue){
+        return generate(seed, levelNr, swordLevel, stairsFromAbove, isNew, placeRogue, null);
+    }
+
+    /** as above, collecting the time per generation stage in profile (may be null) */
+    public static Level generate(int seed, int levelNr, int swordLevel, Array<Room> stairsFromAbove, boolean isNew, boolean placeRogue,
+                                 GenerationProfile profile){
+        int w = getMapWidth(levelNr);
+        int h = getMapHeight(levelNr);
+
+        Level level = new Level();
+        level.levelNr = levelNr;
+        level.stairPortals = new Array<>();
+        level.map = new DungeonMap(seed, levelNr, w, h, stairsFromAbove, level.stairPortals, profile);
+
+        if(isNew) {
+            if(profile != null)
+                profile.start();
+            level.levelData = new LevelData(levelNr, level.map);
+            level.levelData.stairPortals = level.stairPortals;
+
+            // each part draws from its own random stream, so e.g. the loot doesn't depend on how many numbers the enemies used
+            if (placeRogue)
+                level.rogue = Populator.placeRogue(level.map, level.levelData.gameObjects, RandomStreams.get(seed, levelNr, Subsystem.PLAYER));
+            RandomStream loot = RandomStreams.get(seed, levelNr, Subsystem.LOOT);
+            if (levelNr == swordLevel)
+                Populator.placeSword(level.map, level.levelData.gameObjects, loot);
+            Populator.distributeGoodies(level.map, levelNr, level.levelData.gameObjects, loot);
+            Populator.distributeEnemies(level.map, levelNr, level.levelData.gameObjects, new Enemies(), RandomStreams.get(seed, levelNr, Subsystem.ENEMIES));
+            if(profile != null)
+                profile.stop(GenerationProfile.Stage.POPULATE);
+        }
+        return level;
+    }
+
+    // map gets bigger at lower levels: keep aspect ratio 3/2
+    //
+    static int getMapWidth(int levelNr){
+        return World.MAP_WIDTH+World.DELTA_WIDTH*levelNr;
+    }
+
+    static int getMapHeight(int levelNr){
+        return World.MAP_HEIGHT+World.DELTA_HEIGHT*levelNr;
+    }
+}
@@ -12,4 +12,10 @@ public class Main extends Game {
 
         setScreen(new GameScreen(this));
     }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        world.dispose();
+    }
 }
@@ -1,19 +1,69 @@
 package com.monstrous.dungeon;
 
 import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.populus.GameEvent;
+import com.monstrous.dungeon.populus.GameObject;
 
 
-/** Messages shown to the user in chronological order. */
+/** Messages shown to the user in chronological order.
+ * Synchronized because worlds can be created on several threads at once, e.g. by the headless PlaythroughRunner. */
 public class MessageBox {
     public static Array<String> lines;
 
-    public static void addLine(String message){
+    public static synchronized void addLine(String message){
         if(lines == null)
             lines = new Array<>();
         lines.add(message);
     }
 
-    public static void clear(){
+    /** message for something that happened in the game, if the player is to be told */
+    public static synchronized void report(GameEvent event){
+        if(event.kind == GameEvent.MESSAGE) {
+            addLine(event.text);
+            return;
+        }
+        if(!event.has(GameEvent.REPORTED))
+            return;
+        GameObject actor = event.actor;
+        GameObject other = event.other;
+        switch(event.kind){
+            case GameEvent.ATTACKED:
+                String verb = event.has(GameEvent.WITH_WEAPON) ? "attacks" : "hits";
+                addLine(actor.type.name + " " + verb + " the " + other.type.name + "(HP: " + event.value + ")");
+                break;
+            case GameEvent.MISSED:
+                addLine(actor.type.name + " misses.");
+                break;
+            case GameEvent.BLOCKED:
+                addLine("The " + other.type.name + " blocks the attack");
+                if(event.has(GameEvent.ARMOUR_DAMAGED))
+                    addLine("The armour takes damage.");
+                if(event.has(GameEvent.WEAPON_DAMAGED))
+                    addLine("The weapon takes damage.");
+                break;
+            case GameEvent.THROWN:
+                addLine(actor.type.name + " hits the " + other.type.name + "(HP: " + event.value + ")");
+                break;
+            case GameEvent.DEFEATED:
+                addLine(actor.type.name + " defeated the " + other.type.name + ". (XP +" + event.value + ")");
+                break;
+            case GameEvent.PICKED_UP:
+                String name = actor.type.isPlayer ? "You" : actor.type.name;
+                if (other.type.isCountable)
+                    addLine(name + " picked up " + event.value + " " + other.type.name);
+                else
+                    addLine(name + " picked up " + other.type.name);
+                break;
+            case GameEvent.DROPPED:     // only reported for the gold of a defeated character
+                addLine(actor.type.name + " drops their gold. (" + event.value + ")");
+                break;
+            case GameEvent.ROBBED:
+                addLine(actor.type.name + " stole " + event.value + " gold from " + other.type.name);
+                break;
+        }
+    }
+
+    public static synchronized void clear(){
         if(lines == null)
             lines = new Array<>();
         lines.clear();
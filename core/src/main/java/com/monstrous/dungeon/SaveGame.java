@@ -0,0 +1,273 @@
+package com.monstrous.dungeon;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.monstrous.dungeon.map.LevelData;
+import com.monstrous.dungeon.map.LevelSnapshot;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.GameObjectCodec;
+import com.monstrous.dungeon.populus.Player;
+import com.monstrous.dungeon.populus.TurnScheduler;
+
+import java.io.*;
+
+
+/** Binary save format for the world.
+ *
+ * The maps are not saved: they are generated again from the seed. What is saved is everything the player changed:
+ * the rogue (stats, inventory, position) and per level visited the snapshot of the level cache (what was seen,
+ * the objects that are left, where the enemies are). This keeps a save of a deep run at a few KB per level.
+ *
+ * Layout: magic, format version, world fields, rogue, game time and timed effects (TurnScheduler, Player),
+ * number of levels, then per level the length and the snapshot bytes, and finally the enemies of the current level:
+ * the order in which the TurnScheduler lets them act (which is not the order of the level's objects) with the time
+ * of their next action, and the order in which the dormant ones wake up.
+ * Loading a file with another version fails with an IOException rather than guessing.
+ *
+ * Loading decodes and checks the whole file before anything in the world is replaced: the snapshots are checked
+ * without their maps, then the current level is restored on its regenerated map.
+ * A corrupt file therefore leaves the game that is being played as it was.
+ */
+public class SaveGame {
+    public static final int MAGIC = 0x52744453;     // "RtDS"
+    public static final int VERSION = 5;
+
+    /** where saves are kept. Only some platforms have one, see storage. */
+    public interface Storage {
+        void write(byte[] data) throws IOException;
+        /** returns null if there is no save */
+        byte[] read() throws IOException;
+    }
+
+    /** set by the launcher on platforms that can save, null otherwise */
+    public static Storage storage = null;
+
+
+    public static byte[] write(World world) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        try {
+            write(new DataOutputStream(bytes), world);
+        } catch (IOException e) {
+            throw new RuntimeException(e);      // cannot happen on a byte array
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void write(DataOutput out, World world) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(world.seed);
+        out.writeShort(world.level);
+        out.writeShort(world.startRoomId);
+        out.writeBoolean(world.gameOver);
+        out.writeBoolean(world.gameCompleted);
+        out.writeFloat(world.secondsElapsed);
+        GameObjectCodec.write(out, world.rogue);
+        world.scheduler.writeEffects(out);
+        world.player.write(out);
+
+        int numLevels = world.levelCache.size();
+        out.writeShort(numLevels);
+        for(int i = 0; i < numLevels; i++){
+            byte[] snapshot = world.levelCache.getSnapshot(i);
+            out.writeInt(snapshot.length);
+            out.write(snapshot);
+        }
+
+        // enemies by index in the snapshot of the current level
+        Array<GameObject> objects = world.levelData.gameObjects.gameObjects;
+        ObjectIntMap<GameObject> indices = new ObjectIntMap<>(objects.size);
+        int index = 0;
+        for(GameObject go : objects)
+            if(!go.type.isPlayer)
+                indices.put(go, index++);
+        Array<GameObject> enemies = world.enemies.enemies;
+        ObjectIntMap<GameObject> positions = new ObjectIntMap<>(enemies.size);
+        out.writeInt(enemies.size);
+        for(GameObject enemy : enemies) {
+            positions.put(enemy, positions.size);
+            out.writeInt(indices.get(enemy, -1));
+        }
+
+        // their next actions, by position in the turn order
+        Array<GameObject> scheduled = new Array<>();
+        world.scheduler.getScheduledEnemies(world, scheduled);
+        out.writeInt(scheduled.size);
+        for(GameObject enemy : scheduled) {
+            out.writeInt(positions.get(enemy, -1));
+            out.writeLong(enemy.nextAction);
+        }
+
+        // the order in which the dormant ones wake up, unless the zone is still to be set up for this level
+        Array<GameObject> sleeping = new Array<>();
+        boolean zoneCurrent = world.activityZones.isCurrent(world);
+        if(zoneCurrent)
+            world.activityZones.getDormant(sleeping);
+        out.writeBoolean(zoneCurrent);
+        out.writeInt(sleeping.size);
+        for(GameObject enemy : sleeping)
+            out.writeInt(positions.get(enemy, -1));
+    }
+
+    /** replace the state of the world by the saved one */
+    public static void read(byte[] data, World world) throws IOException {
+        read(new DataInputStream(new ByteArrayInputStream(data)), world);
+    }
+
+    private static void read(DataInputStream in, World world) throws IOException {
+        if(in.readInt() != MAGIC)
+            throw new IOException("Not a saved game");
+        int version = in.readShort();
+        if(version != VERSION)
+            throw new IOException("Unsupported save version " + version);
+        int seed = in.readInt();
+        int level = in.readShort();
+        int startRoomId = in.readShort();
+        boolean gameOver = in.readBoolean();
+        boolean gameCompleted = in.readBoolean();
+        float secondsElapsed = in.readFloat();
+        GameObject rogue = GameObjectCodec.read(in);
+        if(rogue.stats == null || !rogue.type.isPlayer)
+            throw new IOException("Corrupt save: no rogue");
+        TurnScheduler scheduler = new TurnScheduler();
+        scheduler.readEffects(in);
+        Player player = new Player(world);
+        player.read(in);
+
+        int numLevels = in.readShort();
+        if(level < 0 || level >= numLevels)
+            throw new IOException("Corrupt save: level " + level + " of " + numLevels);
+        byte[][] snapshots = new byte[numLevels][];
+        for(int i = 0; i < numLevels; i++){
+            int length = in.readInt();
+            if(length < 0 || length > in.available())
+                throw new IOException("Corrupt save: snapshot of " + length + " bytes");
+            snapshots[i] = new byte[length];
+            in.readFully(snapshots[i]);
+        }
+        int[] enemyOrder = new int[readCount(in)];
+        for(int i = 0; i < enemyOrder.length; i++)
+            enemyOrder[i] = in.readInt();
+        int[] scheduleOrder = new int[readCount(in)];
+        long[] nextAction = new long[scheduleOrder.length];
+        for(int i = 0; i < scheduleOrder.length; i++) {
+            scheduleOrder[i] = in.readInt();
+            nextAction[i] = in.readLong();
+            if(scheduleOrder[i] < 0 || scheduleOrder[i] >= enemyOrder.length || nextAction[i] <= scheduler.now)
+                throw new IOException("Corrupt save: enemy turn " + scheduleOrder[i] + " at " + nextAction[i]);
+        }
+        boolean zoneCurrent = in.readBoolean();
+        int[] wakeOrder = new int[readCount(in)];
+        for(int i = 0; i < wakeOrder.length; i++) {
+            wakeOrder[i] = in.readInt();
+            if(wakeOrder[i] < 0 || wakeOrder[i] >= enemyOrder.length)
+                throw new IOException("Corrupt save: dormant enemy " + wakeOrder[i]);
+        }
+
+        // check the snapshots, and restore the current level on its map
+        for(int i = 0; i < numLevels; i++)
+            LevelSnapshot.check(snapshots[i], i, LevelGenerator.getMapWidth(i), LevelGenerator.getMapHeight(i));
+        int swordLevel = World.getSwordLevel(seed);
+        Array<Room> stairsFromAbove = level == 0 ? new Array<>() : LevelSnapshot.readStairPortals(snapshots[level - 1]);
+        LevelGenerator.Level generated = LevelGenerator.generate(seed, level, swordLevel, stairsFromAbove, false, false);
+        LevelData levelData;
+        Array<GameObject> enemies = new Array<>(enemyOrder.length);
+        try {
+            levelData = LevelSnapshot.read(snapshots[level], generated.map, rogue);
+            // the turn order, the restored level has no player among its objects
+            Array<GameObject> objects = levelData.gameObjects.gameObjects;
+            for(int index : enemyOrder) {
+                if(index < 0 || index >= objects.size || !objects.get(index).type.isEnemy)
+                    throw new IOException("Corrupt save: enemy " + index + " of " + objects.size + " objects");
+                enemies.add(objects.get(index));
+            }
+            for(int position : wakeOrder)
+                if(enemies.get(position).dormantSince < 0)
+                    throw new IOException("Corrupt save: enemy " + position + " is not dormant");
+        } catch (IOException | RuntimeException e) {
+            generated.map.dispose();
+            throw new IOException("Corrupt save: level " + level, e);
+        }
+        levelData.stairPortals = generated.stairPortals;
+        if(rogue.x < 0 || rogue.y < 0 || rogue.x >= generated.map.mapWidth || rogue.y >= generated.map.mapHeight) {
+            generated.map.dispose();
+            throw new IOException("Corrupt save: the rogue is off the map at " + rogue.x + "," + rogue.y);
+        }
+
+        // only change the world once everything was read
+        world.seed = seed;
+        world.swordLevel = swordLevel;
+        world.startRoomId = startRoomId;
+        world.gameOver = gameOver;
+        world.gameCompleted = gameCompleted;
+        world.secondsElapsed = secondsElapsed;
+        world.levelCache.clear();
+        for(int i = 0; i < numLevels; i++) {
+            if(i == level)
+                world.levelCache.put(i, generated.map, levelData);
+            else
+                world.levelCache.putSnapshot(i, snapshots[i]);
+        }
+        world.resume(level, rogue);
+        world.scheduler.restoreEffects(scheduler);
+        world.player.restore(player);
+
+        world.enemies.clear();
+        for(GameObject enemy : enemies) {
+            enemy.nextAction = -1;
+            world.enemies.add(enemy);
+        }
+        Array<GameObject> scheduled = new Array<>(scheduleOrder.length);
+        for(int i = 0; i < scheduleOrder.length; i++) {
+            GameObject enemy = enemies.get(scheduleOrder[i]);
+            enemy.nextAction = nextAction[i];
+            scheduled.add(enemy);
+        }
+        world.scheduler.restoreEnemies(world, scheduled);
+        if(zoneCurrent) {
+            Array<GameObject> sleeping = new Array<>(wakeOrder.length);
+            for(int position : wakeOrder)
+                sleeping.add(enemies.get(position));
+            world.activityZones.restore(world, sleeping);
+        }
+    }
+
+    // a number of entries of at least 4 bytes each
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if(count < 0 || count > in.available() / 4)
+            throw new IOException("Corrupt save: negative count " + count);
+        return count;
+    }
+
+    /** save to storage, returns false if this platform has none or it failed */
+    public static boolean save(World world){
+        if(storage == null)
+            return false;
+        try {
+            storage.write(write(world));
+            return true;
+        } catch (IOException e) {
+            Gdx.app.error("SaveGame", "save failed", e);
+            return false;
+        }
+    }
+
+    /** load from storage, returns false if there is no save or it could not be read, in which case the world is unchanged */
+    public static boolean load(World world){
+        if(storage == null)
+            return false;
+        try {
+            byte[] data = storage.read();
+            if(data == null)
+                return false;
+            read(data, world);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Gdx.app.error("SaveGame", "load failed", e);
+            return false;
+        }
+    }
+}
@@ -9,4 +9,12 @@ public class Settings {
     static public boolean freeLook = true;
     static public float headBobDuration = 0.6f; // s
     static public float headBobHeight = 0.04f;  // m
+    static public boolean preGenerateLevels = true; // generate the next level on a worker thread
+    static public boolean eagerLevelGeneration = false; // at the start, generate all levels down to the sword level + 2 in parallel
+    static public boolean showRenderStats = false;  // draw calls and render time on screen
+    static public boolean roomCulling = false;      // in a room, only draw that room and its close neighbours
+    static public boolean mergeStaticChunks = true; // merge the tiles of a room or corridor block into one mesh per material
+    static public boolean parallelEnemyTurns = true;    // with many enemies, let them decide on worker threads
+    static public int activeRoomDistance = 2;       // enemies more rooms away from the rogue sleep, -1: all enemies stay awake
+    static public boolean streamAssets = true;      // load models per level in the background and unload unused ones, false: all at the start
 }
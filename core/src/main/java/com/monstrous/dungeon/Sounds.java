@@ -2,6 +2,7 @@ package com.monstrous.dungeon;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.audio.Sound;
+import com.monstrous.dungeon.populus.GameEvent;
 
 public class Sounds {
     private static Sound pickupSound;
@@ -35,6 +36,32 @@ public class Sounds {
         monsterDeathSound.play();
     }
 
+    /** sound effect of something that happened in the game, if the player is to hear it */
+    public static void play(GameEvent event){
+        if(!event.has(GameEvent.HEARD))
+            return;
+        switch(event.kind){
+            case GameEvent.PICKED_UP:
+            case GameEvent.ROBBED:
+                pickup();
+                break;
+            case GameEvent.ATTACKED:
+            case GameEvent.BLOCKED:
+            case GameEvent.THROWN:
+                fight();
+                break;
+            case GameEvent.MISSED:
+                swoosh();
+                break;
+            case GameEvent.DEFEATED:
+                monsterDeath();
+                break;
+            case GameEvent.HUNGRY:
+                stomachRumble();
+                break;
+        }
+    }
+
     public static void stomachRumble(){
         if(stomachRumbleSound == null)
             stomachRumbleSound = Gdx.audio.newSound(Gdx.files.internal("sounds/stomach-rumble-98381.mp3"));
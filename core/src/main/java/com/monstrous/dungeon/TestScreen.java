@@ -72,7 +72,7 @@ public class TestScreen extends ScreenAdapter {
         WgModelLoader.ModelParameters params = new WgModelLoader.ModelParameters();
         params.textureParameter.genMipMaps = true;
 
-        System.out.println("Start loading");
+        Gdx.app.log("TestScreen", "start loading");
         long startLoad = System.currentTimeMillis();
         FileHandle file = Gdx.files.internal(modelFileName);
         model = new WgGLTFModelLoader().loadModel(file, params);
@@ -6,20 +6,33 @@ package com.monstrous.dungeon;
 
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.monstrous.dungeon.map.DistanceField;
 import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.FieldOfView;
+import com.monstrous.dungeon.map.LevelCache;
 import com.monstrous.dungeon.map.LevelData;
 import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.ActivityZones;
 import com.monstrous.dungeon.populus.Enemies;
+import com.monstrous.dungeon.populus.EnemyTurn;
+import com.monstrous.dungeon.populus.GameEvents;
 import com.monstrous.dungeon.populus.GameObject;
 import com.monstrous.dungeon.populus.GameObjectTypes;
-import com.monstrous.dungeon.populus.Populator;
+import com.monstrous.dungeon.populus.Player;
+import com.monstrous.dungeon.populus.TurnScheduler;
+import com.monstrous.dungeon.rng.RandomStream;
+import com.monstrous.dungeon.rng.RandomStreams;
+import com.monstrous.dungeon.rng.Subsystem;
 
 
-public class World {
-    private final static int MAP_WIDTH = 30;
-    private final static int MAP_HEIGHT = 20;
+public class World implements Disposable {
+    public final static int MAP_WIDTH = 30;
+    public final static int MAP_HEIGHT = 20;
     public final static int DELTA_WIDTH = 6;
     public final static int DELTA_HEIGHT = 4;
+    public final static int VIEW_RADIUS = 6;        // how far (in tiles) the rogue and the enemies can see
+    public final static int CHASE_DISTANCE = 20;    // how many steps away enemies can find their way to the rogue
 
     public int seed = 1234;
     public int level = 0;           // current level
@@ -33,8 +46,16 @@ public class World {
     public Enemies enemies;                 // subset of gameObjects
     public boolean isRebuilt;               // force scenes to be recreated
     public float secondsElapsed;
-    public Array<LevelData> levelDataArray; // data for all levels
+    public LevelCache levelCache;           // data for all levels visited
     public LevelData levelData;             // data for current level
+    public final FieldOfView fieldOfView = new FieldOfView();   // shared by everyone who needs line of sight this turn
+    public final DistanceField distanceToRogue = new DistanceField();  // shared by the enemies to find the rogue
+    public final GameEvents events = new GameEvents();     // what happened in the game, for the scenes, sounds and messages
+    public final TurnScheduler scheduler = new TurnScheduler();    // game time: when the enemies act and effects wear off
+    public final ActivityZones activityZones = new ActivityZones();    // which enemies are near enough to act
+    public final Player player = new Player(this);             // the actions and turn rules of the rogue
+    public final EnemyTurn enemyTurn = new EnemyTurn(Runtime.getRuntime().availableProcessors());
+    private LevelGenerator levelGenerator;  // builds the next level in the background, null if disabled
 
 
     public World() {
@@ -43,24 +64,32 @@ public class World {
         gameOver = false;
         gameCompleted = false;
         GameObjectTypes gameObjectTypes = new GameObjectTypes();
-        levelDataArray = new Array<>();
+        levelCache = new LevelCache();
+        if(Settings.preGenerateLevels || Settings.eagerLevelGeneration)
+            levelGenerator = new LevelGenerator();
         create();
         MessageBox.addLine("Welcome traveller");
     }
 
     private void create(){
         MessageBox.clear();
+        events.clear();
+        if(levelGenerator != null)
+            levelGenerator.cancel();
         rogue = null;
+        player.reset();
         level = 0;
         secondsElapsed = 0;
-        levelDataArray.clear();
+        levelCache.clear();
         randomizeSwordLevel();
+        if(levelGenerator != null && Settings.eagerLevelGeneration)
+            levelGenerator.pregenerate(seed, swordLevel, swordLevel + 2);    // a bit below the sword level, in case the player goes on
         generateLevel();
+        player.discoverMap(rogue);      // what the rogue sees at the start
     }
 
     public void levelDown(){
         level++;        // top level is 0, lower levels have higher numbers
-        map.dispose();
         generateLevel();
     }
 
@@ -68,7 +97,6 @@ public class World {
         if(level == 0)  // cannot go higher
             return;
         level--;
-        map.dispose();
         generateLevel();
     }
 
@@ -77,7 +105,6 @@ public class World {
     }
 
     public void restart(boolean keepSeed){
-        map.dispose();
         if(!keepSeed)
             seed = MathUtils.random(1,9999);
         gameOver = false;
@@ -88,54 +115,86 @@ public class World {
 
 
 
+    // continue a saved game (see SaveGame), the level cache holds the snapshots of the levels visited and the current level.
+    // SaveGame restores the game time, the effects on the rogue and the enemies' turns afterwards.
+    void resume(int levelNr, GameObject savedRogue){
+        MessageBox.clear();
+        events.clear();
+        if(levelGenerator != null)
+            levelGenerator.cancel();
+        level = levelNr;
+        rogue = savedRogue;
+        generateLevel();
+    }
+
     private void randomizeSwordLevel(){
-        MathUtils.random.setSeed(seed);
         // set level where the sword can be found
-        swordLevel = 5 + MathUtils.random(0,2);
+        swordLevel = getSwordLevel(seed);
         //swordLevel = 1;
     }
 
+    public static int getSwordLevel(int seed){
+        RandomStream rnd = RandomStreams.get(seed, 0, Subsystem.WORLD);
+        return 5 + rnd.random(0,2);
+    }
+
     private void generateLevel(){
         isRebuilt = true;
-        boolean newLevel;
-
-        // map gets bigger at lower levels: keep aspect ratio 3/2
-        //
-        int w = MAP_WIDTH+DELTA_WIDTH*level;
-        int h = MAP_HEIGHT+DELTA_HEIGHT*level;
-
-        if(level > levelDataArray.size-1) {       // new level
-            levelData = new LevelData(level, w, h);
-            levelDataArray.add(levelData);
-            newLevel = true;
-        } else {    // existing level
-            levelData = levelDataArray.get(level);
-            newLevel = false;
-        }
-        Array<Room> stairsFromAbove;
-        if(level == 0)
-            stairsFromAbove = new Array<>();    // empty array: no stairs from above
-        else
-            stairsFromAbove = levelDataArray.get(level-1).stairPortals;
+        boolean newLevel = !levelCache.contains(level);
 
-        map = new DungeonMap(seed, level, w, h, stairsFromAbove, levelData.stairPortals);
+        if(levelCache.isHot(level)) {     // the level is still in memory as we left it
+            map = levelCache.getMap(level);
+            levelData = levelCache.getLevelData(level);
+        }
+        else {
+            // use the level that was built in the background, if there is one
+            LevelGenerator.Level generated = null;
+            if (levelGenerator != null)
+                generated = levelGenerator.take(seed, level, newLevel);
+            if (generated == null)
+                generated = LevelGenerator.generate(seed, level, swordLevel, getStairsFromAbove(level), newLevel, rogue == null);
+
+            map = generated.map;
+            if (newLevel) {
+                levelData = generated.levelData;
+                levelCache.put(level, map, levelData);
+            } else {    // existing level, restore its snapshot on the regenerated map
+                levelData = levelCache.restore(level, map, rogue);
+                levelData.stairPortals = generated.stairPortals;
+            }
+
+            if (rogue == null) {  // don't create new rogue when changing level
+                rogue = generated.rogue;
+                startRoomId = map.getRoomCode(rogue.x, rogue.y);     // remember the starting room, the rogue needs to return here
+            }
+        }
+        levelCache.setCurrent(level);
 
         enemies = new Enemies();
         enemies.addFromObjects(levelData.gameObjects);
 
-        if(rogue == null) {  // don't create new rogue when changing level
-            rogue = Populator.placeRogue(map, levelData.gameObjects);
-            startRoomId = map.roomCode[rogue.y][rogue.x];     // remember the starting room, the rogue needs to return here
-        }
+        levelData.gameObjects.removeOccupant(rogue);     // the player is not an occupant, it was only placed to keep the start tile free
 
-        if(newLevel) {
-            if (level == swordLevel)
-                Populator.placeSword(map, levelData.gameObjects);
-            Populator.distributeGoodies(map, level, levelData.gameObjects);
-            Populator.distributeEnemies(map, level, levelData.gameObjects, enemies);
+        // prepare the level below while the player explores this one, or else the level above if that is no longer in memory
+        if(levelGenerator != null) {
+            if(!levelCache.isHot(level+1))
+                levelGenerator.request(seed, level+1, swordLevel, levelData.stairPortals, !levelCache.contains(level+1));
+            else if(level > 0 && !levelCache.isHot(level-1))
+                levelGenerator.request(seed, level-1, swordLevel, getStairsFromAbove(level-1), false);
         }
+    }
 
-        levelData.gameObjects.clearOccupant(rogue.x, rogue.y);
+    private Array<Room> getStairsFromAbove(int levelNr){
+        if(levelNr == 0)
+            return new Array<>();    // empty array: no stairs from above
+        return levelCache.getStairPortals(levelNr-1);
+    }
 
+    @Override
+    public void dispose() {
+        if(levelGenerator != null)
+            levelGenerator.dispose();
+        enemyTurn.dispose();
+        levelCache.clear();
     }
 }
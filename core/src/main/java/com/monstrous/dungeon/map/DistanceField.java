@@ -0,0 +1,158 @@
+package com.monstrous.dungeon.map;
+
+import java.util.Arrays;
+
+
+// Number of steps from each tile to one target tile, e.g. the rogue, following the TileType.walkable() rules.
+//
+// One field is shared by all enemies: each of them finds its best step towards the target by looking at its
+// 4 neighbours, so the cost per enemy is constant however many enemies there are, and they go around walls
+// and through corridors instead of bumping into the nearest wall.
+//
+// All steps cost the same, so Dijkstra comes down to a breadth first search with a plain array as queue.
+// The search goes backwards from the target: a neighbour gets a distance if one can step from it onto the tile
+// being expanded. It stops at maxDistance, so its cost depends on the area around the target and not on the map size.
+// Like GridPathFinder, the arrays are sized once and a stamp per search marks which tiles have a distance,
+// so nothing is cleared or allocated per search. The field is only computed again when the target has moved.
+//
+// Enemies can walk off the end of a staircase onto the floor beyond, but for the rogue that step goes to another level.
+// A field for the rogue (stairsLeaveLevel) leaves those steps out.
+
+public class DistanceField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // in the order of Direction
+    private static final int[] dx = { 0, 1, 0, -1 };
+    private static final int[] dy = { 1, 0, -1, 0 };
+    private static final Direction[] directions = Direction.values();
+
+    private final boolean stairsLeaveLevel;
+    private DungeonMap map;
+    private int width, height;
+    private int[] distance;
+    private int[] stamps;           // == stamp if the tile has a distance in the current field
+    private int[] queue;
+    private int stamp;
+    private int targetX = -1, targetY = -1;
+    private int maxDistance;
+    private int reached;            // number of tiles with a distance
+
+    public DistanceField() {
+        this(false);
+    }
+
+    /** stairsLeaveLevel: stepping off the end of a staircase is not a move within the level, as for the rogue */
+    public DistanceField(boolean stairsLeaveLevel) {
+        this.stairsLeaveLevel = stairsLeaveLevel;
+    }
+
+    /** make the field give the distances to x,y, up to maxDistance steps. Returns false if it already did. */
+    public boolean update(DungeonMap map, int x, int y, int maxDistance){
+        if(map == this.map && x == targetX && y == targetY && maxDistance == this.maxDistance)
+            return false;
+        setMap(map);
+        targetX = x;
+        targetY = y;
+        this.maxDistance = maxDistance;
+        search();
+        return true;
+    }
+
+    /** steps from x,y to the target, or UNREACHABLE (also if further than maxDistance) */
+    public int getDistance(int x, int y){
+        if(x < 0 || x >= width || y < 0 || y >= height)
+            return UNREACHABLE;
+        int index = y * width + x;
+        return stamps[index] == stamp ? distance[index] : UNREACHABLE;
+    }
+
+    /** direction of a step from x,y that brings a character closer to the target, or null if there is none */
+    public Direction bestStep(int x, int y){
+        int best = getDistance(x, y);
+        if(best == UNREACHABLE || best == 0)
+            return null;
+        int passable = map.getTiles().getPassability(y * width + x);
+        Direction step = null;
+        for(int dir = 0; dir < 4; dir++){
+            int nx = x + dx[dir];
+            int ny = y + dy[dir];
+            int d = getDistance(nx, ny);
+            if(d < best && (passable & (1 << dir)) != 0 && !leavesLevel(x, y, dir)){
+                best = d;
+                step = directions[dir];
+            }
+        }
+        return step;
+    }
+
+    /** number of tiles that got a distance in the last search */
+    public int getReachedCount(){
+        return reached;
+    }
+
+    private void search(){
+        if(++stamp == 0) {      // wrapped around: old stamps could match again
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        TileGrid tiles = map.getTiles();
+        int head = 0;
+        int tail = 0;
+        int target = targetY * width + targetX;
+        distance[target] = 0;
+        stamps[target] = stamp;
+        queue[tail++] = target;
+        while(head < tail){
+            int current = queue[head++];
+            int d = distance[current] + 1;
+            if(d > maxDistance)
+                break;      // the queue is in order of distance
+            int cx = current % width;
+            int cy = current / width;
+            for(int dir = 0; dir < 4; dir++){
+                int nx = cx + dx[dir];
+                int ny = cy + dy[dir];
+                if(nx < 0 || nx >= width || ny < 0 || ny >= height)
+                    continue;
+                int nbor = ny * width + nx;
+                if(stamps[nbor] == stamp)
+                    continue;
+                if(!tiles.isPassable(nbor, (dir + 2) % 4))
+                    continue;       // cannot step from there onto the current tile
+                if(leavesLevel(nx, ny, (dir + 2) % 4))
+                    continue;
+                distance[nbor] = d;
+                stamps[nbor] = stamp;
+                queue[tail++] = nbor;
+            }
+        }
+        reached = tail;
+    }
+
+    // would stepping from x,y in direction dir go down or up the stairs to another level?
+    private boolean leavesLevel(int x, int y, int dir){
+        if(!stairsLeaveLevel)
+            return false;
+        TileType tile = map.getGrid(x, y);
+        if(tile == TileType.STAIRS_DOWN_DEEP)
+            return directions[dir] == map.getOrientation(x, y);
+        if(tile == TileType.STAIRS_UP_HIGH)
+            return directions[dir] == Direction.opposite(map.getOrientation(x, y));
+        return false;
+    }
+
+    private void setMap(DungeonMap map){
+        if(map == this.map)
+            return;
+        this.map = map;
+        width = map.mapWidth;
+        height = map.mapHeight;
+        int size = width * height;
+        if(distance == null || distance.length < size){
+            distance = new int[size];
+            stamps = new int[size];
+            queue = new int[size];
+            stamp = 0;
+        }
+    }
+}
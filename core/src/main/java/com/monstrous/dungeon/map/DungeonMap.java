@@ -1,10 +1,14 @@
 package com.monstrous.dungeon.map;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.DelaunayTriangulator;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.ShortArray;
+import com.monstrous.dungeon.rng.RandomStream;
+import com.monstrous.dungeon.rng.RandomStreams;
+import com.monstrous.dungeon.rng.Subsystem;
 
 
 // This implements an algorithm described by Vazgriz (only for the 2D case) to generate dungeons
@@ -31,52 +35,122 @@ public class    DungeonMap implements Disposable {
     public int roomId;                      // to give each room a unique id
     public float[] vertices;                // array of x,y per room centre
     public ShortArray indices;              // index list from triangulation
-    private TileType[][] grid;             // map grid for fixed architecture, walls, etc.
-    public Direction [][] tileOrientation;      // orientation of tile
-    public int[][] roomCode;                // id of the room
+    public RoomGraph graph;                 // neighbours and corridors between the rooms, and distances in corridors
+    private TileGrid tiles;                 // map grid for fixed architecture, walls, etc. with orientation and room id per tile
+    private GridPathFinder pathFinder;      // reused for all corridors of this map
+    private RoomPlacement placement;        // where rooms are, to place new ones, during generation
+    public final int seed;                  // world seed
+    public final int levelNr;
+    public final RandomStream rnd;          // stream for the architecture of this level
+    private final GenerationProfile profile;    // may be null
 
     // levelNr : 0 for top level, increasing as we go down
     // stairPortals: in= staircases from level above, out= staircases to level below
     //
     public DungeonMap(int mapSeed, int levelNr, int width, int height, Array<Room> stairsFromAbove, Array<Room>stairsToBelow) {
+        this(mapSeed, levelNr, width, height, stairsFromAbove, stairsToBelow, null);
+    }
+
+    // profile: to collect time per generation stage, may be null
+    //
+    public DungeonMap(int mapSeed, int levelNr, int width, int height, Array<Room> stairsFromAbove, Array<Room>stairsToBelow, GenerationProfile profile) {
+        this(mapSeed, levelNr, width, height, stairsFromAbove, stairsToBelow, profile, false);
+    }
+
+    // Only the stairs going down from this level, without the rest of the map. These are the same stairs the full map gets,
+    // because they are the first thing drawn from the level's random stream and only depend on the stairs from above.
+    // That makes it cheap to lay out the stairs of many levels ahead, see LevelGenerator.pregenerate().
+    //
+    public static Array<Room> generateStairs(int mapSeed, int levelNr, int width, int height, Array<Room> stairsFromAbove) {
+        Array<Room> stairsToBelow = new Array<>();
+        new DungeonMap(mapSeed, levelNr, width, height, stairsFromAbove, stairsToBelow, null, true);
+        return stairsToBelow;
+    }
+
+    private DungeonMap(int mapSeed, int levelNr, int width, int height, Array<Room> stairsFromAbove, Array<Room>stairsToBelow, GenerationProfile profile,
+                       boolean stairsOnly) {
         this.mapWidth = width;
         this.mapHeight = height;
+        this.seed = mapSeed;
+        this.levelNr = levelNr;
+        this.profile = profile;
         rooms = new Array<>();
         roomId = 0;
+        placement = new RoomPlacement(width, height);
+
+        if(!stairsOnly)
+            Gdx.app.debug("DungeonMap", "generating level " + levelNr);
 
-        System.out.println("Generating dungeon map for level "+levelNr);
+        if(profile != null)
+            profile.start();
 
         connectStairWells(stairsFromAbove);  // connect to stairs coming down
 
-        MathUtils.random.setSeed(getLevelSeed(mapSeed, levelNr));
+        rnd = RandomStreams.get(mapSeed, levelNr, Subsystem.MAP);
 
         // generate stairs to the level below
         generateStairWells(mapWidth, mapHeight, stairsToBelow);    // stairs going down
+        if(stairsOnly)
+            return;
 
         generateRooms(rooms);
+        placement = null;
+        stopStage(GenerationProfile.Stage.ROOM_PLACEMENT);
 
         addGraph(rooms);
+        stopStage(GenerationProfile.Stage.ADD_GRAPH);
 
         connectRooms();
+        stopStage(GenerationProfile.Stage.CONNECT_ROOMS);
 
         findMinimumSpanningTree();
+        stopStage(GenerationProfile.Stage.MINIMUM_SPANNING_TREE);
 
         addLoopEdges();
+        stopStage(GenerationProfile.Stage.LOOP_EDGES);
+
+        graph.finish();
+        stopStage(GenerationProfile.Stage.ROOM_DISTANCES);
 
         fillGrid();
+        stopStage(GenerationProfile.Stage.FILL_GRID);
 
         makeCorridors();
+        stopStage(GenerationProfile.Stage.MAKE_CORRIDORS);
 
         //addCorridorWalls();
     }
 
-    // derive seed for a specific level of a map
-    private int getLevelSeed(int mapSeed, int level){
-        return 100* mapSeed + level;
+    private void stopStage(GenerationProfile.Stage stage){
+        if(profile != null)
+            profile.stop(stage);
     }
 
     public TileType getGrid(int x, int y){
-        return grid[y][x];
+        return tiles.getType(x, y);
+    }
+
+    public Direction getOrientation(int x, int y){
+        return tiles.getOrientation(x, y);
+    }
+
+    // id of the room at x,y or -1 if this is not part of a room
+    public int getRoomCode(int x, int y){
+        return tiles.getRoomId(x, y);
+    }
+
+    public TileGrid getTiles(){
+        return tiles;
+    }
+
+    // can a character step from x,y to the next tile in this direction? (TileType.walkable, precomputed per tile)
+    public boolean canStep(int x, int y, Direction dir){
+        return tiles.isPassable(x, y, dir);
+    }
+
+    // can an item be dropped at x,y?
+    public boolean isDroppable(int x, int y){
+        return tiles.isDroppable(x, y);
     }
 
     // generate non-overlapping rooms of random size and position until the map is pretty full
@@ -85,12 +159,12 @@ public class    DungeonMap implements Disposable {
         int attempts = 0;
         while(attempts < 150) {       // stop after N attempts to place a random room, the map must be quite full
             Room room = generateRoom(roomId);
-            boolean overlap = checkOverlap(room, rooms);
+            boolean overlap = placement.overlaps(room);
             boolean adjacent = false;
             if(!overlap)
-                adjacent = checkAdjacency(room, rooms);
+                adjacent = placement.isAdjacent(room);
             if(!overlap && !adjacent) {
-                rooms.add(room);
+                addPlacedRoom(room);
                 attempts = 0;
                 roomId++;
             }
@@ -101,8 +175,8 @@ public class    DungeonMap implements Disposable {
 
 
     private Room generateRoom(int id){
-        int w = MathUtils.random(MIN_SIZE, MAX_SIZE);
-        int h = MathUtils.random(MIN_SIZE, MAX_SIZE);
+        int w = rnd.random(MIN_SIZE, MAX_SIZE);
+        int h = rnd.random(MIN_SIZE, MAX_SIZE);
         return placeRoom(id, w, h);
     }
 
@@ -112,7 +186,7 @@ public class    DungeonMap implements Disposable {
         roomId = 0;
         for(Room stairPortal : stairPortals) {
             Room stairWell = connectStairWell(roomId, stairPortal);
-            rooms.add(stairWell);
+            addPlacedRoom(stairWell);
             roomId++;
         }
     }
@@ -153,13 +227,13 @@ public class    DungeonMap implements Disposable {
     // place some stair wells going down
     private void generateStairWells( int mapW, int mapH, Array<Room> stairPortals){
         stairPortals.clear();
-        int count = MathUtils.random(1, 2); // how many stair wells to generate?
+        int count = rnd.random(1, 2); // how many stair wells to generate?
         while(count > 0){
             Room stairWell = generateStairWell(roomId,  mapW, mapH);
 
-            boolean overlap = checkOverlap(stairWell, rooms);
+            boolean overlap = placement.overlaps(stairWell);
             if(!overlap) {
-                rooms.add(stairWell);
+                addPlacedRoom(stairWell);
                 stairPortals.add(stairWell);
                 roomId++;
                 count--;
@@ -169,7 +243,7 @@ public class    DungeonMap implements Disposable {
 
     // a stair well is a special type of room of fixed size with stair tiles inside.
     private Room generateStairWell(int id, int mapW, int mapH){
-        int d = MathUtils.random(0, 3); // random direction NESW
+        int d = rnd.random(0, 3); // random direction NESW
         Direction direction = Direction.values()[d];
 
         // place horizontal or vertical
@@ -202,37 +276,21 @@ public class    DungeonMap implements Disposable {
 
     private Room placeRoom(int id, int w, int h, int mapW, int mapH){
         // leave three cell margin from the edge of the map for the walls to go and to allow for corridors on the outside with a wall of its own
-        int x = MathUtils.random(3, mapW - (w+4));
-        int y = MathUtils.random(3, mapH - (h+4));
+        int x = rnd.random(3, mapW - (w+4));
+        int y = rnd.random(3, mapH - (h+4));
         return new Room(id, x, y, w, h);
     }
 
 
 
-    private boolean checkOverlap(Room newRoom, Array<Room> rooms){
-        for(Room room : rooms ){
-            if(room.overlaps(newRoom))
-                return true;
-        }
-        return false;
+    private void addPlacedRoom(Room room){
+        rooms.add(room);
+        placement.add(room);
     }
 
-    // avoid rooms that are immediately next to each other with 2 separate walls.  They should share a common wall or it looks weird.
-    //
-    private boolean checkAdjacency(Room newRoom, Array<Room> rooms){
-
-        for(Room room : rooms ){
-            if(room.x+room.width == newRoom.x-1)
-                return true;
-            if(room.x-1 == newRoom.x+newRoom.width)
-                return true;
-            if(room.y+room.height == newRoom.y-1)
-                return true;
-            if(room.y-1 == newRoom.y+newRoom.height)
-                return true;
-        }
-        return false;
-    }
+    // Overlap with any room (Room.overlaps) and adjacency are tested by RoomPlacement.
+    // Adjacency: avoid rooms that are immediately next to each other with 2 separate walls.  They should share a common
+    // wall or it looks weird. (This compares the edges of the new room with those of all rooms, wherever they are.)
 
     // Triangulate all room centres using Delaunay
     // The triangulation is represented by vertices + indices.
@@ -252,6 +310,7 @@ public class    DungeonMap implements Disposable {
     // Use the triangulation data to connect joining rooms
     // This translates the graphical triangle data to logical node connections
     private void connectRooms(){
+        graph = new RoomGraph(rooms);
         for( int tri = 0; tri < indices.size; tri+= 3 ){
             int i1 = indices.get(tri);
             int i2 = indices.get(tri+1);
@@ -263,72 +322,33 @@ public class    DungeonMap implements Disposable {
             float x3 = vertices[2*i3];
             float y3 = vertices[2*i3+1];
 
-            Room r1 = findRoomByPosition(x1, y1);
-            Room r2 = findRoomByPosition(x2, y2);
-            Room r3 = findRoomByPosition(x3, y3);
-            r1.addNeighbour(r2);
-            r1.addNeighbour(r3);
-            r2.addNeighbour(r1);
-            r2.addNeighbour(r3);
-            r3.addNeighbour(r1);
-            r3.addNeighbour(r2);
+            int r1 = findRoomByPosition(x1, y1);
+            int r2 = findRoomByPosition(x2, y2);
+            int r3 = findRoomByPosition(x3, y3);
+            graph.addNeighbour(r1, r2);
+            graph.addNeighbour(r1, r3);
+            graph.addNeighbour(r2, r1);
+            graph.addNeighbour(r2, r3);
+            graph.addNeighbour(r3, r1);
+            graph.addNeighbour(r3, r2);
 
         }
+        graph.buildNeighbours();
     }
 
-    private Room findRoomByPosition(float x, float y){
-        for(Room room : rooms ){
-            if( MathUtils.isEqual(room.centre.x, x, 0.1f) &&  MathUtils.isEqual(room.centre.y, y, 0.1f))
-                return room;
-        }
-        throw new RuntimeException("Room cannot be found by position");
+    private int findRoomByPosition(float x, float y){
+        int id = graph.findRoom(MathUtils.round(x), MathUtils.round(y));    // room centres are on whole tiles
+        if(id < 0)
+            throw new RuntimeException("Room cannot be found by position");
+        return id;
     }
 
     private void findMinimumSpanningTree(){
-        // Using Prim-Dijkstra algorithm
+        // Using Prim-Dijkstra algorithm, see RoomGraph
         //
-        Array<Room> connected = new Array<>();      // the tree, initially empty
-        Array<Room> unconnected = new Array<>();    // nodes not in the tree, initially all of them
-        for(Room room : rooms )
-            unconnected.add(room);
-
         // choose random room to start with
-        int root = MathUtils.random(0, rooms.size-1);
-
-
-        Room closestRoom = rooms.get(root);
-
-        while(closestRoom != null) {
-
-            // move room from unconnected to connected, because now it is in the tree
-            unconnected.removeValue(closestRoom, true);
-            connected.add(closestRoom);
-
-
-            // find unconnected room with the smallest distance to (any branch in) the tree
-            closestRoom = null;
-            Room connectingBranch = null;
-            float smallestDistance = Float.MAX_VALUE;
-            for (Room node : connected) {
-                for (int i = 0; i < node.nbors.size; i++) {
-                    Room nbor = node.nbors.get(i);
-                    if (connected.contains(nbor, true))  // neighbour already in the tree? skip
-                        continue;
-                    float distance = node.distances.get(i);
-                    if (distance < smallestDistance) {    // closest so far
-                        smallestDistance = distance;
-                        closestRoom = nbor;
-                        connectingBranch = node;
-                    }
-                }
-            }
-            if(closestRoom == null)
-                break;
-
-            // store the link from both sides
-            closestRoom.addCloseNeighbour(connectingBranch);
-            connectingBranch.addCloseNeighbour(closestRoom);
-        }
+        int root = rnd.random(0, rooms.size-1);
+        graph.addMinimumSpanningTree(rooms.get(root).id);
     }
 
     // Add some random edges from the triangulation to the ones selected by the minimum spanning tree
@@ -336,30 +356,18 @@ public class    DungeonMap implements Disposable {
     //
     private void addLoopEdges(){
         for(Room room : rooms ){
-            for(Room nbor : room.nbors ){
-                if(room.closeNeighbours.contains(nbor, true))       // is already a close neighbour
+            for(int k = 0; k < graph.getNeighbourCount(room.id); k++){
+                int nbor = graph.getNeighbour(room.id, k);
+                if(graph.haveCorridor(room.id, nbor))       // is already a close neighbour
                     continue;
-                if(MathUtils.random(1.0f) < LOOP_FACTOR) { // with some probability
-                    room.addCloseNeighbour(nbor);
-                    nbor.addCloseNeighbour(room);
-                }
+                if(rnd.random(1.0f) < LOOP_FACTOR)  // with some probability
+                    graph.addCorridor(room.id, nbor);
             }
         }
     }
 
     private void fillGrid(){
-        grid = new TileType[mapHeight][mapWidth];
-        tileOrientation = new Direction[mapHeight][mapWidth];
-        roomCode = new int[mapHeight][mapWidth];
-
-        // init whole grid to empty space
-        for(int x = 0; x < mapWidth; x++) {
-            for (int y = 0; y < mapHeight; y++) {
-                grid[y][x] = TileType.VOID;
-                tileOrientation[y][x] = Direction.NORTH;
-                roomCode[y][x] = -1;
-            }
-        }
+        tiles = new TileGrid(mapWidth, mapHeight);     // init whole grid to empty space
 
         for(Room room : rooms ){
             if(room.isStairWell)
@@ -382,8 +390,8 @@ public class    DungeonMap implements Disposable {
             dir = Direction.opposite(dir);
         for(int x = 0; x < rw; x++){
             for(int y = 0; y < rh; y++){
-                roomCode[ry+y][rx+x] = room.id;
-                tileOrientation[ry+y][rx+x] = dir;
+                tiles.setRoomId(rx+x, ry+y, room.id);
+                tiles.setOrientation(rx+x, ry+y, dir);
             }
         }
 
@@ -393,24 +401,24 @@ public class    DungeonMap implements Disposable {
 
         switch(room.stairsDirection){
             case NORTH:
-                grid[room.y][room.x] = TileType.ROOM;
-                grid[room.y+1][room.x] = room.stairType;
-                grid[room.y+2][room.x] = t2;
+                tiles.setType(room.x, room.y, TileType.ROOM);
+                tiles.setType(room.x, room.y+1, room.stairType);
+                tiles.setType(room.x, room.y+2, t2);
                 break;
             case SOUTH:
-                grid[room.y+2][room.x] = TileType.ROOM;
-                grid[room.y+1][room.x] = room.stairType;
-                grid[room.y][room.x] = t2;
+                tiles.setType(room.x, room.y+2, TileType.ROOM);
+                tiles.setType(room.x, room.y+1, room.stairType);
+                tiles.setType(room.x, room.y, t2);
                 break;
             case EAST:
-                grid[room.y][room.x] = TileType.ROOM;
-                grid[room.y][room.x+1] = room.stairType;
-                grid[room.y][room.x+2] = t2;
+                tiles.setType(room.x, room.y, TileType.ROOM);
+                tiles.setType(room.x+1, room.y, room.stairType);
+                tiles.setType(room.x+2, room.y, t2);
                 break;
             case WEST:
-                grid[room.y][room.x+2] = TileType.ROOM;
-                grid[room.y][room.x+1] = room.stairType;
-                grid[room.y][room.x] = t2;
+                tiles.setType(room.x+2, room.y, TileType.ROOM);
+                tiles.setType(room.x+1, room.y, room.stairType);
+                tiles.setType(room.x, room.y, t2);
                 break;
         }
 
@@ -426,7 +434,7 @@ public class    DungeonMap implements Disposable {
 
         for(int x = 0; x <= rw; x++){
             for(int y = 0; y <= rh; y++){
-                roomCode[ry+y][rx+x] = room.id;
+                tiles.setRoomId(rx+x, ry+y, room.id);
             }
         }
 
@@ -435,7 +443,7 @@ public class    DungeonMap implements Disposable {
         //
         for(int x = 1; x < rw; x++){
             for(int y = 1; y < rh; y++){
-                grid[ry+y][rx+x] = TileType.ROOM;
+                tiles.setType(rx+x, ry+y, TileType.ROOM);
             }
         }
 
@@ -460,33 +468,33 @@ public class    DungeonMap implements Disposable {
     }
 
     private void placeWall(int x, int y, Direction dir){
-        if(grid[y][x] != TileType.VOID) {
-            if(grid[y][x] == TileType.WALL && (tileOrientation[y][x] == dir || tileOrientation[y][x] == Direction.opposite(dir)) )
+        if(tiles.getType(x, y) != TileType.VOID) {
+            if(tiles.getType(x, y) == TileType.WALL && (tiles.getOrientation(x, y) == dir || tiles.getOrientation(x, y) == Direction.opposite(dir)) )
                 return;     // aligned with existing wall
-//            System.out.println("Wall into non-void " + x + " , " + y + " type:" + grid[y][x]);
-            grid[y][x] = TileType.WALL_T_SPLIT;
-            tileOrientation[y][x] = dir;
+//            System.out.println("Wall into non-void " + x + " , " + y + " type:" + tiles.getType(x, y));
+            tiles.setType(x, y, TileType.WALL_T_SPLIT);
+            tiles.setOrientation(x, y, dir);
         } else {
-            grid[y][x] = TileType.WALL;
-            tileOrientation[y][x] = dir;
+            tiles.setType(x, y, TileType.WALL);
+            tiles.setOrientation(x, y, dir);
         }
     }
 
     private void placeCorner(int x, int y, Direction dir){
-        if(grid[y][x] != TileType.VOID) {
-//            System.out.println("Corner into non-void " + x + " , " + y + " type:" + grid[y][x]+" in dir "+tileOrientation[y][x]);
-            if(grid[y][x] == TileType.WALL)
-                grid[y][x] = TileType.WALL_T_SPLIT; // keep wall orientation
-            else if (grid[y][x] == TileType.WALL_CORNER)    // 2 corners            should sometime be a T
-                grid[y][x] = TileType.WALL_CROSSING;
+        if(tiles.getType(x, y) != TileType.VOID) {
+//            System.out.println("Corner into non-void " + x + " , " + y + " type:" + tiles.getType(x, y)+" in dir "+tiles.getOrientation(x, y));
+            if(tiles.getType(x, y) == TileType.WALL)
+                tiles.setType(x, y, TileType.WALL_T_SPLIT); // keep wall orientation
+            else if (tiles.getType(x, y) == TileType.WALL_CORNER)    // 2 corners            should sometime be a T
+                tiles.setType(x, y, TileType.WALL_CROSSING);
         } else {
-            grid[y][x] = TileType.WALL_CORNER;
-            tileOrientation[y][x] = dir;
+            tiles.setType(x, y, TileType.WALL_CORNER);
+            tiles.setOrientation(x, y, dir);
         }
     }
 
     private void addDoor(int x, int y, Direction direction){
-        grid[y][x] = TileType.DOORWAY; tileOrientation[y][x] = direction;
+        tiles.set(x, y, TileType.DOORWAY, direction);
     }
 
     private void makeCorridors(){
@@ -498,146 +506,72 @@ public class    DungeonMap implements Disposable {
         }
     }
 
-    private static class Node{
-        int x, y;
-        int cost;
-        Node parent;
-
-        public Node(int x, int y, int cost, Node parent) {
-            this.x = x;
-            this.y = y;
-            this.cost = cost;
-            this.parent = parent;
+    private void makeCorridor(Room A, Room B){
+        if(pathFinder == null)
+            pathFinder = new GridPathFinder(mapWidth, mapHeight);
+
+        int cell = pathFinder.findPath(A.centre.x, A.centre.y, B.centre.x, B.centre.y, this::corridorCost);
+
+        // back trace the steps and update the grid
+        while(cell >= 0) {
+            int x = cell % mapWidth;
+            int y = cell / mapWidth;
+            if (tiles.getType(x, y) == TileType.VOID)
+                tiles.setType(x, y, TileType.CORRIDOR);
+            if (tiles.getType(x, y) == TileType.WALL  )
+                tiles.setType(x, y, TileType.DOORWAY);
+            cell = pathFinder.getParent(cell);
         }
     }
 
-    private final int[] dx = { 0, 1, 0, -1 };
-    private final int[] dy = { 1, 0, -1, 0 };
-
-    private void makeCorridor(Room A, Room B){
-        int x = A.centre.x;
-        int y = A.centre.y;
-        int targetX = B.centre.x;
-        int targetY = B.centre.y;
-        Node root = new Node(x, y, 0, null);
-        Array<Node> closed = new Array<>();
-        Array<Node> fringe = new Array<>();
-
-        fringe.add(root);
-
-        while(fringe.size > 0){
-
-            // find closest node in the fringe
-            int minCost = Integer.MAX_VALUE;
-            Node current = null;
-            for(Node n : fringe){
-                if(n.cost < minCost){
-                    minCost = n.cost;
-                    current = n;
-                }
-            }
-            assert current != null;
-
-            // did we reach the goal?
-            if(current.x == targetX && current.y == targetY) { // found target
-                // back trace the steps and update the grid
-                while(current != null) {
-                    if (grid[current.y][current.x] == TileType.VOID)
-                        grid[current.y][current.x] = TileType.CORRIDOR;
-                    if (grid[current.y][current.x] == TileType.WALL  )
-                        grid[current.y][current.x] = TileType.DOORWAY;
-                    current = current.parent;
-                }
-                return; // finished
-            }
-
-            // remove node from fringe and add it to the closed set
-            fringe.removeValue(current, true);
-            closed.add(current);
-
-            // for each neighbour of current
-            for(int dir = 0; dir < 4; dir++){
-                int nx = current.x + dx[dir];
-                int ny = current.y + dy[dir];
-                if(nx < 0 || nx >= mapWidth || ny < 0 || ny >= mapHeight)
-                    continue;
-
-                // if neighbour in closed set, skip it
-                boolean found = false;
-                for(Node n : closed){
-                    if(n.x == nx && n.y == ny) {
-                        found = true;
-                        break;
-                    }
-                }
-                if(found)
-                    continue;
-
-                // calculate cost to neighbour via current
-                int cost = current.cost;
-                switch(grid[ny][nx]){
-                    case VOID:     cost += 5; break;
-                    case ROOM:      cost += 10; break;
-                    case CORRIDOR:  cost += 1; break;       // preferred
-                    case WALL:      cost += 20; break;
-
-                    // never path through the following tiles:
-                    case WALL_CORNER:
-                    case WALL_T_SPLIT:
-                    case WALL_CROSSING:
-                    case STAIRS_DOWN:
-                    case STAIRS_DOWN_DEEP:
-                    case STAIRS_UP:
-                    case STAIRS_UP_HIGH:
-                        cost += 500; break;
-                }
-                Node nbor = null;
-                for(Node n : fringe){
-                    if(n.x == nx && n.y == ny) {
-                        nbor = n;
-                        break;
-                    }
-                }
-                if(nbor == null) {
-                    nbor = new Node(nx, ny, cost, current);
-                    fringe.add(nbor);
-                } else {
-                    if(cost < nbor.cost){
-                        nbor.cost = cost;       // found a shorter path for neighbour
-                        nbor.parent = current;
-                    }
-                }
-            }
+    // cost of digging a corridor through this cell, with a bias to join existing corridors
+    private int corridorCost(int x, int y){
+        switch(tiles.getType(x, y)){
+            case VOID:      return 5;
+            case ROOM:      return 10;
+            case CORRIDOR:  return 1;       // preferred
+            case WALL:      return 20;
+
+            // never path through the following tiles:
+            case WALL_CORNER:
+            case WALL_T_SPLIT:
+            case WALL_CROSSING:
+            case STAIRS_DOWN:
+            case STAIRS_DOWN_DEEP:
+            case STAIRS_UP:
+            case STAIRS_UP_HIGH:
+                return 500;
+            default:
+                return 0;
         }
     }
 
-    private final int[] ddx = { -1 , 0, 1, -1, 1, -1, 0, 1 };
-    private final int[] ddy = { -1, -1, -1, 0, 0, 1, 1, 1 };
-
-
-    // put walls around corridors where necessary, i.e. where next to an empty cell, including diagonals
-    private void addCorridorWalls(){
-        for(int x = 0; x < mapWidth; x++){
-            for(int y = 0; y < mapHeight; y++){
-                if(grid[y][x] == TileType.CORRIDOR){
-                    for(int dir = 0; dir < 8; dir++){
-                        if(grid[y+ddy[dir]][x+ddx[dir]] == TileType.VOID) {
-                            if(dir == 1 || dir == 3 || dir == 4 || dir == 6){
-                                grid[y + ddy[dir]][x + ddx[dir]] = TileType.WALL;
-                                if(dir == 3 || dir ==4)
-                                    tileOrientation[y + ddy[dir]][x + ddx[dir]] = Direction.EAST;
-                            }
-//                            else {
-//                                grid[y + ddy[dir]][x + ddx[dir]] = CORNER;
-//                            }
-//                            if(dir == 0 || dir == 3 || dir == 4 || dir == 5)
-//                                orientation[y + ddy[dir]][x + ddx[dir]] = 1;
-
-                        }
-                    }
-                }
+    // put walls around corridors where necessary, i.e. where next to an empty cell
+    // (not used by the game at the moment, but public so the headless tools can include it)
+    //
+    // Decided per empty cell, scanning the grid in storage order. This gives the same result as visiting
+    // the corridor cells column by column: a wall to the east of a corridor faces EAST, then a wall above or
+    // below a corridor keeps its orientation, then a wall to the west of a corridor faces EAST.
+    public void addCorridorWalls(){
+        if(profile != null)
+            profile.start();
+        for(int y = 0; y < mapHeight; y++){
+            for(int x = 0; x < mapWidth; x++){
+                if((tiles.getFloorNeighbours(x, y) & TileGrid.NEIGHBOURS_ORTHOGONAL) == 0 || tiles.getType(x, y) != TileType.VOID)
+                    continue;   // no corridor next to it
+                if(isCorridor(x-1, y))
+                    tiles.set(x, y, TileType.WALL, Direction.EAST);
+                else if(isCorridor(x, y-1) || isCorridor(x, y+1))
+                    tiles.setType(x, y, TileType.WALL);
+                else if(isCorridor(x+1, y))
+                    tiles.set(x, y, TileType.WALL, Direction.EAST);
             }
         }
+        stopStage(GenerationProfile.Stage.CORRIDOR_WALLS);
+    }
+
+    private boolean isCorridor(int x, int y){
+        return tiles.contains(x, y) && tiles.getType(x, y) == TileType.CORRIDOR;
     }
 
 
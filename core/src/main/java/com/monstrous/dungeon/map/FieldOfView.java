@@ -0,0 +1,189 @@
+package com.monstrous.dungeon.map;
+
+import java.util.Arrays;
+
+
+// Field of view over the tile grid of a dungeon map by recursive shadowcasting.
+//
+// The area around the viewer is split in 8 octants. Each octant is scanned row by row moving away from the viewer,
+// keeping track of the slopes that are still lit. An opaque tile casts a shadow: the scan recurses for the lit part
+// before it and carries on after it. The 8 octants only differ in how row/column map to x/y, which is kept in
+// the constant tables below, so one scan routine serves all of them.
+//
+// Walls, corners and void block the view but are visible themselves. Floors, doorways and stairs are see-through.
+// The opaque tiles of the current map are kept as a bit set, built once per map.
+// The result is a bit set over the whole map that is reused for every computation: only the area of the
+// previous computation is cleared. Nothing is allocated per call, so it can be run for every character every turn.
+// Not thread safe: use one instance per thread.
+
+public class FieldOfView {
+
+    // per octant: x = ox + col * XX + row * XY,  y = oy + col * YX + row * YY
+    private static final int[] XX = { 1, 0, 0, -1, -1, 0, 0, 1 };
+    private static final int[] XY = { 0, 1, -1, 0, 0, -1, 1, 0 };
+    private static final int[] YX = { 0, 1, 1, 0, 0, -1, -1, 0 };
+    private static final int[] YY = { 1, 0, 0, 1, -1, 0, 0, -1 };
+
+    private DungeonMap map;         // map the opaque bits were built for
+    private int width, height;
+    private long[] opaque;          // per tile, does it block the view?
+    private long[] visible;         // per tile, result of the last computation
+    private int minX, minY, maxX = -1, maxY = -1;     // area that may have visible bits
+    private int radius2;            // squared radius of the current computation
+
+    /** compute the tiles visible from x,y up to radius tiles away (circular) */
+    public void compute(DungeonMap map, int x, int y, int radius){
+        setMap(map);
+        clear();
+        minX = Math.max(0, x - radius);
+        maxX = Math.min(width-1, x + radius);
+        minY = Math.max(0, y - radius);
+        maxY = Math.min(height-1, y + radius);
+        radius2 = radius * radius + radius;     // a bit more than r*r gives rounder circles
+        setVisible(x, y);
+        for(int octant = 0; octant < 8; octant++)
+            castLight(x, y, 1, 1.0f, 0.0f, radius, XX[octant], XY[octant], YX[octant], YY[octant]);
+    }
+
+    /** was x,y visible in the last computation? False outside the map. */
+    public boolean isVisible(int x, int y){
+        if(x < minX || x > maxX || y < minY || y > maxY)
+            return false;
+        int index = y * width + x;
+        return (visible[index >> 6] & (1L << index)) != 0;
+    }
+
+    /** can a viewer at fromX,fromY see toX,toY within radius? Overwrites the last computation. */
+    public boolean canSee(DungeonMap map, int fromX, int fromY, int toX, int toY, int radius){
+        int dx = toX - fromX;
+        int dy = toY - fromY;
+        if(dx * dx + dy * dy > radius * radius + radius)
+            return false;       // too far, don't bother
+        compute(map, fromX, fromY, radius);
+        return isVisible(toX, toY);
+    }
+
+    // bounds of the area of the last computation, visible tiles are inside it
+    public int getMinX() { return minX; }
+    public int getMinY() { return minY; }
+    public int getMaxX() { return maxX; }
+    public int getMaxY() { return maxY; }
+
+    public int getVisibleCount(){
+        int count = 0;
+        for(int y = minY; y <= maxY; y++)
+            for(int x = minX; x <= maxX; x++)
+                if(isVisible(x, y))
+                    count++;
+        return count;
+    }
+
+    private void castLight(int ox, int oy, int row, float start, float end, int radius, int xx, int xy, int yx, int yy){
+        if(start < end)
+            return;
+        float newStart = 0;
+        for(int j = row; j <= radius; j++){
+            boolean blocked = false;
+            int dy = -j;
+            for(int dx = -j; dx <= 0; dx++){
+                int x = ox + dx * xx + dy * xy;
+                int y = oy + dx * yx + dy * yy;
+                float leftSlope = (dx - 0.5f) / (dy + 0.5f);
+                float rightSlope = (dx + 0.5f) / (dy - 0.5f);
+                if(start < rightSlope)
+                    continue;
+                if(end > leftSlope)
+                    break;
+
+                boolean inside = x >= 0 && x < width && y >= 0 && y < height;
+                if(inside && dx * dx + dy * dy <= radius2)
+                    setVisible(x, y);
+                boolean blocking = !inside || isOpaque(x, y);
+                if(blocked){
+                    if(blocking) {
+                        newStart = rightSlope;
+                    }
+                    else {
+                        blocked = false;
+                        start = newStart;
+                    }
+                }
+                else if(blocking && j < radius){
+                    // the lit part before this tile continues on the next rows
+                    blocked = true;
+                    castLight(ox, oy, j+1, start, leftSlope, radius, xx, xy, yx, yy);
+                    newStart = rightSlope;
+                }
+            }
+            if(blocked)
+                break;
+        }
+    }
+
+    private void setVisible(int x, int y){
+        int index = y * width + x;
+        visible[index >> 6] |= 1L << index;
+    }
+
+    private boolean isOpaque(int x, int y){
+        int index = y * width + x;
+        return (opaque[index >> 6] & (1L << index)) != 0;
+    }
+
+    // clear the area of the previous computation
+    private void clear(){
+        for(int y = minY; y <= maxY; y++){
+            int from = y * width + minX;
+            int to = y * width + maxX;      // inclusive
+            int fromWord = from >> 6;
+            int toWord = to >> 6;
+            if(fromWord == toWord){
+                visible[fromWord] &= ~((-1L << from) & (-1L >>> (63 - (to & 63))));
+                continue;
+            }
+            visible[fromWord] &= ~(-1L << from);
+            for(int w = fromWord+1; w < toWord; w++)
+                visible[w] = 0;
+            visible[toWord] &= -1L << to << 1;
+        }
+    }
+
+    private void setMap(DungeonMap map){
+        if(map == this.map)
+            return;
+        this.map = map;
+        width = map.mapWidth;
+        height = map.mapHeight;
+        int words = (width * height + 63) >> 6;
+        if(visible == null || visible.length < words) {
+            visible = new long[words];
+            opaque = new long[words];
+        }
+        else {
+            Arrays.fill(visible, 0);
+            Arrays.fill(opaque, 0);
+        }
+        minX = minY = 0;
+        maxX = maxY = -1;       // nothing to clear
+
+        TileGrid tiles = map.getTiles();
+        for(int index = 0; index < width * height; index++)
+            if(tiles.isOpaque(index))
+                opaque[index >> 6] |= 1L << index;
+    }
+
+    public static boolean blocksView(TileType type){
+        switch(type){
+            case ROOM:
+            case CORRIDOR:
+            case DOORWAY:
+            case STAIRS_DOWN:
+            case STAIRS_DOWN_DEEP:
+            case STAIRS_UP:
+            case STAIRS_UP_HIGH:
+                return false;
+            default:
+                return true;
+        }
+    }
+}
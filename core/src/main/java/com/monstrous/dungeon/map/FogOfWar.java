@@ -0,0 +1,223 @@
+package com.monstrous.dungeon.map;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/** What the player has seen of a level: one bit per tile (row-major, 64 tiles per long) and one bit per room.
+ *
+ * Revealing a tile or a room that was not seen before also records it in the change set, so the scenes only need to
+ * add what was revealed this turn instead of scanning the level. Whoever shows the changes clears them.
+ */
+public class FogOfWar {
+    public final int width, height;
+    private final long[] tiles;
+    private final long[] rooms;
+
+    // change set: revealed since the last clearChanges()
+    private final IntArray revealedTiles = new IntArray();     // tile index y*width+x
+    private final IntArray revealedRooms = new IntArray();     // room ids
+
+    public FogOfWar(int width, int height, int numRooms) {
+        this.width = width;
+        this.height = height;
+        tiles = new long[(width * height + 63) >> 6];
+        rooms = new long[(numRooms + 63) >> 6];
+    }
+
+    public boolean isTileSeen(int x, int y){
+        int index = y * width + x;
+        return (tiles[index >> 6] & (1L << index)) != 0;
+    }
+
+    /** mark tile as seen, returns true (and records the change) if it was not seen before */
+    public boolean revealTile(int x, int y){
+        int index = y * width + x;
+        long bit = 1L << index;
+        if((tiles[index >> 6] & bit) != 0)
+            return false;
+        tiles[index >> 6] |= bit;
+        revealedTiles.add(index);
+        return true;
+    }
+
+    /** set or reset a tile without recording a change, e.g. when restoring a level */
+    public void setTileSeen(int x, int y, boolean seen){
+        int index = y * width + x;
+        if(seen)
+            tiles[index >> 6] |= 1L << index;
+        else
+            tiles[index >> 6] &= ~(1L << index);
+    }
+
+    /** reveal the corridor and doorway tiles in view. Rooms are revealed as a whole, see revealRoom(). */
+    public void revealVisible(DungeonMap map, FieldOfView fov){
+        TileGrid tiles = map.getTiles();
+        for(int y = fov.getMinY(); y <= fov.getMaxY(); y++){
+            for(int x = fov.getMinX(); x <= fov.getMaxX(); x++){
+                if(!fov.isVisible(x, y))
+                    continue;
+                TileType type = tiles.getType(x, y);
+                if(TileType.hasFloor(type) && (type == TileType.DOORWAY || tiles.getRoomId(x, y) < 0))
+                    revealTile(x, y);
+            }
+        }
+    }
+
+    public boolean isRoomSeen(int roomId){
+        return (rooms[roomId >> 6] & (1L << roomId)) != 0;
+    }
+
+    /** mark room and all its tiles as seen, returns true (and records the room, not its tiles) if it was not seen before */
+    public boolean revealRoom(Room room){
+        long bit = 1L << room.id;
+        if((rooms[room.id >> 6] & bit) != 0)
+            return false;
+        rooms[room.id >> 6] |= bit;
+        for(int y = room.y; y <= room.y + room.height; y++)
+            for(int x = room.x; x <= room.x + room.width; x++)
+                setTileSeen(x, y, true);
+        revealedRooms.add(room.id);
+        return true;
+    }
+
+    /** tiles revealed since the last clearChanges(), as tile index y*width+x */
+    public IntArray getRevealedTiles(){
+        return revealedTiles;
+    }
+
+    /** rooms revealed since the last clearChanges() */
+    public IntArray getRevealedRooms(){
+        return revealedRooms;
+    }
+
+    public boolean hasChanges(){
+        return revealedTiles.size > 0 || revealedRooms.size > 0;
+    }
+
+    public void clearChanges(){
+        revealedTiles.clear();
+        revealedRooms.clear();
+    }
+
+    /** next seen tile index from index onwards, or -1. Skips 64 unseen tiles at a time. */
+    public int nextSeenTile(int index){
+        int word = index >> 6;
+        if(word >= tiles.length)
+            return -1;
+        long bits = tiles[word] & (-1L << index);
+        while(bits == 0){
+            if(++word == tiles.length)
+                return -1;
+            bits = tiles[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    public int getSeenTileCount(){
+        int count = 0;
+        for(long bits : tiles)
+            count += Long.bitCount(bits);
+        return count;
+    }
+
+    public int getSeenRoomCount(){
+        int count = 0;
+        for(long bits : rooms)
+            count += Long.bitCount(bits);
+        return count;
+    }
+
+    // Tiles are written sparse (index and value of the non-zero words) or dense, whichever is smaller.
+    // A level the player only passed through is mostly zero words.
+    private static final int DENSE = 0;
+    private static final int SPARSE = 1;
+
+    public void write(DataOutput out) throws IOException {
+        out.writeShort(width);
+        out.writeShort(height);
+        int nonZero = 0;
+        for(long bits : tiles)
+            if(bits != 0)
+                nonZero++;
+        if(nonZero * 12 < tiles.length * 8) {
+            out.writeByte(SPARSE);
+            out.writeInt(nonZero);
+            for(int i = 0; i < tiles.length; i++) {
+                if (tiles[i] != 0) {
+                    out.writeInt(i);
+                    out.writeLong(tiles[i]);
+                }
+            }
+        }
+        else {
+            out.writeByte(DENSE);
+            for(long bits : tiles)
+                out.writeLong(bits);
+        }
+        out.writeShort(rooms.length);
+        for(long bits : rooms)
+            out.writeLong(bits);
+    }
+
+    /** read what was written for a map of this size without keeping it, throws an IOException if it is corrupt */
+    public static void check(DataInput in, int width, int height) throws IOException {
+        int w = in.readShort();
+        int h = in.readShort();
+        if(w != width || h != height)
+            throw new IOException("Fog of war does not match the map size");
+        int numWords = (width * height + 63) >> 6;
+        if(in.readByte() == SPARSE) {
+            int nonZero = in.readInt();
+            if(nonZero < 0 || nonZero > numWords)
+                throw new IOException("Fog of war has " + nonZero + " words");
+            for(int i = 0; i < nonZero; i++) {
+                int word = in.readInt();
+                if(word < 0 || word >= numWords)
+                    throw new IOException("Fog of war word out of range: " + word);
+                in.readLong();
+            }
+        }
+        else {
+            for(int i = 0; i < numWords; i++)
+                in.readLong();
+        }
+        int roomWords = in.readShort();
+        if(roomWords < 0)
+            throw new IOException("Fog of war has " + roomWords + " room words");
+        for(int i = 0; i < roomWords; i++)
+            in.readLong();
+    }
+
+    /** restore what was written, the change set stays empty */
+    public void read(DataInput in) throws IOException {
+        int w = in.readShort();
+        int h = in.readShort();
+        if(w != width || h != height)
+            throw new IOException("Fog of war does not match the map size");
+        Arrays.fill(tiles, 0);
+        if(in.readByte() == SPARSE) {
+            int nonZero = in.readInt();
+            for(int i = 0; i < nonZero; i++) {
+                int word = in.readInt();
+                if(word < 0 || word >= tiles.length)
+                    throw new IOException("Fog of war word out of range: " + word);
+                tiles[word] = in.readLong();
+            }
+        }
+        else {
+            for(int i = 0; i < tiles.length; i++)
+                tiles[i] = in.readLong();
+        }
+        int numWords = in.readShort();
+        if(numWords != rooms.length)
+            throw new IOException("Fog of war does not match the number of rooms");
+        for(int i = 0; i < numWords; i++)
+            rooms[i] = in.readLong();
+        clearChanges();
+    }
+}
@@ -0,0 +1,46 @@
+package com.monstrous.dungeon.map;
+
+
+/** Optional timing of the stages of level generation, used by the headless tools to spot regressions.
+ * One profile belongs to one level being generated: not thread safe. */
+public class GenerationProfile {
+
+    public enum Stage {
+        ROOM_PLACEMENT,         // stair wells and rooms
+        ADD_GRAPH,              // Delaunay triangulation
+        CONNECT_ROOMS,
+        MINIMUM_SPANNING_TREE,
+        LOOP_EDGES,
+        ROOM_DISTANCES,         // corridors between all pairs of rooms
+        FILL_GRID,
+        MAKE_CORRIDORS,
+        CORRIDOR_WALLS,
+        POPULATE                // items and enemies
+    }
+
+    public final long[] nanos = new long[Stage.values().length];   // time per stage
+    private long startTime;
+
+    /** mark the start of a stage */
+    public void start(){
+        startTime = System.nanoTime();
+    }
+
+    /** add the time since start() to a stage, and start timing the next one */
+    public void stop(Stage stage){
+        long now = System.nanoTime();
+        nanos[stage.ordinal()] += now - startTime;
+        startTime = now;
+    }
+
+    public long getNanos(Stage stage){
+        return nanos[stage.ordinal()];
+    }
+
+    public long getTotalNanos(){
+        long total = 0;
+        for(long n : nanos)
+            total += n;
+        return total;
+    }
+}
@@ -0,0 +1,181 @@
+package com.monstrous.dungeon.map;
+
+
+// Shortest path search over a rectangular grid of cells with 4-connectivity.
+//
+// Cells are addressed by an int id: y * width + x.
+// The open set is an indexed binary heap of cell ids, so the cheapest cell is found in O(log n) and
+// the cost of a cell already in the open set can be lowered in place.
+// Costs, parents and open/closed membership are kept in flat int arrays that are sized once and reused
+// for every search. Instead of clearing them per search, each search gets a new stamp value and a cell
+// only counts as open or closed if its stamp matches the current search.
+//
+// Ties on cost are broken in favour of the cell that entered the open set first.  This matches the
+// order in which the original list-based search in DungeonMap picked its nodes, so corridors come out the same.
+
+public class GridPathFinder {
+
+    /** cost of stepping onto cell (x,y) */
+    public interface StepCost {
+        int cost(int x, int y);
+    }
+
+    private static final int[] dx = { 0, 1, 0, -1 };
+    private static final int[] dy = { 1, 0, -1, 0 };
+
+    private int width, height;
+    private int[] cost;             // cost from the start per cell
+    private int[] parent;           // previous cell on the cheapest path, -1 for the start cell
+    private int[] sequence;         // order in which the cell entered the open set (tie breaker)
+    private int[] openStamp;        // == stamp if cell is (or was) in the open set during the current search
+    private int[] closedStamp;      // == stamp if cell is in the closed set during the current search
+    private int[] heapIndex;        // position of the cell in the heap
+    private int[] heap;             // binary min heap of cell ids
+    private int heapSize;
+    private int stamp;
+
+    public GridPathFinder(int width, int height) {
+        resize(width, height);
+    }
+
+    /** make sure the work arrays can hold a grid of the given size */
+    public void resize(int width, int height){
+        this.width = width;
+        this.height = height;
+        int size = width * height;
+        if(cost != null && cost.length >= size)
+            return;
+        cost = new int[size];
+        parent = new int[size];
+        sequence = new int[size];
+        openStamp = new int[size];
+        closedStamp = new int[size];
+        heapIndex = new int[size];
+        heap = new int[size];
+        stamp = 0;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /** previous cell on the path found by the last search, or -1 at the start cell */
+    public int getParent(int cell){
+        return parent[cell];
+    }
+
+    /** path cost of a cell visited by the last search */
+    public int getCost(int cell){
+        return cost[cell];
+    }
+
+    /** find the cheapest path from start to target. Returns the cell id of the target, or -1 if it cannot be reached.
+     * Use getParent() to trace the path back to the start. */
+    public int findPath(int startX, int startY, int targetX, int targetY, StepCost stepCost){
+        nextStamp();
+        heapSize = 0;
+        int nextSequence = 0;
+
+        int start = startY * width + startX;
+        int target = targetY * width + targetX;
+        open(start, 0, -1, nextSequence++);
+
+        while(heapSize > 0){
+            int current = pop();
+            if(current == target)
+                return target;
+            closedStamp[current] = stamp;
+
+            int cx = current % width;
+            int cy = current / width;
+            for(int dir = 0; dir < 4; dir++){
+                int nx = cx + dx[dir];
+                int ny = cy + dy[dir];
+                if(nx < 0 || nx >= width || ny < 0 || ny >= height)
+                    continue;
+                int nbor = ny * width + nx;
+                if(closedStamp[nbor] == stamp)
+                    continue;
+
+                int c = cost[current] + stepCost.cost(nx, ny);
+                if(openStamp[nbor] != stamp)
+                    open(nbor, c, current, nextSequence++);
+                else if(c < cost[nbor]) {   // found a shorter path for neighbour
+                    cost[nbor] = c;
+                    parent[nbor] = current;
+                    siftUp(heapIndex[nbor]);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void nextStamp(){
+        stamp++;
+        if(stamp == Integer.MAX_VALUE){     // wrap around: reset the stamps
+            java.util.Arrays.fill(openStamp, 0);
+            java.util.Arrays.fill(closedStamp, 0);
+            stamp = 1;
+        }
+    }
+
+    private void open(int cell, int c, int from, int seq){
+        openStamp[cell] = stamp;
+        cost[cell] = c;
+        parent[cell] = from;
+        sequence[cell] = seq;
+        heap[heapSize] = cell;
+        heapIndex[cell] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int pop(){
+        int top = heap[0];
+        heapSize--;
+        if(heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private boolean less(int cellA, int cellB){
+        if(cost[cellA] != cost[cellB])
+            return cost[cellA] < cost[cellB];
+        return sequence[cellA] < sequence[cellB];
+    }
+
+    private void siftUp(int index){
+        int cell = heap[index];
+        while(index > 0){
+            int parentIndex = (index - 1) >> 1;
+            int p = heap[parentIndex];
+            if(!less(cell, p))
+                break;
+            heap[index] = p;
+            heapIndex[p] = index;
+            index = parentIndex;
+        }
+        heap[index] = cell;
+        heapIndex[cell] = index;
+    }
+
+    private void siftDown(int index){
+        int cell = heap[index];
+        int half = heapSize >> 1;
+        while(index < half){
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if(right < heapSize && less(heap[right], heap[child]))
+                child = right;
+            if(!less(heap[child], cell))
+                break;
+            heap[index] = heap[child];
+            heapIndex[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = cell;
+        heapIndex[cell] = index;
+    }
+}
@@ -0,0 +1,142 @@
+package com.monstrous.dungeon.map;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.populus.GameObject;
+
+
+/** The levels that were visited, so they can be revisited as they were left.
+ *
+ * The current level and its neighbours are kept 'hot': their map and level data stay in memory as they are,
+ * so taking the stairs back and forth is instant.
+ * Levels further away are evicted: the map is dropped (it can be generated again from the seed) and the level data is
+ * packed into a snapshot, a byte array of typically a few kilobytes. A cold level is restored on the map that is
+ * generated for it when the player returns. Memory use therefore stays flat however deep the player goes.
+ */
+public class LevelCache {
+    public static final int HOT_DISTANCE = 1;       // levels this close to the current level are kept hot
+
+    private static class Entry {
+        DungeonMap map;                 // null if cold
+        LevelData levelData;            // null if cold
+        byte[] snapshot;                // null if hot
+        Array<Room> stairPortals;       // stairs to the level below, for a cold level
+    }
+
+    // per level number: levels are discovered from the top down, so there are no gaps
+    private final Array<Entry> entries = new Array<>();
+
+
+    /** number of levels visited */
+    public int size(){
+        return entries.size;
+    }
+
+    /** was this level visited? */
+    public boolean contains(int levelNr){
+        return levelNr >= 0 && levelNr < entries.size;
+    }
+
+    public boolean isHot(int levelNr){
+        return contains(levelNr) && entries.get(levelNr).map != null;
+    }
+
+    /** map of a hot level, or null */
+    public DungeonMap getMap(int levelNr){
+        return contains(levelNr) ? entries.get(levelNr).map : null;
+    }
+
+    /** level data of a hot level, or null */
+    public LevelData getLevelData(int levelNr){
+        return contains(levelNr) ? entries.get(levelNr).levelData : null;
+    }
+
+    /** stairs going down from a visited level */
+    public Array<Room> getStairPortals(int levelNr){
+        Entry entry = entries.get(levelNr);
+        return entry.levelData != null ? entry.levelData.stairPortals : entry.stairPortals;
+    }
+
+    /** add a level that was just visited for the first time (levelNr == size()) or make a level hot again */
+    public void put(int levelNr, DungeonMap map, LevelData levelData){
+        if(levelNr > entries.size)
+            throw new IllegalArgumentException("Level " + levelNr + " visited before level " + entries.size);
+        Entry entry;
+        if(levelNr == entries.size) {
+            entry = new Entry();
+            entries.add(entry);
+        }
+        else
+            entry = entries.get(levelNr);
+        if(entry.map != null && entry.map != map)
+            entry.map.dispose();
+        entry.map = map;
+        entry.levelData = levelData;
+        entry.snapshot = null;
+        entry.stairPortals = null;
+    }
+
+    /** level data of a cold level restored on a map generated for it. The level becomes hot. */
+    public LevelData restore(int levelNr, DungeonMap map, GameObject player){
+        Entry entry = entries.get(levelNr);
+        if(entry.levelData != null)
+            throw new IllegalStateException("Level " + levelNr + " is not cold");
+        LevelData levelData = LevelSnapshot.read(entry.snapshot, map, player);
+        put(levelNr, map, levelData);
+        return levelData;
+    }
+
+    /** level data of any visited level as a snapshot, e.g. to save the game */
+    public byte[] getSnapshot(int levelNr){
+        Entry entry = entries.get(levelNr);
+        return entry.snapshot != null ? entry.snapshot : LevelSnapshot.write(entry.levelData);
+    }
+
+    /** add a cold level from a snapshot, e.g. from a saved game (levelNr <= size()) */
+    public void putSnapshot(int levelNr, byte[] snapshot){
+        put(levelNr, null, null);
+        Entry entry = entries.get(levelNr);
+        entry.snapshot = snapshot;
+        entry.stairPortals = LevelSnapshot.readStairPortals(snapshot);
+    }
+
+    /** the player is now on this level: evict levels that are too far away */
+    public void setCurrent(int levelNr){
+        for(int i = 0; i < entries.size; i++){
+            Entry entry = entries.get(i);
+            if(entry.map != null && Math.abs(i - levelNr) > HOT_DISTANCE)
+                evict(entry);
+        }
+    }
+
+    private void evict(Entry entry){
+        entry.snapshot = LevelSnapshot.write(entry.levelData);
+        entry.stairPortals = LevelSnapshot.detach(entry.levelData.stairPortals);
+        entry.levelData = null;
+        entry.map.dispose();
+        entry.map = null;
+    }
+
+    public void clear(){
+        for(Entry entry : entries)
+            if(entry.map != null)
+                entry.map.dispose();
+        entries.clear();
+    }
+
+    public int getHotCount(){
+        int count = 0;
+        for(Entry entry : entries)
+            if(entry.map != null)
+                count++;
+        return count;
+    }
+
+    /** total size of the snapshots of the cold levels */
+    public int getSnapshotBytes(){
+        int bytes = 0;
+        for(Entry entry : entries)
+            if(entry.snapshot != null)
+                bytes += entry.snapshot.length;
+        return bytes;
+    }
+}
@@ -9,15 +9,13 @@ import com.monstrous.dungeon.populus.GameObjects;
 public class LevelData {
     public int level;                       // level nr
     public Array<Room> stairPortals;        // stairs to connect to next level.
-    public boolean[][] tileSeen;            // has the corridor segment been seen?
-    public Array<Integer> seenRooms;        // room ids of rooms that were uncovered
+    public FogOfWar fog;                    // which tiles and rooms have been seen
     public GameObjects gameObjects;
 
-    public LevelData(int levelNr, int w, int h) {
+    public LevelData(int levelNr, DungeonMap map) {
         this.level = levelNr;
         this.stairPortals = new Array<>();
-        this.seenRooms = new Array<>();
-        this.tileSeen = new boolean[h][w];
-        this.gameObjects = new GameObjects(w, h);
+        this.fog = new FogOfWar(map.mapWidth, map.mapHeight, map.rooms.size);
+        this.gameObjects = new GameObjects(map);
     }
 }
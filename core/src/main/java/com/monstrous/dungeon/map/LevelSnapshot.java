@@ -0,0 +1,247 @@
+package com.monstrous.dungeon.map;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntSet;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.GameObjectCodec;
+import com.monstrous.dungeon.populus.GameObjects;
+
+import java.io.*;
+
+
+/** Binary encoding of the level data: what has been seen (see FogOfWar), the stair portals and all game objects on the level.
+ * The map itself is not stored, it can be generated again from the seed. Restoring needs that map.
+ *
+ * Game objects are stored in the order of the game objects array, followed by the stack of occupants per tile
+ * (bottom first), so the restored level behaves exactly like the original, e.g. enemies take their turn in the same order.
+ * The player is not stored, it moves between levels. */
+public class LevelSnapshot {
+
+    private static final int ATTACKED_BY_NONE = -1;
+    private static final int ATTACKED_BY_PLAYER = -2;
+
+    private static final Direction[] directions = Direction.values();
+
+    public static byte[] write(LevelData levelData) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try {
+            write(new DataOutputStream(bytes), levelData);
+        } catch (IOException e) {
+            throw new RuntimeException(e);      // cannot happen on a byte array
+        }
+        return bytes.toByteArray();
+    }
+
+    /** player: the rogue, in case objects on this level are attacking it */
+    public static LevelData read(byte[] data, DungeonMap map, GameObject player) {
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(data)), map, player);
+        } catch (IOException e) {
+            throw new RuntimeException("Corrupt level snapshot", e);
+        }
+    }
+
+    public static void write(DataOutput out, LevelData levelData) throws IOException {
+        out.writeShort(levelData.level);
+        writeStairPortals(out, levelData.stairPortals);
+
+        levelData.fog.write(out);
+
+        // game objects, except the player
+        Array<GameObject> objects = levelData.gameObjects.gameObjects;
+        ObjectIntMap<GameObject> indices = new ObjectIntMap<>(objects.size);
+        int count = 0;
+        for(GameObject go : objects)
+            if(!go.type.isPlayer)
+                indices.put(go, count++);
+        out.writeInt(count);
+        for(GameObject go : objects){
+            if(go.type.isPlayer)
+                continue;
+            GameObjectCodec.write(out, go);
+            int attackedBy = ATTACKED_BY_NONE;
+            if(go.attackedBy != null)
+                attackedBy = go.attackedBy.type.isPlayer ? ATTACKED_BY_PLAYER : indices.get(go.attackedBy, ATTACKED_BY_NONE);
+            out.writeInt(attackedBy);
+        }
+
+        // occupants per tile, each tile once, bottom first
+        GameObjects gameObjects = levelData.gameObjects;
+        Array<GameObject> stack = new Array<>();
+        Array<GameObject> stacks = new Array<>();       // one (any) object per tile that has occupants
+        IntSet tiles = new IntSet();
+        for(GameObject go : objects){
+            if(!go.type.isPlayer && gameObjects.isOccupant(go) && tiles.add(go.y * 65536 + go.x))
+                stacks.add(go);
+        }
+        out.writeInt(stacks.size);
+        for(GameObject go : stacks){
+            stack.clear();
+            gameObjects.getOccupants(go.x, go.y, stack);
+            int n = 0;
+            for(GameObject occupant : stack)
+                if(indices.containsKey(occupant))
+                    n++;
+            out.writeShort(go.x);
+            out.writeShort(go.y);
+            out.writeShort(n);
+            for(int i = stack.size-1; i >= 0; i--)
+                if(indices.containsKey(stack.get(i)))
+                    out.writeInt(indices.get(stack.get(i), -1));
+        }
+    }
+
+    /** read a snapshot without restoring it, to find out whether it is corrupt before anything is replaced by it (see SaveGame).
+     * No map is needed: the fog of war is checked against the size of the map of that level. */
+    public static void check(byte[] data, int levelNr, int mapWidth, int mapHeight) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int nr = in.readShort();
+        if(nr != levelNr)
+            throw new IOException("Snapshot of level " + nr + " where level " + levelNr + " was expected");
+        readStairPortals(in);
+        FogOfWar.check(in, mapWidth, mapHeight);
+        int count = readCount(in);
+        if(count > in.available())
+            throw new IOException("Snapshot too short for " + count + " objects");
+        int[] positions = new int[count];
+        for(int i = 0; i < count; i++){
+            GameObject go = GameObjectCodec.read(in);
+            positions[i] = go.y * 65536 + go.x;
+            int attackedBy = in.readInt();
+            if(attackedBy < ATTACKED_BY_PLAYER || attackedBy >= count)
+                throw new IOException("Attacker out of range: " + attackedBy);
+        }
+        int numStacks = readCount(in);
+        if(numStacks > in.available())
+            throw new IOException("Snapshot too short for " + numStacks + " tiles");
+        for(int i = 0; i < numStacks; i++){
+            int x = in.readShort();
+            int y = in.readShort();
+            if(x < 0 || y < 0 || x >= mapWidth || y >= mapHeight)
+                throw new IOException("Occupied tile off the map: " + x + "," + y);
+            int n = in.readShort();
+            for(int j = 0; j < n; j++)
+                if(positions[readIndex(in, count)] != y * 65536 + x)
+                    throw new IOException("Occupant of " + x + "," + y + " is somewhere else");
+        }
+        if(in.available() > 0)
+            throw new IOException("Snapshot longer than expected");
+    }
+
+    public static LevelData read(DataInput in, DungeonMap map, GameObject player) throws IOException {
+        int levelNr = in.readShort();
+        LevelData levelData = new LevelData(levelNr, map);
+        levelData.stairPortals = readStairPortals(in);
+
+        levelData.fog.read(in);
+
+        int count = readCount(in);
+        GameObject[] objects = new GameObject[count];
+        int[] attackedBy = new int[count];
+        for(int i = 0; i < count; i++){
+            objects[i] = GameObjectCodec.read(in);
+            attackedBy[i] = in.readInt();
+            levelData.gameObjects.add(objects[i]);
+        }
+        for(int i = 0; i < count; i++){
+            if(attackedBy[i] == ATTACKED_BY_PLAYER)
+                objects[i].attackedBy = player;
+            else if(attackedBy[i] >= 0 && attackedBy[i] < count)
+                objects[i].attackedBy = objects[attackedBy[i]];
+        }
+
+        int numStacks = readCount(in);
+        for(int i = 0; i < numStacks; i++){
+            int x = in.readShort();
+            int y = in.readShort();
+            if(x < 0 || y < 0 || x >= map.mapWidth || y >= map.mapHeight)
+                throw new IOException("Occupied tile off the map: " + x + "," + y);
+            int n = in.readShort();
+            for(int j = 0; j < n; j++) {
+                GameObject go = objects[readIndex(in, count)];
+                if(go.x != x || go.y != y)
+                    throw new IOException("Occupant of " + x + "," + y + " is somewhere else");
+                levelData.gameObjects.setOccupant(x, y, go);
+            }
+        }
+        return levelData;
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if(count < 0)
+            throw new IOException("Negative count: " + count);
+        return count;
+    }
+
+    private static int readIndex(DataInput in, int count) throws IOException {
+        int index = in.readInt();
+        if(index < 0 || index >= count)
+            throw new IOException("Object index out of range: " + index);
+        return index;
+    }
+
+    // stairs going down: only what is needed to generate the level below
+    public static void writeStairPortals(DataOutput out, Array<Room> stairPortals) throws IOException {
+        out.writeByte(stairPortals.size);
+        for(Room room : stairPortals){
+            out.writeShort(room.id);
+            out.writeShort(room.x);
+            out.writeShort(room.y);
+            out.writeByte(room.width);
+            out.writeByte(room.height);
+            out.writeByte(room.stairsDirection.ordinal());
+        }
+    }
+
+    /** the stair portals of a snapshot without restoring the rest */
+    public static Array<Room> readStairPortals(byte[] data){
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            in.readShort();     // level nr
+            return readStairPortals(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Corrupt level snapshot", e);
+        }
+    }
+
+    public static Array<Room> readStairPortals(DataInput in) throws IOException {
+        int count = in.readByte();
+        if(count < 0)
+            throw new IOException("Negative number of stair portals: " + count);
+        Array<Room> stairPortals = new Array<>(count);
+        for(int i = 0; i < count; i++)
+            stairPortals.add(readStairPortal(in));
+        return stairPortals;
+    }
+
+    private static Room readStairPortal(DataInput in) throws IOException {
+        int id = in.readShort();
+        int x = in.readShort();
+        int y = in.readShort();
+        int w = in.readByte();
+        int h = in.readByte();
+        Room room = new Room(id, x, y, w, h);
+        room.isStairWell = true;
+        room.stairType = TileType.STAIRS_DOWN;
+        int direction = in.readByte();
+        if(direction < 0 || direction >= directions.length)
+            throw new IOException("Unknown direction: " + direction);
+        room.stairsDirection = directions[direction];
+        return room;
+    }
+
+    /** copy of the stair portals that does not keep the rest of the map alive */
+    public static Array<Room> detach(Array<Room> stairPortals){
+        Array<Room> copy = new Array<>(stairPortals.size);
+        for(Room room : stairPortals){
+            Room portal = new Room(room.id, room.x, room.y, room.width, room.height);
+            portal.isStairWell = true;
+            portal.stairType = room.stairType;
+            portal.stairsDirection = room.stairsDirection;
+            copy.add(portal);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,286 @@
+package com.monstrous.dungeon.map;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import java.util.Arrays;
+
+
+// Graph of the rooms of a map, indexed by room id.
+//
+// Two sets of edges:
+//   - the neighbours from the Delaunay triangulation, with the distance between the room centres, as compact arrays:
+//     the neighbours of room a are nbor[start[a]] .. nbor[start[a+1]-1] in the order they were added
+//   - the corridors: the minimum spanning tree of the neighbours plus some extra edges, as Room.closeNeighbours
+// Both also have an adjacency matrix (one bit per pair of rooms) to test for an edge in constant time.
+//
+// The minimum spanning tree uses Prim's algorithm with a heap of candidate edges. Edges of equal length are taken in the
+// same order as the original scan over all rooms in the tree did (the room that joined the tree first, then the first
+// neighbour in the list), so the dungeons are exactly the same.
+//
+// After generation, finish() stores the number of corridors between every pair of rooms, for constant time room
+// distances in the game. The table takes 2 bytes per pair, about 400 KB for the largest maps (450 rooms).
+
+public class RoomGraph {
+    public static final int UNREACHABLE = Short.MAX_VALUE;
+
+    public final Array<Room> rooms;
+    public final int numRooms;
+    private final IntIntMap roomByCentre = new IntIntMap();     // packed centre position -> id of the first room there
+    private final long[] neighbourBits;     // adjacency matrix of the triangulation, row per room
+    private final long[] corridorBits;      // adjacency matrix of the corridors
+    private final int words;                // longs per row
+    private IntArray edges = new IntArray();    // pairs of room ids in the order added, until the arrays are built
+    private int[] start;
+    private int[] nbor;
+    private float[] distance;
+    private short[] hops;                   // numRooms x numRooms corridors between rooms, after finish()
+
+    public RoomGraph(Array<Room> rooms){
+        this.rooms = rooms;
+        numRooms = rooms.size;
+        words = (numRooms + 63) >> 6;
+        neighbourBits = new long[numRooms * words];
+        corridorBits = new long[numRooms * words];
+        for(int id = numRooms-1; id >= 0; id--)     // backwards, so the first room wins if two share a centre
+            roomByCentre.put(key(rooms.get(id).centre.x, rooms.get(id).centre.y), id);
+    }
+
+    /** id of the room with its centre at x,y or -1 */
+    public int findRoom(int x, int y){
+        return roomByCentre.get(key(x, y), -1);
+    }
+
+    private static int key(int x, int y){
+        return (y << 16) | (x & 0xFFFF);
+    }
+
+    // triangulation edges
+
+    /** add b as neighbour of a (one direction only), duplicates are ignored */
+    public void addNeighbour(int a, int b){
+        if(isSet(neighbourBits, a, b))
+            return;
+        set(neighbourBits, a, b);
+        edges.add(a, b);
+    }
+
+    public boolean areNeighbours(int a, int b){
+        return isSet(neighbourBits, a, b);
+    }
+
+    /** store the neighbours added so far as compact arrays, to be called before they are queried */
+    public void buildNeighbours(){
+        start = new int[numRooms + 1];
+        for(int i = 0; i < edges.size; i += 2)
+            start[edges.get(i) + 1]++;
+        for(int id = 0; id < numRooms; id++)
+            start[id + 1] += start[id];
+        int[] fill = Arrays.copyOf(start, numRooms);
+        nbor = new int[edges.size / 2];
+        distance = new float[edges.size / 2];
+        for(int i = 0; i < edges.size; i += 2) {
+            int a = edges.get(i);
+            int b = edges.get(i + 1);
+            int slot = fill[a]++;
+            nbor[slot] = b;
+            distance[slot] = centreDistance(rooms.get(a), rooms.get(b));
+        }
+        edges = null;
+    }
+
+    public int getNeighbourCount(int a){
+        return start[a + 1] - start[a];
+    }
+
+    /** k-th neighbour of room a */
+    public int getNeighbour(int a, int k){
+        return nbor[start[a] + k];
+    }
+
+    /** distance between the centres of room a and its k-th neighbour */
+    public float getDistance(int a, int k){
+        return distance[start[a] + k];
+    }
+
+    private static float centreDistance(Room a, Room b){
+        // Pythagoras to calculate distance between room centres
+        return (float)Math.sqrt(Math.pow(a.centre.x - b.centre.x, 2.0) + Math.pow(a.centre.y - b.centre.y, 2.0));
+    }
+
+    // corridors
+
+    /** connect two rooms with a corridor, both ways */
+    public void addCorridor(int a, int b){
+        set(corridorBits, a, b);
+        set(corridorBits, b, a);
+        rooms.get(a).addCloseNeighbour(rooms.get(b));
+        rooms.get(b).addCloseNeighbour(rooms.get(a));
+    }
+
+    public boolean haveCorridor(int a, int b){
+        return isSet(corridorBits, a, b);
+    }
+
+    /** add corridors along the minimum spanning tree of the neighbours, growing the tree from root */
+    public void addMinimumSpanningTree(int root){
+        int[] rank = new int[numRooms];     // order in which the rooms joined the tree, 0 if not in the tree
+        EdgeHeap heap = new EdgeHeap(nbor.length);
+        int joined = 0;
+        int room = root;
+        while(true) {
+            rank[room] = ++joined;
+            for(int k = 0; k < getNeighbourCount(room); k++)
+                if(rank[getNeighbour(room, k)] == 0)
+                    heap.push(getDistance(room, k), ((long)joined << 32) | k, room, getNeighbour(room, k));
+
+            // closest room not in the tree yet, edges to rooms that joined since they were pushed are skipped
+            room = -1;
+            while(heap.size > 0) {
+                int to = heap.topTo();
+                int from = heap.topFrom();
+                heap.pop();
+                if(rank[to] == 0) {
+                    addCorridor(to, from);
+                    room = to;
+                    break;
+                }
+            }
+            if(room < 0)
+                break;
+        }
+    }
+
+    // room distances
+
+    /** count the corridors between all pairs of rooms, to be called when all corridors are there */
+    public void finish(){
+        // corridors as compact arrays, like the neighbours
+        int[] first = new int[numRooms + 1];
+        for(int id = 0; id < numRooms; id++)
+            first[id + 1] = first[id] + rooms.get(id).closeNeighbours.size;
+        int[] corridor = new int[first[numRooms]];
+        for(int id = 0; id < numRooms; id++) {
+            Array<Room> close = rooms.get(id).closeNeighbours;
+            for(int i = 0; i < close.size; i++)
+                corridor[first[id] + i] = close.get(i).id;
+        }
+
+        // one breadth-first search per room fills its row
+        hops = new short[numRooms * numRooms];
+        Arrays.fill(hops, (short)UNREACHABLE);
+        int[] queue = new int[numRooms];
+        for(int source = 0; source < numRooms; source++) {
+            int row = source * numRooms;
+            int head = 0;
+            int tail = 0;
+            hops[row + source] = 0;
+            queue[tail++] = source;
+            while(head < tail) {
+                int id = queue[head++];
+                short next = (short)(hops[row + id] + 1);
+                for(int i = first[id]; i < first[id + 1]; i++) {
+                    int n = corridor[i];
+                    if(hops[row + n] != UNREACHABLE)
+                        continue;
+                    hops[row + n] = next;
+                    queue[tail++] = n;
+                }
+            }
+        }
+    }
+
+    /** number of corridors to go from room a to room b, or UNREACHABLE */
+    public int getHops(int a, int b){
+        return hops[a * numRooms + b];
+    }
+
+    /** approximate memory used in bytes */
+    public int getMemoryBytes(){
+        return 8 * (neighbourBits.length + corridorBits.length) + 2 * (hops == null ? 0 : hops.length)
+            + (nbor == null ? 0 : 8 * nbor.length + 4 * start.length) + 12 * roomByCentre.size;
+    }
+
+    private boolean isSet(long[] bits, int a, int b){
+        return (bits[a * words + (b >> 6)] & (1L << b)) != 0;
+    }
+
+    private void set(long[] bits, int a, int b){
+        bits[a * words + (b >> 6)] |= 1L << b;
+    }
+
+    // binary min heap of edges by length, then by order (rank of the room in the tree, index in its neighbour list)
+    private static class EdgeHeap {
+        float[] length;
+        long[] order;
+        int[] from;
+        int[] to;
+        int size;
+
+        EdgeHeap(int capacity){
+            capacity = Math.max(1, capacity);
+            length = new float[capacity];
+            order = new long[capacity];
+            from = new int[capacity];
+            to = new int[capacity];
+        }
+
+        void push(float len, long ord, int a, int b){
+            int i = size++;
+            while(i > 0) {
+                int parent = (i - 1) >> 1;
+                if(!less(len, ord, length[parent], order[parent]))
+                    break;
+                move(parent, i);
+                i = parent;
+            }
+            length[i] = len;
+            order[i] = ord;
+            from[i] = a;
+            to[i] = b;
+        }
+
+        int topFrom(){
+            return from[0];
+        }
+
+        int topTo(){
+            return to[0];
+        }
+
+        void pop(){
+            size--;
+            float len = length[size];
+            long ord = order[size];
+            int a = from[size];
+            int b = to[size];
+            int i = 0;
+            while(true) {
+                int child = 2 * i + 1;
+                if(child >= size)
+                    break;
+                if(child + 1 < size && less(length[child + 1], order[child + 1], length[child], order[child]))
+                    child++;
+                if(!less(length[child], order[child], len, ord))
+                    break;
+                move(child, i);
+                i = child;
+            }
+            length[i] = len;
+            order[i] = ord;
+            from[i] = a;
+            to[i] = b;
+        }
+
+        private void move(int src, int dst){
+            length[dst] = length[src];
+            order[dst] = order[src];
+            from[dst] = from[src];
+            to[dst] = to[src];
+        }
+
+        private static boolean less(float lenA, long ordA, float lenB, long ordB){
+            return lenA < lenB || (lenA == lenB && ordA < ordB);
+        }
+    }
+}
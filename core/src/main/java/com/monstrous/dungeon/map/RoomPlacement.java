@@ -0,0 +1,87 @@
+package com.monstrous.dungeon.map;
+
+import com.badlogic.gdx.utils.IntSet;
+
+
+// Collision tests for placing rooms and stair wells on a map, in time proportional to the size of the new room
+// instead of the number of rooms already placed.
+//
+// Occupancy bitmap: one bit per tile, a row of longs per map row. A room occupies its tiles; a stair well also the
+// ring of tiles around it, because Room.overlaps() keeps a new room one tile further away from a stair well.
+// A new room overlaps if any bit of its rectangle is set, which takes one or two words per row. Rooms are placed
+// inside the map (with a margin), so the parts of the ring outside the map are left out.
+//
+// The adjacency rule of DungeonMap compares edge coordinates only: a room is rejected if, for any room on the map,
+// its left wall would be one tile right of that room's right edge, and so on, wherever that room is. Sets of the
+// edge coordinates of all rooms so far give the same answers with four lookups.
+
+public class RoomPlacement {
+    private final int width, height;
+    private final int words;            // longs per row
+    private final long[] occupied;
+    private final IntSet rightEdges = new IntSet();     // room.x + room.width per room
+    private final IntSet leftEdges = new IntSet();      // room.x - 1
+    private final IntSet topEdges = new IntSet();       // room.y + room.height
+    private final IntSet bottomEdges = new IntSet();    // room.y - 1
+
+    public RoomPlacement(int width, int height){
+        this.width = width;
+        this.height = height;
+        words = (width + 63) >> 6;
+        occupied = new long[words * height];
+    }
+
+    /** mark a room that was added to the map */
+    public void add(Room room){
+        int margin = room.isStairWell ? 1 : 0;
+        fill(room.x - margin, room.y - margin, room.x + room.width + margin, room.y + room.height + margin);
+        rightEdges.add(room.x + room.width);
+        leftEdges.add(room.x - 1);
+        topEdges.add(room.y + room.height);
+        bottomEdges.add(room.y - 1);
+    }
+
+    /** would this new room overlap any room on the map? (Room.overlaps with every room placed so far) */
+    public boolean overlaps(Room room){
+        int x0 = Math.max(0, room.x);
+        int y0 = Math.max(0, room.y);
+        int x1 = Math.min(width, room.x + room.width);     // exclusive
+        int y1 = Math.min(height, room.y + room.height);
+        if(x0 >= x1 || y0 >= y1)
+            return false;
+        int firstWord = x0 >> 6;
+        int lastWord = (x1 - 1) >> 6;
+        long firstMask = -1L << x0;
+        long lastMask = -1L >>> (63 - ((x1 - 1) & 63));
+        for(int y = y0; y < y1; y++) {
+            int row = y * words;
+            for(int w = firstWord; w <= lastWord; w++) {
+                long mask = -1L;
+                if(w == firstWord)
+                    mask &= firstMask;
+                if(w == lastWord)
+                    mask &= lastMask;
+                if((occupied[row + w] & mask) != 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /** would this new room have a wall next to the wall of a room on the map? (see DungeonMap.generateRooms) */
+    public boolean isAdjacent(Room room){
+        return rightEdges.contains(room.x - 1) || leftEdges.contains(room.x + room.width)
+            || topEdges.contains(room.y - 1) || bottomEdges.contains(room.y + room.height);
+    }
+
+    // set the bits of the tiles x0 <= x < x1, y0 <= y < y1, clipped to the map
+    private void fill(int x0, int y0, int x1, int y1){
+        x0 = Math.max(0, x0);
+        y0 = Math.max(0, y0);
+        x1 = Math.min(width, x1);
+        y1 = Math.min(height, y1);
+        for(int y = y0; y < y1; y++)
+            for(int x = x0; x < x1; x++)
+                occupied[y * words + (x >> 6)] |= 1L << x;
+    }
+}
@@ -0,0 +1,284 @@
+package com.monstrous.dungeon.map;
+
+import java.util.Arrays;
+
+
+// Compact store for the tiles of a dungeon map.
+//
+// All tiles are kept in one flat int array in row-major order (index = y * width + x),
+// with the tile type, orientation and room id of a cell packed into a single int:
+//
+//   bits  0..7   tile type (TileType ordinal)
+//   bits  8..9   orientation (Direction ordinal)
+//   bits 10..13  passability: bit 10+d is set if one can step from this tile to its neighbour in Direction d
+//   bit  14      opaque: blocks the view (FieldOfView.blocksView)
+//   bit  15      droppable: items can be dropped here (TileType.droppable)
+//   bits 16..31  room id + 1 (so 0 means no room)
+//
+// This replaces three grids of row arrays (TileType[][], Direction[][], int[][]) which needed 12 bytes per cell
+// plus a header per row, and which scattered the data of one cell over three places in memory.
+// Scans over the whole map now walk through one contiguous array.
+//
+// The passability, opaque and droppable bits and a mask per tile of which of its 8 neighbours have a floor are
+// derived from the tile types. They are kept up to date whenever a tile type changes, so that movement, throwing,
+// dropping, path finding and line of sight test a bit instead of going through the TileType rules for two tiles.
+
+public class TileGrid {
+
+    /** callback for forEach(), cell is the packed value, use the static accessors to decode it */
+    public interface TileVisitor {
+        void visit(int x, int y, int cell);
+    }
+
+    private static final int TYPE_MASK = 0xFF;
+    private static final int ORIENTATION_SHIFT = 8;
+    private static final int ORIENTATION_MASK = 0x3;
+    private static final int PASSABLE_SHIFT = 10;
+    private static final int PASSABLE_MASK = 0xF;
+    private static final int OPAQUE_BIT = 1 << 14;
+    private static final int DROPPABLE_BIT = 1 << 15;
+    private static final int FLAGS = (PASSABLE_MASK << PASSABLE_SHIFT) | OPAQUE_BIT | DROPPABLE_BIT;
+    private static final int ROOM_SHIFT = 16;
+
+    // neighbours in the order of the bits of the neighbour mask: the 4 Directions, then the diagonals NE, SE, SW, NW
+    private static final int[] neighbourX = { 0, 1, 0, -1, 1, 1, -1, -1 };
+    private static final int[] neighbourY = { 1, 0, -1, 0, 1, -1, -1, 1 };
+    public static final int NEIGHBOURS_ORTHOGONAL = 0x0F;      // mask bits of the neighbours N, E, S and W
+
+    private static final TileType[] tileTypes = TileType.values();      // cached, values() makes a copy on every call
+    private static final Direction[] directions = Direction.values();
+    private static final boolean[][] walkable = walkableTable();         // [to][from], TileType.walkable() per pair of types
+    private static final int[] typeFlags = typeFlagsTable();             // opaque and droppable bits per tile type
+
+    public final int width, height;
+    private final int[] cells;
+    private final byte[] floorNeighbours;   // per tile: which of the 8 neighbours have a floor, see neighbourX
+
+    /** new grid with all tiles set to VOID, facing NORTH and not part of a room */
+    public TileGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        cells = new int[width * height];
+        floorNeighbours = new byte[width * height];
+        fill(TileType.VOID, Direction.NORTH, -1);
+    }
+
+    public void fill(TileType type, Direction dir, int roomId){
+        Arrays.fill(cells, pack(type, dir, roomId));
+        for(int y = 0; y < height; y++)
+            for(int x = 0; x < width; x++)
+                updateFlags(x, y);
+        Arrays.fill(floorNeighbours, (byte)0);
+        for(int y = 0; y < height; y++)
+            for(int x = 0; x < width; x++)
+                if(hasFloor(getType(x, y)))
+                    markNeighbours(x, y, true);
+    }
+
+    public boolean contains(int x, int y){
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    public int index(int x, int y){
+        return y * width + x;
+    }
+
+    public int size(){
+        return cells.length;
+    }
+
+    /** approximate memory used by the tile data in bytes */
+    public int getMemoryBytes(){
+        return 32 + 5 * cells.length;
+    }
+
+    // access by coordinates
+
+    public TileType getType(int x, int y){
+        return typeOf(cells[y * width + x]);
+    }
+
+    public Direction getOrientation(int x, int y){
+        return orientationOf(cells[y * width + x]);
+    }
+
+    /** room id or -1 if the tile is not part of a room */
+    public int getRoomId(int x, int y){
+        return roomOf(cells[y * width + x]);
+    }
+
+    /** can one step from x,y to the neighbouring tile in this direction? (TileType.walkable) */
+    public boolean isPassable(int x, int y, Direction dir){
+        return isPassable(y * width + x, dir.ordinal());
+    }
+
+    /** does x,y block the view? Outside the grid counts as opaque. */
+    public boolean isOpaque(int x, int y){
+        return !contains(x, y) || (cells[y * width + x] & OPAQUE_BIT) != 0;
+    }
+
+    /** can items be dropped on x,y? False outside the grid. */
+    public boolean isDroppable(int x, int y){
+        return contains(x, y) && (cells[y * width + x] & DROPPABLE_BIT) != 0;
+    }
+
+    /** which of the 8 neighbours of x,y have a floor: bits in the order N, E, S, W, NE, SE, SW, NW */
+    public int getFloorNeighbours(int x, int y){
+        return floorNeighbours[y * width + x] & 0xFF;
+    }
+
+    public void setType(int x, int y, TileType type){
+        int i = y * width + x;
+        TileType old = typeOf(cells[i]);
+        cells[i] = (cells[i] & ~TYPE_MASK) | type.ordinal();
+        if(type != old)
+            typeChanged(x, y, old, type);
+    }
+
+    public void setOrientation(int x, int y, Direction dir){
+        int i = y * width + x;
+        cells[i] = (cells[i] & ~(ORIENTATION_MASK << ORIENTATION_SHIFT)) | (dir.ordinal() << ORIENTATION_SHIFT);
+    }
+
+    public void setRoomId(int x, int y, int roomId){
+        int i = y * width + x;
+        cells[i] = (cells[i] & ((1 << ROOM_SHIFT) - 1)) | ((roomId + 1) << ROOM_SHIFT);
+    }
+
+    public void set(int x, int y, TileType type, Direction dir){
+        int i = y * width + x;
+        TileType old = typeOf(cells[i]);
+        cells[i] = (cells[i] & ~((ORIENTATION_MASK << ORIENTATION_SHIFT) | TYPE_MASK)) | (dir.ordinal() << ORIENTATION_SHIFT) | type.ordinal();
+        if(type != old)
+            typeChanged(x, y, old, type);
+    }
+
+    // access by index
+
+    public int getCell(int index){
+        return cells[index];
+    }
+
+    public TileType getType(int index){
+        return typeOf(cells[index]);
+    }
+
+    /** can one step from this tile to its neighbour in Direction dir (ordinal)? */
+    public boolean isPassable(int index, int dir){
+        return (cells[index] & (1 << (PASSABLE_SHIFT + dir))) != 0;
+    }
+
+    /** passability of this tile: bit d is set if one can step to its neighbour in Direction d (ordinal) */
+    public int getPassability(int index){
+        return (cells[index] >> PASSABLE_SHIFT) & PASSABLE_MASK;
+    }
+
+    public boolean isOpaque(int index){
+        return (cells[index] & OPAQUE_BIT) != 0;
+    }
+
+    // derived bits
+
+    // a tile type changed: update the bits of the tile itself and of the neighbours that depend on it
+    private void typeChanged(int x, int y, TileType oldType, TileType newType){
+        updateFlags(x, y);
+        for(int d = 0; d < 4; d++) {
+            int nx = x + neighbourX[d];
+            int ny = y + neighbourY[d];
+            if(contains(nx, ny))
+                updateFlags(nx, ny);
+        }
+        boolean floor = hasFloor(newType);
+        if(floor != hasFloor(oldType))
+            markNeighbours(x, y, floor);
+    }
+
+    private void updateFlags(int x, int y){
+        int i = y * width + x;
+        int type = cells[i] & TYPE_MASK;
+        int flags = typeFlags[type];
+        for(int d = 0; d < 4; d++) {
+            int nx = x + neighbourX[d];
+            int ny = y + neighbourY[d];
+            if(contains(nx, ny) && walkable[cells[ny * width + nx] & TYPE_MASK][type])
+                flags |= 1 << (PASSABLE_SHIFT + d);
+        }
+        cells[i] = (cells[i] & ~FLAGS) | flags;
+    }
+
+    // tell the neighbours of x,y whether it has a floor
+    private void markNeighbours(int x, int y, boolean floor){
+        for(int k = 0; k < 8; k++) {
+            int nx = x - neighbourX[k];     // x,y is neighbour k of nx,ny
+            int ny = y - neighbourY[k];
+            if(!contains(nx, ny))
+                continue;
+            int i = ny * width + nx;
+            if(floor)
+                floorNeighbours[i] |= (byte)(1 << k);
+            else
+                floorNeighbours[i] &= (byte)~(1 << k);
+        }
+    }
+
+    private static boolean[][] walkableTable(){
+        boolean[][] table = new boolean[tileTypes.length][tileTypes.length];
+        for(TileType to : tileTypes)
+            for(TileType from : tileTypes)
+                table[to.ordinal()][from.ordinal()] = TileType.walkable(to, from);
+        return table;
+    }
+
+    private static int[] typeFlagsTable(){
+        int[] table = new int[tileTypes.length];
+        for(TileType type : tileTypes)
+            table[type.ordinal()] = (FieldOfView.blocksView(type) ? OPAQUE_BIT : 0) | (TileType.droppable(type) ? DROPPABLE_BIT : 0);
+        return table;
+    }
+
+    private static boolean hasFloor(TileType type){
+        return TileType.hasFloor(type) || type == TileType.STAIRS_DOWN || type == TileType.STAIRS_DOWN_DEEP
+            || type == TileType.STAIRS_UP || type == TileType.STAIRS_UP_HIGH;
+    }
+
+    // decode packed values
+
+    public static int pack(TileType type, Direction dir, int roomId){
+        return ((roomId + 1) << ROOM_SHIFT) | (dir.ordinal() << ORIENTATION_SHIFT) | type.ordinal();
+    }
+
+    public static TileType typeOf(int cell){
+        return tileTypes[cell & TYPE_MASK];
+    }
+
+    public static Direction orientationOf(int cell){
+        return directions[(cell >> ORIENTATION_SHIFT) & ORIENTATION_MASK];
+    }
+
+    public static int roomOf(int cell){
+        return (cell >>> ROOM_SHIFT) - 1;
+    }
+
+    // iteration
+
+    /** visit all tiles in row-major order (the order in which they are stored) */
+    public void forEach(TileVisitor visitor){
+        int i = 0;
+        for(int y = 0; y < height; y++)
+            for(int x = 0; x < width; x++)
+                visitor.visit(x, y, cells[i++]);
+    }
+
+    /** visit the tiles of a rectangle in row-major order, clipped to the grid */
+    public void forEach(int x0, int y0, int x1, int y1, TileVisitor visitor){
+        x0 = Math.max(0, x0);
+        y0 = Math.max(0, y0);
+        x1 = Math.min(width - 1, x1);
+        y1 = Math.min(height - 1, y1);
+        for(int y = y0; y <= y1; y++) {
+            int i = y * width + x0;
+            for (int x = x0; x <= x1; x++)
+                visitor.visit(x, y, cells[i++]);
+        }
+    }
+}
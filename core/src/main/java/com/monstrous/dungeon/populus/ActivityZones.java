@@ -0,0 +1,262 @@
+package com.monstrous.dungeon.populus;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.map.TileType;
+
+
+// Which enemies take their turns: only the ones near the rogue.
+//
+// The active zone is the rogue's room and the rooms within Settings.activeRoomDistance hops of it, following
+// Room.closeNeighbours (the rooms that have a corridor between them), as counted by the map's RoomGraph. Every floor
+// tile of a corridor belongs to the nearest room along the floor. Enemies outside the zone are dormant: they are out
+// of the TurnScheduler and cost nothing per turn. Far from the rogue they would only wander around at random anyway.
+//
+// An enemy is put to sleep after its turn, when it finds itself outside the zone. So when the zone moves on, the
+// enemies left behind drop out one by one at their next turn, without anything to do for the rooms that were left.
+// Dormant enemies are kept in a list per room, and when the rogue comes near and a room joins the zone, its enemies
+// are woken up. Instead of replaying all the turns they missed, their state is caught up in one go with the same odds:
+// a warrior's aggression flipped an odd number of times or not, and the random walk has moved the enemy somewhere
+// around its old position in the room.
+//
+// The zone only changes when the rogue enters another room. When the rogue leaves a level, all enemies on it become
+// dormant, so that they are caught up as well when the rogue comes back.
+// With an activeRoomDistance of -1 no enemy ever becomes dormant and all of them act every turn, as they used to.
+
+public class ActivityZones {
+    private static final float AGGRESSION_FLIP = 1f / 21f;     // chance per turn that a warrior switches, see GameObject.decide
+
+    private DungeonMap map;             // map the zone is for
+    private Enemies enemies;            // enemies of that map
+    private int centreRoom = -1;        // room of the rogue
+    private int distance;               // activeRoomDistance used for the zone
+    private int[] tileRoom = new int[0];           // per tile: room it belongs to, -1 if not on the floor
+    private int[] queue = new int[0];
+    private boolean[] active = new boolean[0];     // per room id
+    private Array<GameObject>[] dormant = newLists(0);     // per room id
+
+    /** is this room in the active zone? */
+    public boolean isActive(int roomId){
+        return roomId < 0 || roomId >= active.length || active[roomId];
+    }
+
+    /** room an enemy at this position belongs to, -1 if none */
+    public int getRoom(int x, int y){
+        if(map == null || x < 0 || y < 0 || x >= map.mapWidth || y >= map.mapHeight)
+            return -1;
+        return tileRoom[y * map.mapWidth + x];
+    }
+
+    /** move the zone along with the rogue, to be called before the enemies take their turns */
+    public void update(World world){
+        if(world.map != map || world.enemies != enemies) {
+            enterLevel(world);
+            return;
+        }
+        int room = getRoom(world.rogue.x, world.rogue.y);
+        if((room < 0 || room == centreRoom) && distance == Settings.activeRoomDistance)
+            return;
+        if(room >= 0)
+            centreRoom = room;
+        distance = Settings.activeRoomDistance;
+        computeZone();
+        for(int id = 0; id < map.rooms.size; id++)
+            if(active[id] && dormant[id].size > 0)
+                wakeRoom(world, id);
+    }
+
+    /** after its turn: put an enemy that wandered out of the zone to sleep. Returns true if it is dormant now. */
+    public boolean parkIfAway(World world, GameObject enemy){
+        int room = getRoom(enemy.x, enemy.y);
+        if(isActive(room))
+            return false;
+        park(world, enemy, room);
+        return true;
+    }
+
+    /** is the zone set up for the current level? Not after a change of level until the next update(). */
+    public boolean isCurrent(World world){
+        return world.map == map && world.enemies == enemies;
+    }
+
+    /** the dormant enemies in the order they will be woken up, room by room (for SaveGame) */
+    public void getDormant(Array<GameObject> sleeping){
+        for(int id = 0; id < dormant.length; id++)
+            sleeping.addAll(dormant[id]);
+    }
+
+    /** after loading a game: take over the enemies of the current level as they were saved, without waking or parking
+     * anyone. The dormant ones are given in the order of getDormant(). */
+    public void restore(World world, Array<GameObject> sleeping){
+        map = world.map;
+        enemies = world.enemies;
+        computeTileRooms();
+        for(int id = 0; id < map.rooms.size; id++)
+            dormant[id].clear();
+        centreRoom = getRoom(world.rogue.x, world.rogue.y);
+        distance = Settings.activeRoomDistance;
+        computeZone();
+        for(GameObject enemy : sleeping) {
+            int room = getRoom(enemy.x, enemy.y);
+            if(room >= 0)
+                dormant[room].add(enemy);
+        }
+    }
+
+    private void enterLevel(World world){
+        if(enemies != null && Settings.activeRoomDistance >= 0) {
+            // the enemies on the level that was left sleep until the rogue comes back
+            for(int i = 0; i < enemies.enemies.size; i++) {
+                GameObject enemy = enemies.enemies.get(i);
+                if(enemy.stats.hitPoints > 0 && enemy.dormantSince < 0) {
+                    enemy.dormantSince = world.scheduler.now;
+                    world.scheduler.park(enemy);
+                }
+            }
+        }
+        map = world.map;
+        enemies = world.enemies;
+        computeTileRooms();
+        for(int id = 0; id < map.rooms.size; id++)
+            dormant[id].clear();
+        centreRoom = getRoom(world.rogue.x, world.rogue.y);
+        distance = Settings.activeRoomDistance;
+        computeZone();
+        for(int i = 0; i < enemies.enemies.size; i++) {     // waking up an enemy can iterate the list as well
+            GameObject enemy = enemies.enemies.get(i);
+            if(enemy.stats.hitPoints <= 0)
+                continue;
+            int room = getRoom(enemy.x, enemy.y);
+            if(isActive(room))
+                wake(world, enemy);
+            else if(enemy.dormantSince >= 0)
+                dormant[room].add(enemy);
+            else
+                park(world, enemy, room);
+        }
+    }
+
+    // every floor tile belongs to the nearest room: a breadth first search from all room tiles at once
+    private void computeTileRooms(){
+        int width = map.mapWidth;
+        int size = width * map.mapHeight;
+        if(tileRoom.length < size) {
+            tileRoom = new int[size];
+            queue = new int[size];
+        }
+        int head = 0;
+        int tail = 0;
+        for(int i = 0; i < size; i++) {
+            tileRoom[i] = map.getRoomCode(i % width, i / width);
+            if(tileRoom[i] >= 0)
+                queue[tail++] = i;
+        }
+        while(head < tail) {
+            int i = queue[head++];
+            int x = i % width;
+            int y = i / width;
+            tail = spread(i, x > 0 ? i - 1 : -1, tail);
+            tail = spread(i, x < width - 1 ? i + 1 : -1, tail);
+            tail = spread(i, y > 0 ? i - width : -1, tail);
+            tail = spread(i, y < map.mapHeight - 1 ? i + width : -1, tail);
+        }
+        int numRooms = map.rooms.size;
+        if(active.length < numRooms) {
+            active = new boolean[numRooms];
+            Array<GameObject>[] lists = newLists(numRooms);
+            System.arraycopy(dormant, 0, lists, 0, dormant.length);
+            dormant = lists;
+        }
+    }
+
+    // give a floor tile next to a tile with a room the same room
+    private int spread(int from, int to, int tail){
+        if(to < 0 || tileRoom[to] >= 0 || !isFloor(map.getGrid(to % map.mapWidth, to / map.mapWidth)))
+            return tail;
+        tileRoom[to] = tileRoom[from];
+        queue[tail] = to;
+        return tail + 1;
+    }
+
+    private static boolean isFloor(TileType type){
+        return TileType.hasFloor(type) || type == TileType.STAIRS_DOWN || type == TileType.STAIRS_DOWN_DEEP
+            || type == TileType.STAIRS_UP || type == TileType.STAIRS_UP_HIGH;
+    }
+
+    // the rooms at most distance corridors away from the centre room
+    private void computeZone(){
+        int numRooms = map.rooms.size;
+        boolean all = centreRoom < 0 || distance < 0;     // nowhere to start from, or no zones at all
+        for(int id = 0; id < numRooms; id++)
+            active[id] = all || map.graph.getHops(centreRoom, id) <= distance;
+    }
+
+    private void park(World world, GameObject enemy, int room){
+        enemy.dormantSince = world.scheduler.now;
+        world.scheduler.park(enemy);
+        dormant[room].add(enemy);
+    }
+
+    private void wakeRoom(World world, int room){
+        Array<GameObject> list = dormant[room];
+        for(int i = 0; i < list.size; i++) {
+            GameObject enemy = list.get(i);
+            if(enemy.stats.hitPoints > 0)
+                wake(world, enemy);
+        }
+        list.clear();
+    }
+
+    private void wake(World world, GameObject enemy){
+        if(enemy.dormantSince < 0)
+            return;
+        int turns = (int)((world.scheduler.now - enemy.dormantSince) / TurnScheduler.delay(enemy.type.speed));
+        enemy.dormantSince = -1;
+        if(turns > 0)
+            catchUp(world, enemy, turns);
+        world.scheduler.wake(world, enemy);
+    }
+
+    // the likely outcome of this many turns of wandering around at random
+    private void catchUp(World world, GameObject enemy, int turns){
+        if(enemy.type == GameObjectTypes.warrior) {
+            // after n turns, the aggression has flipped an odd number of times with chance (1 - (1-2p)^n) / 2
+            float flipped = (1f - (float)Math.pow(1f - 2f * AGGRESSION_FLIP, turns)) / 2f;
+            if(enemy.rnd.random(1f) < flipped)
+                enemy.stats.aggressive = !enemy.stats.aggressive;
+        }
+        int roomId = map.getRoomCode(enemy.x, enemy.y);
+        if(roomId < 0)
+            return;     // in a corridor it stays where it is
+
+        // a random walk of n steps ends up about sqrt(n/2) tiles away along each axis, but stays inside the room
+        Room room = map.rooms.get(roomId);
+        double spread = Math.sqrt(turns / 2.0);
+        int x = clamp(enemy.x + (int)Math.round(enemy.rnd.nextGaussian() * spread), room.x + 1, room.x + room.width - 1);
+        int y = clamp(enemy.y + (int)Math.round(enemy.rnd.nextGaussian() * spread), room.y + 1, room.y + room.height - 1);
+        GameObjects gameObjects = world.levelData.gameObjects;
+        if((x == enemy.x && y == enemy.y) || map.getGrid(x, y) != TileType.ROOM || gameObjects.getOccupant(x, y) != null
+            || (x == world.rogue.x && y == world.rogue.y))
+            return;     // stays where it was
+        enemy.x = x;
+        enemy.y = y;
+        enemy.z = 0;
+        gameObjects.setOccupant(x, y, enemy);
+        world.events.moved(enemy, x, y, 0);
+    }
+
+    private static int clamp(int value, int min, int max){
+        return Math.max(min, Math.min(max, value));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Array<GameObject>[] newLists(int size){
+        Array<GameObject>[] lists = new Array[size];
+        for(int i = 0; i < size; i++)
+            lists[i] = new Array<>();
+        return lists;
+    }
+}
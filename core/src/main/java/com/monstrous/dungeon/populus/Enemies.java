@@ -2,8 +2,8 @@ package com.monstrous.dungeon.populus;
 
 
 import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.Settings;
 import com.monstrous.dungeon.World;
-import com.monstrous.dungeon.render.DungeonScenes;
 
 
 // Enemy characters
@@ -11,6 +11,7 @@ import com.monstrous.dungeon.render.DungeonScenes;
 
 public class Enemies {
     public Array<GameObject> enemies;
+    public int version;                 // changes when enemies are added, so that TurnScheduler gives them a turn
 
 
     public Enemies() {
@@ -19,6 +20,7 @@ public class Enemies {
 
     public void add(GameObject enemy){
         enemies.add(enemy);
+        version++;
     }
 
     public void addFromObjects(GameObjects gameObjects)
@@ -27,6 +29,7 @@ public class Enemies {
             if(go.type.isEnemy)
                 enemies.add(go);
         }
+        version++;
     }
 
     public void remove(GameObject enemy){
@@ -35,12 +38,19 @@ public class Enemies {
 
     public void clear(){
         enemies.clear();
+        version++;
     }
 
-    public void step(World world, DungeonScenes scenes){
-        for(GameObject enemy : enemies){
-            enemy.step(world, scenes);
-        }
+    /** all enemies take one turn, regardless of their speed */
+    public void step(World world){
+        step(world, enemies, Settings.parallelEnemyTurns && enemies.size >= EnemyTurn.PARALLEL_THRESHOLD);
+    }
+
+    /** the given enemies take one turn, in list order, e.g. the ones that are due according to the TurnScheduler */
+    public void step(World world, Array<GameObject> due, boolean parallel){
+        // one distance field for all enemies, only recomputed if the rogue moved
+        world.distanceToRogue.update(world.map, world.rogue.x, world.rogue.y, World.CHASE_DISTANCE);
+        world.enemyTurn.step(world, due, parallel);
     }
 
     public void animate(float delta) {
@@ -0,0 +1,179 @@
+package com.monstrous.dungeon.populus;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.FieldOfView;
+
+
+/** One turn of all enemies, in two phases.
+ *
+ * Decide: every enemy picks its action (GameObject.decide) against the world as it is at the start of the turn.
+ * Nothing but the enemy's own decision state changes in this phase, so with many enemies it is split over worker threads.
+ * Resolve: the decisions are carried out one enemy at a time in the order of the enemy list, on the calling thread.
+ * All moves, fights and pickups happen here.
+ * Conflicts are settled by that order: an enemy that wants to step onto a tile that another enemy took earlier in
+ * this turn waits instead of attacking it, and an enemy that was defeated earlier in the turn does nothing.
+ *
+ * The outcome only depends on the world at the start of the turn and the random stream of each enemy,
+ * so it is the same for any number of threads.
+ * The worker threads are only started the first time a turn is decided in parallel.
+ */
+public class EnemyTurn implements Disposable {
+    public static final int PARALLEL_THRESHOLD = 256;     // with fewer enemies, parallel decisions don't pay off
+    private static final int BATCH_SIZE = 64;             // enemies per task for a worker
+
+    private final int numThreads;       // including the calling thread
+    private GameObject[] order = new GameObject[0];     // enemies at the start of the turn
+    private int[] decisions = new int[0];
+    private boolean[] targetTaken = new boolean[0];     // was there an enemy on the target tile at the start of the turn?
+    private int count;
+    private World world;                // world of the turn being decided
+
+    // shared with the workers, guarded by this
+    private Thread[] workers;
+    private int generation;             // one per parallel decide phase
+    private int nextBatch, numBatches, batchesDone;
+    private RuntimeException failure;
+    private boolean disposed;
+
+    public EnemyTurn(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /** one turn for these enemies. parallel: make the decisions on the worker threads */
+    public void step(World world, Array<GameObject> enemies, boolean parallel){
+        // copy, because defeated enemies are taken out of the list during the turn
+        count = enemies.size;
+        if(order.length < count){
+            order = new GameObject[count];
+            decisions = new int[count];
+            targetTaken = new boolean[count];
+        }
+        for(int i = 0; i < count; i++)
+            order[i] = enemies.get(i);
+        this.world = world;
+
+        if(parallel && numThreads > 1 && count > BATCH_SIZE)
+            decideParallel();
+        else
+            decide(0, count, world.fieldOfView);
+        resolve();
+
+        for(int i = 0; i < count; i++)
+            order[i] = null;
+        this.world = null;
+    }
+
+    private void decide(int from, int to, FieldOfView fov){
+        GameObjects gameObjects = world.levelData.gameObjects;
+        int width = world.map.mapWidth;
+        for(int i = from; i < to; i++){
+            GameObject enemy = order[i];
+            decisions[i] = enemy.decide(world, fov);
+            int target = enemy.getTargetTile(world, decisions[i]);
+            targetTaken[i] = target >= 0 && gameObjects.getEnemy(target % width, target / width) != null;
+        }
+    }
+
+    private void resolve(){
+        GameObjects gameObjects = world.levelData.gameObjects;
+        int width = world.map.mapWidth;
+        for(int i = 0; i < count; i++){
+            GameObject enemy = order[i];
+            if(enemy.stats.hitPoints <= 0)
+                continue;       // defeated earlier in this turn
+            int target = enemy.getTargetTile(world, decisions[i]);
+            if(target >= 0 && !targetTaken[i] && gameObjects.getEnemy(target % width, target / width) != null) {
+                world.events.animated(enemy, "Idle", -1);      // someone else got there first
+                continue;
+            }
+            enemy.act(world, decisions[i]);
+        }
+    }
+
+    private void decideParallel(){
+        synchronized (this) {
+            if(workers == null)
+                startWorkers();
+            nextBatch = 0;
+            batchesDone = 0;
+            numBatches = (count + BATCH_SIZE - 1) / BATCH_SIZE;
+            failure = null;
+            generation++;
+            notifyAll();
+        }
+        runBatches(world.fieldOfView);      // the calling thread helps out
+        synchronized (this) {
+            while(batchesDone < numBatches) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while enemies were deciding", e);
+                }
+            }
+            if(failure != null)
+                throw failure;
+        }
+    }
+
+    // take batches until there are none left
+    private void runBatches(FieldOfView fov){
+        while(true) {
+            int batch;
+            synchronized (this) {
+                if (nextBatch >= numBatches)
+                    return;
+                batch = nextBatch++;
+            }
+            try {
+                decide(batch * BATCH_SIZE, Math.min(count, (batch + 1) * BATCH_SIZE), fov);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (failure == null)
+                        failure = e;
+                }
+            }
+            synchronized (this) {
+                if (++batchesDone == numBatches)
+                    notifyAll();
+            }
+        }
+    }
+
+    private void startWorkers(){
+        workers = new Thread[numThreads - 1];
+        for(int i = 0; i < workers.length; i++){
+            workers[i] = new Thread(this::work, "enemy-turn-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    private void work(){
+        FieldOfView fov = new FieldOfView();        // not thread safe, so one per worker
+        int seen = 0;
+        while(true) {
+            synchronized (this) {
+                while (generation == seen && !disposed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (disposed)
+                    return;
+                seen = generation;
+            }
+            runBatches(fov);
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        disposed = true;
+        notifyAll();
+    }
+}
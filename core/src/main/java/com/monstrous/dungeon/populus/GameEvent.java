@@ -0,0 +1,47 @@
+package com.monstrous.dungeon.populus;
+
+
+/** Something that happened in the game that the player should see, hear or read about.
+ * The game logic records these in GameEvents, the scenes, the sounds and the message box play them back.
+ * Which fields are used depends on the kind of event. */
+public class GameEvent {
+    // kinds
+    public static final int MOVED = 0;          // actor moved to x,y at height z
+    public static final int TURNED = 1;         // actor at x,y turned to face Direction value
+    public static final int ANIMATED = 2;       // actor starts animation text, value times (-1 to loop)
+    public static final int ATTACKED = 3;       // actor hit other, which has value hit points left
+    public static final int MISSED = 4;         // actor missed other
+    public static final int BLOCKED = 5;        // the armour of other blocked the attack of actor
+    public static final int THROWN = 6;         // actor (a thrown item) hit other, which has value hit points left
+    public static final int DEFEATED = 7;       // actor defeated other and gains value XP
+    public static final int PICKED_UP = 8;      // actor picked up other
+    public static final int DROPPED = 9;        // other was put on the floor at x,y, actor is who dropped it
+    public static final int CHANGED = 10;       // other changed type, e.g. an arrow became a bundle of arrows
+    public static final int ROBBED = 11;        // actor stole value gold from other
+    public static final int EQUIPPED = 12;      // actor holds other at node text
+    public static final int UNEQUIPPED = 13;    // actor no longer holds other at node text
+    public static final int REVEALED = 14;      // more of the map was uncovered, see the change sets of FogOfWar
+    public static final int MESSAGE = 15;       // text for the player
+    public static final int HUNGRY = 16;        // actor's stomach rumbles
+
+    // flags
+    public static final int HEARD = 1;          // play the sound of the event
+    public static final int REPORTED = 2;       // tell the player about it
+    public static final int WITH_WEAPON = 4;    // ATTACKED with a melee weapon
+    public static final int ARMOUR_DAMAGED = 8; // BLOCKED
+    public static final int WEAPON_DAMAGED = 16;// BLOCKED
+    public static final int SHOWN = 32;         // DROPPED where the player can see it
+
+    public int kind;
+    public GameObject actor;
+    public GameObject other;
+    public int x, y;
+    public float z;
+    public int value;
+    public int flags;
+    public String text;
+
+    public boolean has(int flag){
+        return (flags & flag) != 0;
+    }
+}
@@ -0,0 +1,249 @@
+package com.monstrous.dungeon.populus;
+
+import com.monstrous.dungeon.map.Direction;
+
+
+// Stream of GameEvents from the game logic to the rendering side.
+//
+// The logic (moves, fights, pickups, ...) only records what happened here and never calls the scenes, the sounds or
+// the message box itself, so it runs just as well without graphics and the scenes can catch up on any number of turns
+// in one pass with poll().
+//
+// The events are kept in a ring buffer of parallel arrays that is allocated up front, recording an event only writes
+// a few array elements. The buffer doubles if it fills up because an event must not be lost: the scenes would get out
+// of step with the game. Without anyone to play the events back, e.g. in headless tools, set enabled to false.
+
+public class GameEvents {
+    public boolean enabled = true;      // if false, nothing is recorded
+
+    private int[] kinds;
+    private GameObject[] actors;
+    private GameObject[] others;
+    private int[] xs;
+    private int[] ys;
+    private float[] zs;
+    private int[] values;
+    private int[] flags;
+    private String[] texts;
+    private int head;           // oldest event
+    private int size;
+    private int mask;           // capacity - 1, the capacity is a power of two
+
+    public GameEvents() {
+        this(256);
+    }
+
+    public GameEvents(int capacity) {
+        allocate(Integer.highestOneBit(Math.max(2, capacity - 1)) << 1);
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /** take the oldest event out of the stream. Returns false if there is none. */
+    public boolean poll(GameEvent event){
+        if(size == 0)
+            return false;
+        int i = head;
+        event.kind = kinds[i];
+        event.actor = actors[i];
+        event.other = others[i];
+        event.x = xs[i];
+        event.y = ys[i];
+        event.z = zs[i];
+        event.value = values[i];
+        event.flags = flags[i];
+        event.text = texts[i];
+        actors[i] = null;       // don't hold on to objects that were already played back
+        others[i] = null;
+        texts[i] = null;
+        head = (head + 1) & mask;
+        size--;
+        return true;
+    }
+
+    /** drop all events, e.g. when a game is started or loaded */
+    public void clear(){
+        while(size > 0){
+            int i = head;
+            actors[i] = null;
+            others[i] = null;
+            texts[i] = null;
+            head = (head + 1) & mask;
+            size--;
+        }
+        head = 0;
+    }
+
+    public void moved(GameObject actor, int x, int y, float z){
+        int i = add(GameEvent.MOVED, actor, null, 0);
+        if(i >= 0) {
+            xs[i] = x;
+            ys[i] = y;
+            zs[i] = z;
+        }
+    }
+
+    public void turned(GameObject actor, Direction dir){
+        int i = add(GameEvent.TURNED, actor, null, 0);
+        if(i >= 0) {
+            xs[i] = actor.x;
+            ys[i] = actor.y;
+            zs[i] = actor.z;
+            values[i] = dir.ordinal();
+        }
+    }
+
+    public void animated(GameObject actor, String animation, int loopCount){
+        int i = add(GameEvent.ANIMATED, actor, null, 0);
+        if(i >= 0) {
+            texts[i] = animation;
+            values[i] = loopCount;
+        }
+    }
+
+    public void attacked(GameObject actor, GameObject other, int flags){
+        int i = add(GameEvent.ATTACKED, actor, other, flags);
+        if(i >= 0)
+            values[i] = other.stats.hitPoints;
+    }
+
+    public void missed(GameObject actor, GameObject other, int flags){
+        add(GameEvent.MISSED, actor, other, flags);
+    }
+
+    public void blocked(GameObject actor, GameObject other, int flags){
+        add(GameEvent.BLOCKED, actor, other, flags);
+    }
+
+    public void thrown(GameObject item, GameObject target, int flags){
+        int i = add(GameEvent.THROWN, item, target, flags);
+        if(i >= 0)
+            values[i] = target.stats.hitPoints;
+    }
+
+    public void defeated(GameObject actor, GameObject other, int xp, int flags){
+        int i = add(GameEvent.DEFEATED, actor, other, flags);
+        if(i >= 0)
+            values[i] = xp;
+    }
+
+    public void pickedUp(GameObject actor, GameObject item, int flags){
+        int i = add(GameEvent.PICKED_UP, actor, item, flags);
+        if(i >= 0)
+            values[i] = item.quantity;
+    }
+
+    public void dropped(GameObject actor, GameObject item, int flags){
+        int i = add(GameEvent.DROPPED, actor, item, flags);
+        if(i >= 0) {
+            xs[i] = item.x;
+            ys[i] = item.y;
+            zs[i] = item.z;
+            values[i] = item.quantity;
+        }
+    }
+
+    public void changed(GameObject item){
+        add(GameEvent.CHANGED, null, item, 0);
+    }
+
+    public void robbed(GameObject actor, GameObject victim, int amount, int flags){
+        int i = add(GameEvent.ROBBED, actor, victim, flags);
+        if(i >= 0)
+            values[i] = amount;
+    }
+
+    public void equipped(GameObject actor, GameObject item, String nodeName){
+        int i = add(GameEvent.EQUIPPED, actor, item, 0);
+        if(i >= 0)
+            texts[i] = nodeName;
+    }
+
+    public void unequipped(GameObject actor, GameObject item, String nodeName){
+        int i = add(GameEvent.UNEQUIPPED, actor, item, 0);
+        if(i >= 0)
+            texts[i] = nodeName;
+    }
+
+    public void hungry(GameObject actor){
+        add(GameEvent.HUNGRY, actor, null, GameEvent.HEARD);
+    }
+
+    public void revealed(){
+        add(GameEvent.REVEALED, null, null, 0);
+    }
+
+    public void message(String text){
+        int i = add(GameEvent.MESSAGE, null, null, 0);
+        if(i >= 0)
+            texts[i] = text;
+    }
+
+    // claim a slot for a new event, returns its index or -1 if not recording
+    private int add(int kind, GameObject actor, GameObject other, int flag){
+        if(!enabled)
+            return -1;
+        if(size > mask)
+            grow();
+        int i = (head + size) & mask;
+        size++;
+        kinds[i] = kind;
+        actors[i] = actor;
+        others[i] = other;
+        xs[i] = 0;
+        ys[i] = 0;
+        zs[i] = 0;
+        values[i] = 0;
+        flags[i] = flag;
+        texts[i] = null;
+        return i;
+    }
+
+    private void grow(){
+        int[] oldKinds = kinds;
+        GameObject[] oldActors = actors;
+        GameObject[] oldOthers = others;
+        int[] oldXs = xs;
+        int[] oldYs = ys;
+        float[] oldZs = zs;
+        int[] oldValues = values;
+        int[] oldFlags = flags;
+        String[] oldTexts = texts;
+        int oldMask = mask;
+
+        allocate(2 * kinds.length);
+        // unroll the old ring, the oldest event goes to index 0
+        for(int n = 0; n < size; n++){
+            int j = (head + n) & oldMask;
+            kinds[n] = oldKinds[j];
+            actors[n] = oldActors[j];
+            others[n] = oldOthers[j];
+            xs[n] = oldXs[j];
+            ys[n] = oldYs[j];
+            zs[n] = oldZs[j];
+            values[n] = oldValues[j];
+            flags[n] = oldFlags[j];
+            texts[n] = oldTexts[j];
+        }
+        head = 0;
+    }
+
+    private void allocate(int capacity){
+        kinds = new int[capacity];
+        actors = new GameObject[capacity];
+        others = new GameObject[capacity];
+        xs = new int[capacity];
+        ys = new int[capacity];
+        zs = new float[capacity];
+        values = new int[capacity];
+        flags = new int[capacity];
+        texts = new String[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -3,13 +3,11 @@ package com.monstrous.dungeon.populus;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.badlogic.gdx.graphics.g3d.utils.AnimationController;
-import com.badlogic.gdx.math.MathUtils;
-import com.monstrous.dungeon.MessageBox;
-import com.monstrous.dungeon.Sounds;
 import com.monstrous.dungeon.World;
 import com.monstrous.dungeon.map.Direction;
+import com.monstrous.dungeon.map.FieldOfView;
 import com.monstrous.dungeon.map.TileType;
-import com.monstrous.dungeon.render.DungeonScenes;
+import com.monstrous.dungeon.rng.RandomStream;
 
 
 public class GameObject {
@@ -19,6 +17,7 @@ public class GameObject {
     public float z;       // above/below ground level, e.g. when walking stairs
     public Direction direction;
     public ModelInstance scene;
+    public int sceneHandle = -1;        // handle of the scene in the scene manager
     public AnimationController animationController; // null if not animated
     public CharacterStats stats;        // only for rogue and enemies
     public int quantity;                // e.g. amount of gold for a gold object
@@ -27,6 +26,16 @@ public class GameObject {
     public int damage;                  // for weapons
     public int accuracy;                // for weapons
     public boolean hasFocus;
+    public RandomStream rnd;            // own stream for decisions and combat rolls (only for rogue and enemies)
+    public long nextAction;             // game time of the next action of an enemy, see TurnScheduler
+    public long dormantSince = -1;      // game time an enemy went to sleep, -1 if it is active, see ActivityZones
+
+    // bookkeeping for GameObjects
+    int arrayIndex = -1;                // position in the array of game objects
+    int tileIndex = -1;                 // tile it occupies, -1 if not on the grid
+    int roomIndex = -1;                 // room it occupies, -1 if not in a room
+    GameObject nextOnTile, prevOnTile;
+    GameObject nextInRoom, prevInRoom;
 
 
     public GameObject(GameObjectType type, int quantity) {
@@ -46,138 +55,169 @@ public class GameObject {
         this.accuracy = 0;
     }
 
-    // NPC step
-    public void step(World world, DungeonScenes scenes) {
-        if (attackedBy != null) {     // don't move while being attacked
-            defend(world, scenes);
-            return;
-        }
+    // An NPC turn has two parts: decide() picks the action and act() carries it out.
+    // decide() only reads the world and only changes the decision state of this NPC (its random stream and aggression),
+    // so the decisions of all enemies can be made in parallel, see EnemyTurn.
+    public static final int IDLE = -1;      // decisions 0..3 are a step in that Direction (ordinal)
+    public static final int DEFEND = 4;
 
-        if (lookForLoot(world, scenes))
-            return;
+    private static final int[] stepX = { 0, 1, 0, -1 };     // per Direction
+    private static final int[] stepY = { 1, 0, -1, 0 };
+    private static final Direction[] directions = Direction.values();
+
+    /** what this NPC wants to do this turn: IDLE, DEFEND or a Direction ordinal to step in.
+     * fov: for line of sight, one per thread */
+    public int decide(World world, FieldOfView fov) {
+        if (attackedBy != null)      // don't move while being attacked
+            return DEFEND;
 
+        int loot = lookForLoot(world);
+        if (loot != IDLE)
+            return loot;
 
         // warrior switches aggression on and off
         if (type == GameObjectTypes.warrior) {
-            if (MathUtils.random(20) < 1)
+            if (rnd.random(20) < 1)
                 stats.aggressive = !stats.aggressive;
         }
 
 
-        if (stats.aggressive && world.rogue.stats.hitPoints > 0 && MathUtils.random(2) > 1) {
-            // move towards the player
+        if (stats.aggressive && world.rogue.stats.hitPoints > 0 && rnd.random(2) > 1 && canSee(world, fov, world.rogue)) {
+            // move towards the player, along the shortest path if there is one
+            Direction dir = world.distanceToRogue.bestStep(x, y);
+            if (dir != null)
+                return dir.ordinal();
 
             int dx = (int) Math.signum(world.rogue.x - x);
             int dy = (int) Math.signum(world.rogue.y - y);
             if (dx != 0 && dy != 0) { // avoid diagonals
-                if (MathUtils.random(1) > 0)
+                if (rnd.random(1) > 0)
                     dx = 0;
                 else
                     dy = 0;
             }
-            Direction dir = Direction.NORTH;
             if (dx < 0)
-                dir = Direction.WEST;
+                return Direction.WEST.ordinal();
             else if (dx > 0)
-                dir = Direction.EAST;
+                return Direction.EAST.ordinal();
             else if (dy < 0)
-                dir = Direction.SOUTH;
-            tryMove(world, scenes, dx, dy, dir);
+                return Direction.SOUTH.ordinal();
+            else if (dy > 0)
+                return Direction.NORTH.ordinal();
+            return IDLE;
         } else {
-            int action = MathUtils.random(0, 3);
+            int action = rnd.random(0, 3);
             switch (action) {
                 // left/right keys translate to -x/+x
                 // up/down to +y/-y
                 //
                 case 0:
-                    tryMove(world, scenes, 0, 1, Direction.NORTH);
-                    break;
+                    return Direction.NORTH.ordinal();
                 case 1:
-                    tryMove(world, scenes, -1, 0, Direction.WEST);
-                    break;
+                    return Direction.WEST.ordinal();
                 case 2:
-                    tryMove(world, scenes, 0, -1, Direction.SOUTH);
-                    break;
-                case 3:
-                    tryMove(world, scenes, 1, 0, Direction.EAST);
-                    break;
+                    return Direction.SOUTH.ordinal();
+                default:
+                    return Direction.EAST.ordinal();
             }
         }
     }
 
-    // check for valuables nearby and move towards it
-    public boolean lookForLoot(World world, DungeonScenes scenes) {
-        if (grabLoot(world, scenes, -1, 0, Direction.WEST))
-            return true;
-        if (grabLoot(world, scenes, 1, 0, Direction.EAST))
-            return true;
-        if (grabLoot(world, scenes, 0, 1, Direction.NORTH))
-            return true;
-        if (grabLoot(world, scenes, 0, -1, Direction.SOUTH))
-            return true;
-        return false;
+    /** carry out a decision of decide() */
+    public void act(World world, int decision) {
+        if (decision == DEFEND)
+            defend(world);
+        else if (decision != IDLE)
+            tryMove(world, stepX[decision], stepY[decision], directions[decision]);
     }
 
-    public boolean grabLoot(World world, DungeonScenes scenes, int dx, int dy, Direction dir) {
-        GameObject occupant = world.levelData.gameObjects.getOccupant(x + dx, y + dy);
-        TileType tile = world.map.getGrid(x + dx, y + dy);
-        if (occupant != null && (occupant.type.isGold || occupant.type.isWeapon || occupant.type.isArmour || occupant.type.isArrow || tile == TileType.DOORWAY)) {
-            // gravitate towards doorways to encourage exploration (not sure this helps)
+    /** tile this NPC wants to step on for a decision, or -1 if it doesn't move */
+    public int getTargetTile(World world, int decision) {
+        if (decision == DEFEND || decision == IDLE)
+            return -1;
+        return (y + stepY[decision]) * world.map.mapWidth + x + stepX[decision];
+    }
+
+    // line of sight to another character within view distance
+    public boolean canSee(World world, FieldOfView fov, GameObject other) {
+        return fov.canSee(world.map, x, y, other.x, other.y, World.VIEW_RADIUS);
+    }
+
+    // check for valuables nearby, returns the direction to move in or IDLE
+    public int lookForLoot(World world) {
+        if (hasLoot(world, -1, 0))
+            return Direction.WEST.ordinal();
+        if (hasLoot(world, 1, 0))
+            return Direction.EAST.ordinal();
+        if (hasLoot(world, 0, 1))
+            return Direction.NORTH.ordinal();
+        if (hasLoot(world, 0, -1))
+            return Direction.SOUTH.ordinal();
+        return IDLE;
+    }
 
-            tryMove(world, scenes, dx, dy, dir);
-            return true;
+    public boolean hasLoot(World world, int dx, int dy) {
+        TileType tile = world.map.getGrid(x + dx, y + dy);
+        for (GameObject occupant = world.levelData.gameObjects.getOccupant(x + dx, y + dy); occupant != null; occupant = occupant.nextOnTile) {
+            if (occupant.type.isGold || occupant.type.isWeapon || occupant.type.isArmour || occupant.type.isArrow || tile == TileType.DOORWAY) {
+                // gravitate towards doorways to encourage exploration (not sure this helps)
+                return true;
+            }
         }
         return false;
     }
 
-    public void defend(World world, DungeonScenes scenes) {
-        fight(world, scenes, attackedBy);
+    public void defend(World world) {
+        fight(world, attackedBy);
         attackedBy = null;
     }
 
-    public void tryMove(World world, DungeonScenes scenes, int dx, int dy, Direction dir) {
+    // The game logic below doesn't show, play or print anything itself, it records what happened in world.events.
+
+    public void turn(World world, Direction dir) {
+        direction = dir;
+        world.events.turned(this, dir);
+    }
+
+    public void tryMove(World world, int dx, int dy, Direction dir) {
 
-        scenes.turnObject(this, dir, x, y);    // turn towards moving direction
+        turn(world, dir);    // turn towards moving direction
         int tx = x + dx;
         int ty = y + dy;
-        TileType from = world.map.getGrid(x, y);
-        TileType cell = world.map.getGrid(tx, ty);
-        if (!TileType.walkable(cell, from)) {
-            startAnimation("Idle", -1);
+        if (!world.map.canStep(x, y, dir)) {
+            world.events.animated(this, "Idle", -1);
             return;     // don't move to non walkable cell
         }
 
 
-        // what is in the target cell? can be enemy, pickup or nothing
-        GameObject occupant = world.levelData.gameObjects.getOccupant(tx, ty);
-
-        if (occupant != null && occupant.type == GameObjectTypes.bigSword && !type.isPlayer) {  // don't let monsters pick up sword or walk over sword
-            return;
+        // what is in the target cell? can be enemies, pickups or nothing
+        GameObject enemy = null;
+        GameObject pickup = null;
+        for (GameObject occupant = world.levelData.gameObjects.getOccupant(tx, ty); occupant != null; occupant = occupant.nextOnTile) {
+            if (occupant.type == GameObjectTypes.bigSword && !type.isPlayer)    // don't let monsters pick up sword or walk over sword
+                return;
+            if (enemy == null && occupant.type.isEnemy)
+                enemy = occupant;
+            else if (pickup == null && occupant.type.pickup)
+                pickup = occupant;
         }
 
 
 //        if(type.isPlayer)
 //            System.out.println("Occupant: "+(occupant == null? "--" : occupant.type.name));
 
-        GameObject opponent = null;
-        if (occupant != null && occupant.type.isEnemy) {
-            opponent = occupant;
-        }
+        GameObject opponent = enemy;
         if (!type.isPlayer && tx == world.rogue.x && ty == world.rogue.y && world.rogue.stats.hitPoints > 0) {
             opponent = world.rogue;
         }
         if (opponent != null) {
-            if (type == GameObjectTypes.imp && MathUtils.random(6) >= 3)
+            if (type == GameObjectTypes.imp && rnd.random(6) >= 3)
                 rob(world, opponent);
             else
-                fight(world, scenes, opponent);
+                fight(world, opponent);
             return;
         }
 
-        // vacate old tile
-        if (!type.isPlayer) {
-            world.levelData.gameObjects.clearOccupant(x, y);
-        }
         // move to new tile
         x = tx;
         y = ty;
@@ -198,28 +238,18 @@ public class GameObject {
                 z = 0;
                 break;
         }
-        scenes.moveObject(this, x, y, z);
+        world.events.moved(this, x, y, z);     // the scenes also hide an enemy that goes into the fog of war, and vice versa
 
         boolean pickingUpAnimation = false;
-        if (occupant != null && occupant.type.pickup) {
-            pickUp(world, scenes, occupant);
+        if (pickup != null) {
+            pickUp(world, pickup);
             pickingUpAnimation = true;
 
         }
-        if (!type.isPlayer) {
-            world.levelData.gameObjects.setOccupant(x, y, this);
-
-            // if enemy goes into fog of war, hide it
-            if (scene != null && !world.levelData.tileSeen[y][x]) {
-                scenes.removeScene(this);
-            }
-            // and vice versa
-            if (scene == null && world.levelData.tileSeen[y][x]) {
-                scenes.addScene(this);
-            }
-        }
+        if (!type.isPlayer)
+            world.levelData.gameObjects.setOccupant(x, y, this);  // also vacates the old tile
         if(!pickingUpAnimation)
-            startAnimation("Walking_A", 1);
+            world.events.animated(this, "Walking_A", 1);
     }
 
     // this character will steal all victim's gold
@@ -229,13 +259,12 @@ public class GameObject {
         if (amount > 0) {
             GameObject gold = new GameObject(GameObjectTypes.gold, amount);
             stats.inventory.addItem(gold);
-            if (hasFocus || victim.hasFocus || world.rogue.stats.increasedAwareness > 0) {
-                Sounds.pickup();
-                MessageBox.addLine(type.name + " stole " + amount + " gold from " + victim.type.name);
-            }
+            boolean noticed = hasFocus || victim.hasFocus || world.rogue.stats.increasedAwareness > 0;
+            world.events.robbed(this, victim, amount, noticed ? GameEvent.HEARD | GameEvent.REPORTED : 0);
         }
     }
 
+    // plays back GameEvent.ANIMATED, the game logic records those instead
     public void startAnimation(String name, int loopCount){
         if (animationController != null) {
             animationController.setAnimation(null);   // remove previous animation
@@ -244,37 +273,25 @@ public class GameObject {
     }
 
 
-    private void pickUp(World world, DungeonScenes scenes, GameObject item) {
-        Gdx.app.log("Pickup", item.type.name);
+    private void pickUp(World world, GameObject item) {
+        Gdx.app.debug("Pickup", item.type.name);
 
         if (stats.inventory.addItem(item)) {  // if there is room in the inventory
-            startAnimation("PickUp", 1);
-
-            String name = type.name;
-            if (type.isPlayer)
-                name = "You";
+            world.events.animated(this, "PickUp", 1);
 
             // with increased awareness player is informed of all events
             // otherwise report only on player actions
             //
-            if (hasFocus || world.rogue.stats.increasedAwareness > 0) {
-                Sounds.pickup();
-                if (item.type.isCountable)
-                    MessageBox.addLine(name + " picked up " + item.quantity + " " + item.type.name);
-                else
-                    MessageBox.addLine(name + " picked up " + item.type.name);
-            }
-            if (item.scene != null)
-                scenes.remove(item.scene);
-            world.levelData.gameObjects.clearOccupant(x, y);
-            world.levelData.gameObjects.remove(item);
+            boolean noticed = hasFocus || world.rogue.stats.increasedAwareness > 0;
+            world.events.pickedUp(this, item, noticed ? GameEvent.HEARD | GameEvent.REPORTED : 0);
+            world.levelData.gameObjects.remove(item);     // also takes it off the grid
 
             if (!type.isPlayer)
-                autoEquip(scenes, item);
+                autoEquip(world, item);
             if (item.type == GameObjectTypes.bigSword) {
-                MessageBox.addLine("This is what you came for!");
-                MessageBox.addLine("Now return it to the start.");
-                startAnimation("Cheer", 3);
+                world.events.message("This is what you came for!");
+                world.events.message("Now return it to the start.");
+                world.events.animated(this, "Cheer", 3);
             }
         }
     }
@@ -283,7 +300,7 @@ public class GameObject {
     // used by enemies to equip weapons or armour
     // they will always equip the best weapon/armour
     //
-    private void autoEquip( DungeonScenes scenes, GameObject item ){
+    private void autoEquip( World world, GameObject item ){
 
         if(item.type.isArmour){
             GameObject prev = stats.armourItem;
@@ -294,12 +311,10 @@ public class GameObject {
                 stats.inventory.removeItem(item);
                 // put old one back in inventory
                 if (prev != null) {
-                    if(scene !=null)
-                        scenes.detachModel(this, "handslot.l", prev);
+                    world.events.unequipped(this, prev, "handslot.l");
                     stats.inventory.addItem(prev);
                 }
-                if(scene!=null)
-                    scenes.attachModel(this, "handslot.l",  item);
+                world.events.equipped(this, item, "handslot.l");
             }
         } else if(item.type.isWeapon){
             GameObject prev = stats.weaponItem;
@@ -307,17 +322,15 @@ public class GameObject {
                 stats.weaponItem = item;
                 stats.inventory.removeItem(item);
                 if (prev != null) {
-                    if(scene !=null)
-                        scenes.detachModel(this, "handslot.r", prev);
+                    world.events.unequipped(this, prev, "handslot.r");
                     stats.inventory.addItem(prev);
                 }
-                if(scene !=null)
-                    scenes.attachModel(this, "handslot.r",  item);
+                world.events.equipped(this, item, "handslot.r");
             }
         }
     }
 
-    private void fight(World world, DungeonScenes scenes, GameObject other) {
+    private void fight(World world, GameObject other) {
 
         if(other.stats.hitPoints<=0)
             return; // don't fight a corpse
@@ -325,17 +338,7 @@ public class GameObject {
         if(other == this)
             Gdx.app.error("fight", "Fighting oneself");
 
-        Gdx.app.log("fight", type.name+" hp:"+stats.hitPoints+" vs "+other.type.name+" hp:"+other.stats.hitPoints);
-
-        if (type.isPlayer || other.type.isPlayer) {
-            GameObject enemy = this;
-            if (type.isPlayer)
-                enemy = other;
-
-            System.out.println("enemy "+enemy.type.name+ " xp:" + enemy.stats.experience + " hp:" + enemy.stats.hitPoints + " wp:" + (enemy.stats.weaponItem==null?"none":enemy.stats.weaponItem.type.name) +
-                " armour:" + (enemy.stats.armourItem == null?"none":enemy.stats.armourItem.type.name));
-        }
-        startAnimation("Unarmed_Melee_Attack_Punch_A", 1);
+        world.events.animated(this, "Unarmed_Melee_Attack_Punch_A", 1);
 
         other.attackedBy = this;
 
@@ -349,38 +352,31 @@ public class GameObject {
 
         // experienced enemies can dodge the attack
         int defensiveSkills = Math.min(other.stats.experience/10, 20);
-        int rnd = MathUtils.random(90 + defensiveSkills);
-        System.out.println("accuracy "+accuracy+" vs RND("+(100+defensiveSkills)+") rolls: "+rnd+ "misses? "+(accuracy < rnd ));
+        int roll = rnd.random(90 + defensiveSkills);
 
-        if(accuracy < rnd  ){
-            if(hasFocus || other.hasFocus ) {
-                Sounds.swoosh();
-                MessageBox.addLine(type.name + " misses.");
-            }
+        if(accuracy < roll  ){
+            world.events.missed(this, other, hasFocus || other.hasFocus ? GameEvent.HEARD | GameEvent.REPORTED : 0);
         }
         else {
             int hp = 1;
-            String verb = "hits";
+            int flags = hasFocus || other.hasFocus ? GameEvent.HEARD : 0;
             if(stats.weaponItem != null && !stats.weaponItem.type.isRangeWeapon) {
                 hp += stats.weaponItem.damage;
-                verb = "attacks";
+                flags |= GameEvent.WITH_WEAPON;
             }
             hp += Math.min(stats.experience /20, 20);     // experience bonus
-            System.out.println("attack hp "+hp+" vs protection "+(other.stats.armourItem == null? 0 : other.stats.armourItem.protection));
-
-            if(hasFocus || other.hasFocus )
-                Sounds.fight();
 
             if (other.stats.armourItem != null && other.stats.armourItem.protection > hp) {
-                MessageBox.addLine("The " + other.type.name + " blocks the attack");
+                flags = (flags & GameEvent.HEARD) | GameEvent.REPORTED;
                 if (hp > other.stats.armourItem.protection/2) {
                     other.stats.armourItem.protection--;        // armour takes damage
-                    MessageBox.addLine("The armour takes damage.");
+                    flags |= GameEvent.ARMOUR_DAMAGED;
                 }
                 if(stats.weaponItem != null){
-                    MessageBox.addLine("The weapon takes damage.");
+                    flags |= GameEvent.WEAPON_DAMAGED;
                     stats.weaponItem.accuracy = Math.max(0, stats.weaponItem.accuracy-1);
                 }
+                world.events.blocked(this, other, flags);
             } else {
                 if (other.stats.armourItem != null)
                     hp-= other.stats.armourItem.protection;     // armour reduces the attack force
@@ -393,22 +389,19 @@ public class GameObject {
                         other.stats.hitPoints = Math.max(2, other.stats.hitPoints - hp);        // avoid one-hit kills
 
                     // with increased awareness player is informed of all events
-                    if (type.isPlayer || other.type.isPlayer || world.rogue.stats.increasedAwareness > 0) {
-                        MessageBox.addLine(type.name + " " + verb + " the " + other.type.name + "(HP: " + other.stats.hitPoints + ")");
-                    }
+                    if (type.isPlayer || other.type.isPlayer || world.rogue.stats.increasedAwareness > 0)
+                        flags |= GameEvent.REPORTED;
                 }
+                world.events.attacked(this, other, flags);
             }
         }
         if(other.stats.hitPoints <= 0){
-            defeat(world, scenes, other);
+            defeat(world, other);
         }
     }
 
     // something was thrown at the target
-    public void hits(World world, DungeonScenes scenes, GameObject thrower, GameObject target){
-        if(hasFocus || target.hasFocus )
-            Sounds.fight();
-
+    public void hits(World world, GameObject thrower, GameObject target){
         int hp = 1;
 
         if(type == GameObjectTypes.knife)
@@ -430,26 +423,22 @@ public class GameObject {
         }
 
         target.stats.hitPoints = Math.max(0, target.stats.hitPoints-hp);
+        int flags = hasFocus || target.hasFocus ? GameEvent.HEARD : 0;
         // with increased awareness player is informed of all events
-        if(target.hasFocus || thrower.hasFocus || world.rogue.stats.increasedAwareness > 0) {
-            MessageBox.addLine(type.name + " hits the " + target.type.name + "(HP: " + target.stats.hitPoints + ")");
-        }
+        if(target.hasFocus || thrower.hasFocus || world.rogue.stats.increasedAwareness > 0)
+            flags |= GameEvent.REPORTED;
+        world.events.thrown(this, target, flags);
         if(target.stats.hitPoints <= 0){
-            thrower.defeat(world, scenes, target);
+            thrower.defeat(world, target);
         }
     }
 
 
-    private void defeat(World world, DungeonScenes scenes, GameObject enemy){
+    private void defeat(World world, GameObject enemy){
         // play sound effect if player was involved
-        if(hasFocus || enemy.hasFocus || world.rogue.stats.increasedAwareness > 0) {
-            Sounds.monsterDeath();
-            MessageBox.addLine(type.name + " defeated the " + enemy.type.name + ". (XP +" + enemy.type.initXP + ")");
-        }
-        // remove enemy visually and logically
-        if(!enemy.type.isPlayer && enemy.scene != null)
-            scenes.remove(enemy.scene);
-        world.levelData.gameObjects.clearOccupant(enemy.x, enemy.y);
+        boolean noticed = hasFocus || enemy.hasFocus || world.rogue.stats.increasedAwareness > 0;
+        world.events.defeated(this, enemy, enemy.type.initXP, noticed ? GameEvent.HEARD | GameEvent.REPORTED : 0);
+        // remove enemy logically, the scenes remove it visually
         world.enemies.remove(enemy);
         world.levelData.gameObjects.remove(enemy);
 
@@ -463,13 +452,53 @@ public class GameObject {
             GameObject gold = new GameObject(GameObjectTypes.gold, enemy.x, enemy.y, Direction.NORTH);
             gold.quantity = goldAmount;
             gold.z = gold.type.z;
-            if(enemy.scene != null)
-                scenes.addScene(gold);
             world.levelData.gameObjects.add(gold);
             world.levelData.gameObjects.setOccupant(gold.x, gold.y, gold);
+            int flags = world.levelData.fog.isTileSeen(gold.x, gold.y) ? GameEvent.SHOWN : 0;
             if(type.isPlayer || enemy.type.isPlayer || world.rogue.stats.increasedAwareness > 0)
-                MessageBox.addLine(enemy.type.name+ " drops their gold. ("+gold.quantity+")");
+                flags |= GameEvent.REPORTED;
+            world.events.dropped(enemy, gold, flags);
+        }
+    }
+
+    private static final int[] dropX = { 0, -1, 1, 0, 0, -1, -1, 1, 1 };
+    private static final int[] dropY = { 0, 0, 0, -1, 1, 1, -1, 1, -1 };
+
+    // drop item at the location of this character
+    // if there is already something there of the same type, add it to the pile
+    // if there is something else there try a nearby tile
+    public void drop(World world, GameObject item){
+        GameObjects gameObjects = world.levelData.gameObjects;
+        for(int offset = 0; offset < 9; offset++){
+            int tx = x+dropX[offset];
+            int ty = y+dropY[offset];
+            if(!world.map.isDroppable(tx, ty))       // don't drop item inside a wall, etc.
+                continue;
+            GameObject first = gameObjects.getOccupant(tx, ty);
+            // anything already there?
+            if(first == null) {  // empty spot
+                item.x = tx;
+                item.y = ty;
+                item.z = item.type.z;
+                gameObjects.add(item);
+                if(!item.type.isPlayer)
+                    gameObjects.setOccupant(tx, ty, item);
+                world.events.dropped(this, item, GameEvent.SHOWN);
+                return;
+            }
+            for(GameObject occupant = first; occupant != null; occupant = occupant.nextOnTile) {
+                if (item.type.isCountable && (occupant.type == item.type || occupant.type.isArrow && item.type.isArrow)) {   // same type
+                    occupant.quantity += item.quantity;        // add to the pile
+                    if (occupant.type.isArrow && occupant.quantity > 0) { // change single arrow to bundle
+                        occupant.type = GameObjectTypes.arrows;
+                        world.events.changed(occupant);
+                    }
+                    return;
+                }
+            }
         }
+        // can't place
+        world.events.message(item.type.name+ " dropped and disappeared.");
     }
 
 }
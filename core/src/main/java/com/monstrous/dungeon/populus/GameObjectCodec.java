@@ -0,0 +1,134 @@
+package com.monstrous.dungeon.populus;
+
+import com.monstrous.dungeon.map.Direction;
+import com.monstrous.dungeon.rng.RandomStream;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+/** Binary encoding of a game object including its stats, equipment and inventory (recursively) and its random stream.
+ * Visual state (scene, animation) is not stored, it is recreated when the object is shown.
+ * Reading data that does not describe a valid object (an unknown type, ...) throws an IOException.
+ * The time a dormant enemy went to sleep is stored, so that it is caught up when the rogue returns (see ActivityZones).
+ * The time of an enemy's next action is not: the TurnScheduler gives the awake enemies of a level their turns when
+ * the level is entered, SaveGame stores them for the current level.
+ * Links to other objects (attackedBy) are up to the caller. */
+public class GameObjectCodec {
+
+    private static final int HAS_STATS = 1;
+    private static final int HAS_RANDOM = 2;
+    private static final int HAS_FOCUS = 4;
+    private static final int DORMANT = 8;
+
+    private static final Direction[] directions = Direction.values();
+
+    public static void write(DataOutput out, GameObject go) throws IOException {
+        out.writeByte(GameObjectTypes.types.indexOf(go.type, true));
+        out.writeShort(go.x);
+        out.writeShort(go.y);
+        out.writeFloat(go.z);
+        out.writeByte(go.direction.ordinal());
+        out.writeInt(go.quantity);
+        out.writeShort(go.protection);
+        out.writeShort(go.damage);
+        out.writeShort(go.accuracy);
+        int flags = (go.stats != null ? HAS_STATS : 0) | (go.rnd != null ? HAS_RANDOM : 0) | (go.hasFocus ? HAS_FOCUS : 0)
+            | (go.dormantSince >= 0 ? DORMANT : 0);
+        out.writeByte(flags);
+        if(go.stats != null)
+            writeStats(out, go.stats);
+        if(go.rnd != null){
+            out.writeLong(go.rnd.getKey());
+            out.writeLong(go.rnd.getState(0));
+            out.writeLong(go.rnd.getState(1));
+        }
+        if(go.dormantSince >= 0)
+            out.writeLong(go.dormantSince);
+    }
+
+    public static GameObject read(DataInput in) throws IOException {
+        int typeIndex = in.readByte();
+        if(typeIndex < 0 || typeIndex >= GameObjectTypes.types.size)
+            throw new IOException("Unknown object type: " + typeIndex);
+        GameObjectType type = GameObjectTypes.types.get(typeIndex);
+        int x = in.readShort();
+        int y = in.readShort();
+        GameObject go = new GameObject(type, x, y, Direction.NORTH);
+        go.z = in.readFloat();
+        int direction = in.readByte();
+        if(direction < 0 || direction >= directions.length)
+            throw new IOException("Unknown direction: " + direction);
+        go.direction = directions[direction];
+        go.quantity = in.readInt();
+        go.protection = in.readShort();
+        go.damage = in.readShort();
+        go.accuracy = in.readShort();
+        int flags = in.readByte();
+        go.hasFocus = (flags & HAS_FOCUS) != 0;
+        if((flags & HAS_STATS) != 0)
+            go.stats = readStats(in);
+        if((flags & HAS_RANDOM) != 0){
+            go.rnd = new RandomStream(in.readLong());
+            long s0 = in.readLong();
+            long s1 = in.readLong();
+            go.rnd.setState(s0, s1);
+        }
+        if((flags & DORMANT) != 0) {
+            go.dormantSince = in.readLong();
+            if(go.dormantSince < 0)
+                throw new IOException("Negative time of going to sleep: " + go.dormantSince);
+        }
+        return go;
+    }
+
+    /** as write() for an object that may be null */
+    public static void writeOptional(DataOutput out, GameObject go) throws IOException {
+        out.writeBoolean(go != null);
+        if(go != null)
+            write(out, go);
+    }
+
+    public static GameObject readOptional(DataInput in) throws IOException {
+        return in.readBoolean() ? read(in) : null;
+    }
+
+    private static void writeStats(DataOutput out, CharacterStats stats) throws IOException {
+        out.writeShort(stats.hitPoints);
+        out.writeInt(stats.experience);
+        out.writeShort(stats.food);
+        out.writeBoolean(stats.aggressive);
+        out.writeShort(stats.increasedAwareness);
+        out.writeBoolean(stats.haveBookOfMaps);
+        writeOptional(out, stats.armourItem);
+        writeOptional(out, stats.weaponItem);
+        Inventory inventory = stats.inventory;
+        out.writeByte(inventory.numSlots);
+        for(Inventory.Slot slot : inventory.slots){
+            out.writeShort(slot.count);
+            writeOptional(out, slot.object);
+        }
+    }
+
+    private static CharacterStats readStats(DataInput in) throws IOException {
+        CharacterStats stats = new CharacterStats();
+        stats.hitPoints = in.readShort();
+        stats.experience = in.readInt();
+        stats.food = in.readShort();
+        stats.aggressive = in.readBoolean();
+        stats.increasedAwareness = in.readShort();
+        stats.haveBookOfMaps = in.readBoolean();
+        stats.armourItem = readOptional(in);
+        stats.weaponItem = readOptional(in);
+        int numSlots = in.readByte();
+        if(numSlots < 0)
+            throw new IOException("Negative number of inventory slots: " + numSlots);
+        stats.inventory = new Inventory(numSlots);
+        for(Inventory.Slot slot : stats.inventory.slots){
+            slot.count = in.readShort();
+            slot.object = readOptional(in);
+        }
+        return stats;
+    }
+}
@@ -30,6 +30,7 @@ public class GameObjectType {
     public int initThrowAccuracy;
     public int initXP;
     public boolean initAggressive;
+    public int speed;               // for characters, TurnScheduler.NORMAL_SPEED is one action per turn
     public float z;     // height to render at when place on the ground (to avoid some model being inside the floor)
     public Sprite icon;
     public Model sceneAsset;
@@ -46,6 +47,7 @@ public class GameObjectType {
         this.isCountable = false;
         this.initXP = 1;
         this.z = 0f;
+        this.speed = TurnScheduler.NORMAL_SPEED;
         this.isWeapon = false;
         this.isRangeWeapon = false;
         this.isArmour = false;
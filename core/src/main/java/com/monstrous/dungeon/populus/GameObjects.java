@@ -1,42 +1,173 @@
 package com.monstrous.dungeon.populus;
 
 import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.TileGrid;
 
 
-// Set of GameObjects - can either be iterated as array or queried as 2d grid
+// Set of GameObjects - can either be iterated as array or queried by location
 
-// occupant of a grid cell is an item that is present there, e.g. gold or
-// an enemy character. There can only be zero or one occupant per grid cell.
+// occupants of a grid cell are the items present there, e.g. gold or
+// an enemy character. A cell can have any number of occupants, the most recently placed one is on top.
 // Architecture and the player are never occupants.
+//
+// The spatial index is a linked list of occupants per tile plus one per room (keyed by the room code of the map).
+// The links are kept in the game objects themselves, so placing, moving and removing an object is O(1)
+// and a query only touches the tiles or the room it asks for.
+// Removing an object from the array is also O(1): the last object takes its place, so the array has no particular order.
 
 public class GameObjects {
     public Array<GameObject> gameObjects;
-    private GameObject[][] occupant;
+    private final int width, height;
+    private final TileGrid tiles;           // for the room code per tile
+    private final GameObject[] tileHead;    // per tile, top occupant or null
+    private final GameObject[] roomHead;    // per room id, most recently placed occupant or null
 
-    public GameObjects(int width, int height) {
+    public GameObjects(DungeonMap map) {
         gameObjects = new Array<>();
-        occupant = new GameObject[height][width];
+        width = map.mapWidth;
+        height = map.mapHeight;
+        tiles = map.getTiles();
+        tileHead = new GameObject[width * height];
+        roomHead = new GameObject[map.rooms.size];
     }
 
     public void add(GameObject go){
+        go.arrayIndex = gameObjects.size;
         gameObjects.add(go);
     }
 
+    // also removes it from the grid
     public void remove(GameObject go){
-        gameObjects.removeValue(go, true);
+        removeOccupant(go);
+        int index = go.arrayIndex;
+        if(index < 0 || index >= gameObjects.size || gameObjects.get(index) != go)
+            return;     // not in this set
+        GameObject last = gameObjects.pop();
+        if(last != go) {
+            gameObjects.set(index, last);
+            last.arrayIndex = index;
+        }
+        go.arrayIndex = -1;
     }
 
-    // may be null
+    // top occupant, may be null
     public GameObject getOccupant(int x, int y){
-        return occupant[y][x];
+        return tileHead[y * width + x];
     }
 
+    // is the object on the grid?
+    public boolean isOccupant(GameObject go){
+        return go.tileIndex >= 0;
+    }
+
+    // first enemy on the tile, may be null
+    public GameObject getEnemy(int x, int y){
+        for(GameObject go = tileHead[y * width + x]; go != null; go = go.nextOnTile)
+            if(go.type.isEnemy)
+                return go;
+        return null;
+    }
+
+    // place object on top of the tile, taking it from any tile it was on before
     public void setOccupant(int x, int y, GameObject go){
-        occupant[y][x] = go;
+        removeOccupant(go);
+        go.tileIndex = y * width + x;
+        go.nextOnTile = tileHead[go.tileIndex];
+        go.prevOnTile = null;
+        if(go.nextOnTile != null)
+            go.nextOnTile.prevOnTile = go;
+        tileHead[go.tileIndex] = go;
+
+        go.roomIndex = tiles.getRoomId(x, y);
+        if(go.roomIndex >= 0){
+            go.nextInRoom = roomHead[go.roomIndex];
+            go.prevInRoom = null;
+            if(go.nextInRoom != null)
+                go.nextInRoom.prevInRoom = go;
+            roomHead[go.roomIndex] = go;
+        }
     }
 
-    public void clearOccupant(int x, int y){
-        occupant[y][x] = null;
+    // take the object off the grid (it stays in the array)
+    public void removeOccupant(GameObject go){
+        if(go.tileIndex < 0 || tileHead[go.tileIndex] == null)
+            return;
+        if(go.prevOnTile != null)
+            go.prevOnTile.nextOnTile = go.nextOnTile;
+        else if(tileHead[go.tileIndex] == go)
+            tileHead[go.tileIndex] = go.nextOnTile;
+        else
+            return;     // placed in another set
+        if(go.nextOnTile != null)
+            go.nextOnTile.prevOnTile = go.prevOnTile;
+        go.nextOnTile = null;
+        go.prevOnTile = null;
+        go.tileIndex = -1;
+
+        if(go.roomIndex >= 0){
+            if(go.prevInRoom != null)
+                go.prevInRoom.nextInRoom = go.nextInRoom;
+            else
+                roomHead[go.roomIndex] = go.nextInRoom;
+            if(go.nextInRoom != null)
+                go.nextInRoom.prevInRoom = go.prevInRoom;
+            go.nextInRoom = null;
+            go.prevInRoom = null;
+            go.roomIndex = -1;
+        }
     }
 
+    /** add all occupants of tile x,y to out, top one first */
+    public Array<GameObject> getOccupants(int x, int y, Array<GameObject> out){
+        for(GameObject go = tileHead[y * width + x]; go != null; go = go.nextOnTile)
+            out.add(go);
+        return out;
+    }
+
+    /** add all occupants of the rectangle [x0..x1] x [y0..y1] to out, clipped to the map */
+    public Array<GameObject> getOccupants(int x0, int y0, int x1, int y1, Array<GameObject> out){
+        x0 = Math.max(0, x0);
+        y0 = Math.max(0, y0);
+        x1 = Math.min(width - 1, x1);
+        y1 = Math.min(height - 1, y1);
+        for(int y = y0; y <= y1; y++) {
+            int index = y * width + x0;
+            for (int x = x0; x <= x1; x++, index++)
+                for (GameObject go = tileHead[index]; go != null; go = go.nextOnTile)
+                    out.add(go);
+        }
+        return out;
+    }
+
+    /** add all occupants within radius (in tiles) of cx,cy to out */
+    public Array<GameObject> getOccupantsInRadius(int cx, int cy, float radius, Array<GameObject> out){
+        int r = (int) radius;
+        float r2 = radius * radius;
+        int x0 = Math.max(0, cx - r);
+        int y0 = Math.max(0, cy - r);
+        int x1 = Math.min(width - 1, cx + r);
+        int y1 = Math.min(height - 1, cy + r);
+        for(int y = y0; y <= y1; y++) {
+            int dy = y - cy;
+            int index = y * width + x0;
+            for (int x = x0; x <= x1; x++, index++) {
+                int dx = x - cx;
+                if (dx * dx + dy * dy > r2)
+                    continue;
+                for (GameObject go = tileHead[index]; go != null; go = go.nextOnTile)
+                    out.add(go);
+            }
+        }
+        return out;
+    }
+
+    /** add all occupants of the room with this id to out (including its walls and doorways) */
+    public Array<GameObject> getOccupantsInRoom(int roomId, Array<GameObject> out){
+        if(roomId < 0 || roomId >= roomHead.length)
+            return out;
+        for(GameObject go = roomHead[roomId]; go != null; go = go.nextInRoom)
+            out.add(go);
+        return out;
+    }
 }
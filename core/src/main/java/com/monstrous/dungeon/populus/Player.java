@@ -0,0 +1,381 @@
+package com.monstrous.dungeon.populus;
+
+
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.Direction;
+import com.monstrous.dungeon.map.FieldOfView;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.map.TileType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+// The actions of the rogue and the rules of a turn: timed effects, digestion, enemies moving, death and victory.
+//
+// KeyController translates key presses into these calls, a bot can make the same calls without any input or
+// graphics (see PlaythroughRunner in the headless module). What the player should see and hear goes to world.events.
+//
+// An action that takes a turn is followed by endTurn(), which lets the game time run on to the rogue's next action
+// (see TurnScheduler). While frozen, a turn passes without an action. Effects that last a while are slots in the
+// TurnScheduler that come back to onEffect() when they are due, rather than counters that tick down every turn.
+//
+// Effects therefore last game time, not a number of the rogue's actions. That only makes a difference under the
+// speed potion: the rogue gets two actions per turn, but hunger, regeneration and the other potions run at the
+// speed of the rest of the world instead of twice as fast, just as the enemies do.
+
+public class Player {
+    private final World world;
+    public boolean frozen;          // the rogue can't move
+    public boolean fast;            // speed potion: two actions per turn
+    public int digestionSpeed;      // food used per turn
+    private long awareUntil;        // time the increased awareness wears off
+    private long fastUntil;
+    private long frozenUntil;
+
+    private static final int[] deltaX = {0, 1, 0, -1  };     // per Direction ordinal
+    private static final int[] deltaY = {1, 0, -1, 0  };
+
+    public Player(World world) {
+        this.world = world;
+    }
+
+    /** new game */
+    public void reset(){
+        digestionSpeed = 2;
+        start();
+    }
+
+    /** the state of the effects on the rogue, for SaveGame. Their slots are saved with the TurnScheduler. */
+    public void write(DataOutput out) throws IOException {
+        out.writeBoolean(frozen);
+        out.writeBoolean(fast);
+        out.writeShort(digestionSpeed);
+        out.writeLong(awareUntil);
+        out.writeLong(fastUntil);
+        out.writeLong(frozenUntil);
+    }
+
+    /** read what write() wrote, into a Player of its own: see restore() */
+    public void read(DataInput in) throws IOException {
+        frozen = in.readBoolean();
+        fast = in.readBoolean();
+        digestionSpeed = in.readShort();
+        awareUntil = in.readLong();
+        fastUntil = in.readLong();
+        frozenUntil = in.readLong();
+    }
+
+    /** continue a saved game with the effects of another Player, e.g. one read from the save */
+    public void restore(Player saved){
+        frozen = saved.frozen;
+        fast = saved.fast;
+        digestionSpeed = saved.digestionSpeed;
+        awareUntil = saved.awareUntil;
+        fastUntil = saved.fastUntil;
+        frozenUntil = saved.frozenUntil;
+    }
+
+    private void start(){
+        frozen = false;
+        fast = false;
+        TurnScheduler scheduler = world.scheduler;
+        scheduler.clear();
+        scheduler.schedule(TurnScheduler.REGENERATION, 10);
+        scheduler.schedule(TurnScheduler.DIGESTION, 1);
+    }
+
+    public boolean isFrozen(){
+        return frozen;
+    }
+
+    /** time the rogue needs for one action */
+    public int getActionDelay(){
+        return TurnScheduler.delay(fast ? 2 * TurnScheduler.NORMAL_SPEED : TurnScheduler.NORMAL_SPEED);
+    }
+
+    // arrive here after having made a move or skipping a turn
+    public void endTurn(){
+        world.activityZones.update(world);
+        world.scheduler.advance(world, getActionDelay());
+
+        // check for death
+        if (world.rogue.stats.hitPoints <= 0) {
+            world.events.message("You are dead. Press R to restart.");
+            world.gameOver = true;
+            world.events.animated(world.rogue, "Death_A", 1);
+        }
+    }
+
+    /** a timed effect is due, see TurnScheduler */
+    public void onEffect(int phase, long time){
+        CharacterStats stats = world.rogue.stats;
+        switch(phase){
+            case TurnScheduler.AWARENESS:
+                if(time != awareUntil)
+                    break;      // a later potion extended it
+                stats.increasedAwareness = 0;
+                world.events.message("Your increased awareness wore off.");
+                break;
+            case TurnScheduler.REGENERATION:
+                if(stats.hitPoints < CharacterStats.MAX_HITPOINTS)
+                    stats.hitPoints++;
+                world.scheduler.schedule(TurnScheduler.REGENERATION, Math.max(20-2*world.level, 3));
+                break;
+            case TurnScheduler.SPEED:
+                if(time != fastUntil)
+                    break;
+                fast = false;
+                world.events.message("Your reflexes are back to normal.");
+                break;
+            case TurnScheduler.DIGESTION:
+                digestFood();
+                world.scheduler.schedule(TurnScheduler.DIGESTION, 1);
+                break;
+            case TurnScheduler.FREEZE:
+                if(time == frozenUntil)
+                    frozen = false;
+                break;
+        }
+    }
+
+    private void digestFood(){
+        GameObject rogue = world.rogue;
+        rogue.stats.food -= digestionSpeed;
+        if(rogue.stats.food == 30) {
+            world.events.hungry(rogue);
+            world.events.message("You feel hungry.");
+        }
+        else if(rogue.stats.food == 10) {
+            world.events.hungry(rogue);
+            world.events.message("You're so hungry you feel faint.");
+        }
+        else if(rogue.stats.food == 0){
+            world.events.hungry(rogue);
+            world.events.message("You're so faint you can't move.");
+            world.events.animated(rogue, "Lie_Idle", -1);
+            frozen = true;
+            frozenUntil = world.scheduler.now + 5 * TurnScheduler.TURN;
+            world.scheduler.scheduleAt(frozenUntil, TurnScheduler.FREEZE);
+            rogue.stats.food = CharacterStats.REPLENISH_FOOD;
+        }
+    }
+
+    /** skip a turn */
+    public void rest(){
+        world.events.animated(world.rogue, "Sit_Floor_Down", 1);
+    }
+
+    public void turn(boolean clockWise) {
+        int dir = world.rogue.direction.ordinal();
+        if(clockWise)
+            dir = (dir + 1) % 4;
+        else
+            dir = (dir+3) % 4;
+
+        world.rogue.turn(world, Direction.values()[dir]);    // turn towards moving direction
+    }
+
+    /** step, attack or pick up in the given direction, taking the stairs if standing on the end of a staircase */
+    public void move(Direction dir){
+        GameObject rogue = world.rogue;
+
+        // if on bottom of stairs and moving forward, move down a level
+        if(world.map.getGrid(rogue.x,rogue.y) == TileType.STAIRS_DOWN_DEEP &&
+            dir == world.map.getOrientation(rogue.x, rogue.y)){
+            world.levelDown();
+            // continue to make the move off the bottom step
+        }
+        else if(world.map.getGrid(rogue.x,rogue.y) == TileType.STAIRS_UP_HIGH &&
+            dir == Direction.opposite(world.map.getOrientation(rogue.x, rogue.y))){
+            world.levelUp();
+            // continue to make the move off the top step
+        }
+
+        rogue.tryMove(world, deltaX[dir.ordinal()], deltaY[dir.ordinal()], dir);
+
+        discoverMap(rogue);
+
+        world.events.moved(rogue, rogue.x, rogue.y, rogue.z);
+
+        // Did we return to the first room with the Sword?
+        CharacterStats stats = rogue.stats;
+        int roomId = world.map.getRoomCode(rogue.x, rogue.y);
+        if(world.level == 0 && roomId == world.startRoomId &&  ((stats.weaponItem != null && stats.weaponItem.type == GameObjectTypes.bigSword) || stats.inventory.contains(GameObjectTypes.bigSword)) ) {
+            // clear message box
+            for(int i = 0; i < 10; i++)
+                world.events.message("");
+            world.events.message("You have completed the quest!");
+            world.events.message("The Sword of Yobled was recovered.");
+            world.events.message("Congratulations!");
+
+            rogue.turn(world, Direction.SOUTH);    // turn towards the camera
+
+            world.events.animated(rogue, "Cheer", 20 );
+            world.gameOver = true;
+            world.gameCompleted = true;
+        }
+    }
+
+    public void discoverMap( GameObject character ){
+        discoverMap(character.x, character.y);
+    }
+
+    /** update the fog of war for a viewer at x,y. The scenes show what was revealed on the REVEALED event. */
+    public void discoverMap(int x, int y){
+        // show the room if this is the first time we enter it
+        int roomId = world.map.getRoomCode(x, y);
+        if(roomId >= 0) {
+            Room room = world.map.rooms.get(roomId);
+            world.levelData.fog.revealRoom(room);
+        }
+        // corridors in view, e.g. ahead in the corridor or through a doorway
+        world.fieldOfView.compute(world.map, x, y, World.VIEW_RADIUS);
+        world.levelData.fog.revealVisible(world.map, world.fieldOfView);
+        // only what was revealed this turn is added to the scenes
+        world.events.revealed();
+    }
+
+    public void throwItem(int slotNr, Direction dir){
+        GameObject rogue = world.rogue;
+        world.events.animated(rogue, "Throw", 1);
+
+        Inventory.Slot slot = rogue.stats.inventory.slots[slotNr];
+        if(slot.isEmpty())
+            return;
+        // turn rogue in direction of throw
+        rogue.turn(world, dir);
+        // take item from inventory slot
+        GameObject item = slot.removeItem();
+        world.events.message("You throw "+item.type.name+".");
+
+        // the item can fly as far as the rogue can see
+        FieldOfView fov = world.fieldOfView;
+        fov.compute(world.map, rogue.x, rogue.y, Math.max(world.map.mapWidth, world.map.mapHeight));
+        int tx = rogue.x;
+        int ty = rogue.y;
+        while(true) {
+            // next tile
+            int nx = tx + deltaX[dir.ordinal()];
+            int ny = ty + deltaY[dir.ordinal()];
+            if(!fov.isVisible(nx, ny))      // also stops at the edge of the map
+                return;
+
+            GameObject occupant = world.levelData.gameObjects.getEnemy(nx, ny);
+            if(occupant != null){
+                world.events.message("You hit "+occupant.type.name+".");
+                item.hits(world, rogue, occupant);
+                return;
+            }
+            // move as long as we are over floor or corridor
+            // i.e. don't go through walls, but you can throw through doorways
+            if(!world.map.canStep(tx, ty, dir))
+                return;
+            tx = nx;
+            ty = ny;
+        }
+    }
+
+    public void equipSlot(int slotNr ){
+        GameObject rogue = world.rogue;
+        Inventory.Slot slot = rogue.stats.inventory.slots[slotNr];
+        if(slot.isEmpty())
+            return;
+        if(slot.object.type.isArmour){
+            GameObject prev = rogue.stats.armourItem;
+            rogue.stats.armourItem = slot.removeItem();
+            if(prev != null) {
+                rogue.stats.inventory.addItem(prev);
+                world.events.unequipped(rogue, prev, "handslot.l");
+            }
+            world.events.equipped(rogue, rogue.stats.armourItem, "handslot.l");
+
+        } else if(slot.object.type.isWeapon){
+            GameObject prev = rogue.stats.weaponItem;
+            rogue.stats.weaponItem = slot.removeItem();
+            if(prev != null) {
+                rogue.stats.inventory.addItem(prev);
+                world.events.unequipped(rogue, prev, "handslot.r");
+            }
+            world.events.equipped(rogue, rogue.stats.weaponItem, "handslot.r");
+        }
+    }
+
+    public void dropSlot(int slotNr ){
+        Inventory.Slot slot = world.rogue.stats.inventory.slots[slotNr];
+        if(slot.isEmpty())
+            return;
+        GameObject item = slot.removeItem();
+        world.events.message("You dropped "+item.type.name+".");
+        world.rogue.drop(world, item);
+    }
+
+    public void useSlot(int slotNr ){
+        Inventory.Slot slot = world.rogue.stats.inventory.slots[slotNr];
+        if(slot.isEmpty())
+            return;
+        if(slot.object.type.isEdible) {
+            slot.removeItem();
+            world.events.message("You eat the food.");
+            world.rogue.stats.food = CharacterStats.MAX_FOOD;
+        } else if(slot.object.type.isPotion) {
+            GameObject potion = slot.removeItem();
+            drinkPotion(potion);
+        } else if(slot.object.type.isSpellBook) {
+            readSpell(slot.object.type);
+            slot.object.type = slot.object.type.alternative;
+
+        } else if(slot.object.type == GameObjectTypes.spellBookOpen) {
+            world.events.message("Can only read spell book once.");
+        } else {
+            world.events.message("Can't use "+slot.object.type.name+".");
+        }
+    }
+
+    private void readSpell(GameObjectType type){
+        CharacterStats stats = world.rogue.stats;
+        world.events.message("You read the spell book.");
+        if(type == GameObjectTypes.spellBookClosed) { // purple
+            world.events.message("The paper makes you feel sad.");
+        } else if(type == GameObjectTypes.spellBookClosedB) { // red
+            world.events.message("It is a book of maps.");
+            stats.haveBookOfMaps = true;
+        } else if(type == GameObjectTypes.spellBookClosedC) { // black
+            if(world.level == world.swordLevel || (stats.weaponItem != null && stats.weaponItem.type.isBigSword)
+                    || stats.inventory.contains(GameObjectTypes.bigSword) )
+                world.events.message("The Sword of Yobled is at this level.");
+            else
+                world.events.message("The Sword of Yobled is not at this level.");
+        } else if(type == GameObjectTypes.spellBookClosedD) { // green
+            world.events.message("It has no effect.");
+        }
+    }
+
+    private void drinkPotion(GameObject potion){
+        CharacterStats stats = world.rogue.stats;
+        world.events.message("You drink the "+potion.type.name+".");
+        if(potion.type == GameObjectTypes.bottle_A_brown){
+            stats.increasedAwareness = 100;     // turns
+            awareUntil = world.scheduler.now + 100 * TurnScheduler.TURN;
+            world.scheduler.scheduleAt(awareUntil, TurnScheduler.AWARENESS);
+            world.events.message("Your awareness is increased.");
+        } else if(potion.type == GameObjectTypes.bottle_C_green){
+            stats.hitPoints = Math.max(1, stats.hitPoints-10);
+            world.events.message("It is poison. You lose health.");
+        } else if(potion.type == GameObjectTypes.bottle_B_green){
+            stats.hitPoints = Math.min(CharacterStats.MAX_HITPOINTS, stats.hitPoints+3);
+            world.events.message("You feel invigorated.");
+        } else if(potion.type == GameObjectTypes.bottle_A_green) {
+            digestionSpeed = 1;
+            world.events.message("This aids your digestion.");
+        } else if(potion.type == GameObjectTypes.bottle_C_brown) {
+            fast = true;
+            fastUntil = world.scheduler.now + 30 * TurnScheduler.delay(2 * TurnScheduler.NORMAL_SPEED);    // 30 fast actions
+            world.scheduler.scheduleAt(fastUntil, TurnScheduler.SPEED);
+            world.events.message("Your reflexes become faster.");
+        } else {
+            world.events.message("It has no effect.");
+        }
+    }
+}
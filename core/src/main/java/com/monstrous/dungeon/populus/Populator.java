@@ -1,57 +1,65 @@
 package com.monstrous.dungeon.populus;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.g3d.utils.AnimationController;
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.Array;
 import com.monstrous.dungeon.map.Direction;
 import com.monstrous.dungeon.map.DungeonMap;
 import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.rng.RandomStream;
+import com.monstrous.dungeon.rng.RandomStreams;
+import com.monstrous.dungeon.rng.Subsystem;
 
 public class Populator {
 
 
+    /** can this type be placed on this level? (besides the rogue and the sword, which are placed separately) */
+    public static boolean occursOnLevel(GameObjectType type, int levelNr){
+        return levelNr >= type.startLevel && (levelNr <= type.endLevel || type.endLevel == 99)    // dungeon level range per type
+            && type.maxCount > 0;
+    }
+
     private static void generatePopulation(int levelNr, boolean goodies, Array<GameObjectType> mandatory, Array<GameObjectType> optional) {
         int min = 0;
         int max = 0;
-        for(GameObjectType type :GameObjectTypes.types)
+        // indexed loop: the type table is shared by all threads that generate levels and the Array iterator is not thread safe
+        for(int t = 0; t < GameObjectTypes.types.size; t++)
         {
-            if (levelNr >= type.startLevel && (levelNr <= type.endLevel || type.endLevel == 99)) {    // dungeon level range per type
-                if (type.maxCount == 0)
-                    continue;
+            GameObjectType type = GameObjectTypes.types.get(t);
+            if (occursOnLevel(type, levelNr)) {
                 if (goodies == type.isEnemy)    // select goodies or enemies
                     continue;
                 for (int i = 0; i < type.minCount; i++)
                     mandatory.add(type);
                 for (int i = type.minCount; i < type.maxCount; i++)
                     optional.add(type);
-                System.out.println(" drop " + type.name + " min:" + type.minCount + " max:" + type.maxCount);
                 min += type.minCount;
                 max += type.maxCount;
             }
         }
-        System.out.println("Total min:"+min+" max:"+max);
+        Gdx.app.debug("Populator", (goodies ? "items" : "enemies") + " min:" + min + " max:" + max);
     }
 
-    public static void distributeGoodies(DungeonMap map, int levelNr, GameObjects gameObjects){
+    public static void distributeGoodies(DungeonMap map, int levelNr, GameObjects gameObjects, RandomStream rnd){
         Array<GameObjectType> mandatory = new Array<>();
         Array<GameObjectType> optional = new Array<>();
         generatePopulation(levelNr, true, mandatory, optional);
 
         //int numRooms = map.rooms.size;
-        //int count = MathUtils.random(numRooms/2, numRooms*3);        // nr of drops depends on nr of rooms
+        //int count = rnd.random(numRooms/2, numRooms*3);        // nr of drops depends on nr of rooms
         int attempts = 0;
         while(true){
             attempts++;
             if(attempts > 50)       // avoid endless loop
                 break;
 
-            int location = MathUtils.random(0, map.rooms.size-1);
+            int location = rnd.random(0, map.rooms.size-1);
             Room room = map.rooms.get(location);
             if(room.isStairWell)
                 continue;
             // find a point inside the room (edges are walls)
-            int rx = MathUtils.random(1, room.width-1);
-            int ry = MathUtils.random(1, room.height-1);
+            int rx = rnd.random(1, room.width-1);
+            int ry = rnd.random(1, room.height-1);
             GameObject item = gameObjects.getOccupant(room.x+rx, room.y+ry);
             if(item != null)
                 continue;
@@ -61,7 +69,7 @@ public class Populator {
                 type = mandatory.first();
                 mandatory.removeIndex(0);
             } else if (optional.size > 0) {
-                int choice = MathUtils.random(0, optional.size-1);
+                int choice = rnd.random(0, optional.size-1);
                 type = optional.get(choice);
                 optional.removeIndex(choice);
             } else
@@ -78,28 +86,28 @@ public class Populator {
             item.z = type.z;
             item.quantity = 1;
             if(type == GameObjectTypes.gold)
-                item.quantity = MathUtils.random(1,30);
+                item.quantity = rnd.random(1,30);
             else if(type == GameObjectTypes.arrows)
-                item.quantity = MathUtils.random(3,8);
+                item.quantity = rnd.random(3,8);
             else if(type.isArmour)
-                item.protection = type.initProtection + MathUtils.random(-2, 2);
+                item.protection = type.initProtection + rnd.random(-2, 2);
             else if(type.isWeapon) {
                 if(type.isRangeWeapon) {
-                    item.damage = type.initThrowDamage + MathUtils.random(-1, 3);
-                    item.accuracy = type.initThrowAccuracy + MathUtils.random(-1, 3);
+                    item.damage = type.initThrowDamage + rnd.random(-1, 3);
+                    item.accuracy = type.initThrowAccuracy + rnd.random(-1, 3);
                 } else {
-                    item.damage = type.initMeleeDamage + MathUtils.random(-1, 3);
-                    item.accuracy = type.initMeleeAccuracy + MathUtils.random(-1, 3);
+                    item.damage = type.initMeleeDamage + rnd.random(-1, 3);
+                    item.accuracy = type.initMeleeAccuracy + rnd.random(-1, 3);
 
                 }
             }
         }
     }
 
-    public static void placeSword(DungeonMap map, GameObjects gameObjects){
+    public static void placeSword(DungeonMap map, GameObjects gameObjects, RandomStream rnd){
         while(true) {
             // choose random room
-            int location = MathUtils.random(1, map.rooms.size-1);
+            int location = rnd.random(1, map.rooms.size-1);
             Room room = map.rooms.get(location);
             if(room.isStairWell)    // not a stairwell
                 continue;
@@ -120,27 +128,27 @@ public class Populator {
         }
     }
 
-    public static void distributeEnemies(DungeonMap map, int levelNr, GameObjects gameObjects, Enemies enemies ){
+    public static void distributeEnemies(DungeonMap map, int levelNr, GameObjects gameObjects, Enemies enemies, RandomStream rnd ){
         Array<GameObjectType> mandatory = new Array<>();
         Array<GameObjectType> optional = new Array<>();
         generatePopulation(levelNr, false, mandatory, optional);
 
         enemies.clear();
         int numRooms = map.rooms.size;
-        int count = MathUtils.random(numRooms/4, numRooms*numRooms/4);        // nr of drops depends on nr of rooms
+        int count = rnd.random(numRooms/4, numRooms*numRooms/4);        // nr of drops depends on nr of rooms
         int attempts = 0;
         while(true){
             attempts++;
             if(attempts > 20)       // avoid endless loop
                 break;
 
-            int location = MathUtils.random(0, map.rooms.size-1);
+            int location = rnd.random(0, map.rooms.size-1);
             Room room = map.rooms.get(location);
             if(room.isStairWell)
                 continue;
             // find a point inside the room (edges are walls)
-            int rx = MathUtils.random(1, room.width-1);
-            int ry = MathUtils.random(1, room.height-1);
+            int rx = rnd.random(1, room.width-1);
+            int ry = rnd.random(1, room.height-1);
 
             GameObject occupant = gameObjects.getOccupant(room.x+rx, room.y+ry);
             if(occupant != null)
@@ -151,7 +159,7 @@ public class Populator {
                 type = mandatory.first();
                 mandatory.removeIndex(0);
             } else if (optional.size > 0) {
-                int choice = MathUtils.random(0, optional.size-1);
+                int choice = rnd.random(0, optional.size-1);
                 type = optional.get(choice);
                 optional.removeIndex(choice);
             } else
@@ -162,13 +170,14 @@ public class Populator {
             enemy.stats = new CharacterStats();
             //enemy.animationController = new AnimationController(enemy.scene);
             assert type != null;
-            enemy.stats.experience = type.initXP * (1+MathUtils.random(levelNr*10));     // at lower levels, enemies get more experienced
-            int goldAmount = MathUtils.random(0,5);
+            enemy.stats.experience = type.initXP * (1+rnd.random(levelNr*10));     // at lower levels, enemies get more experienced
+            int goldAmount = rnd.random(0,5);
             if(goldAmount > 0){
                 GameObject gold = new GameObject(GameObjectTypes.gold, goldAmount);
                 enemy.stats.inventory.addItem(gold);
             }
             enemy.stats.aggressive = enemy.type.initAggressive;
+            enemy.rnd = RandomStreams.get(map.seed, levelNr, Subsystem.AI, enemies.enemies.size);    // own stream per enemy
             gameObjects.add(enemy);
             enemies.add(enemy);
             // seems redundant to provide x,y twice
@@ -179,10 +188,10 @@ public class Populator {
         }
     }
 
-    public static GameObject placeRogue(DungeonMap map, GameObjects gameObjects){
+    public static GameObject placeRogue(DungeonMap map, GameObjects gameObjects, RandomStream rnd){
         while(true) {
             // choose random room
-            int location = MathUtils.random(1, map.rooms.size-1);
+            int location = rnd.random(1, map.rooms.size-1);
             Room room = map.rooms.get(location);
             if(room.isStairWell)    // not a stairwell
                 continue;
@@ -195,6 +204,7 @@ public class Populator {
             gameObjects.setOccupant(room.centre.x, room.centre.y, rogue);
             rogue.stats = new CharacterStats();
             rogue.stats.experience = rogue.type.initXP;
+            rogue.rnd = RandomStreams.get(map.seed, map.levelNr, Subsystem.AI, RandomStreams.PLAYER_ENTITY);
             gameObjects.add(rogue);
             rogue.direction = Direction.SOUTH;
 
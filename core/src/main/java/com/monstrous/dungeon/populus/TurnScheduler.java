@@ -0,0 +1,312 @@
+package com.monstrous.dungeon.populus;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongArray;
+import com.badlogic.gdx.utils.LongMap;
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+// Game time and what happens when: the enemies' actions and the timed effects on the rogue.
+//
+// Whatever is due at some time is in a time slot of a priority queue, ordered by time. An enemy acts when its
+// slot comes up and then moves on to a later slot, as far ahead as its speed allows: at NORMAL_SPEED that is one TURN,
+// at twice the speed half a TURN. Timed effects (regeneration, digestion, potions wearing off, ...) have slots
+// as well, they call back into Player. The rogue is not in the queue: the game waits for the player and
+// Player.endTurn() then lets the time run on to the rogue's next action with advance().
+//
+// So a turn only costs something for the enemies that are due. An enemy can be taken out of the queue with park(),
+// after which it costs nothing until wake(), see ActivityZones.
+//
+// All enemies that act at the same time share one slot, in the order they were added, and act together as one
+// batch through EnemyTurn. The queue therefore holds one entry per distinct time rather than one per enemy.
+// Slots at the same time come in a fixed order of phases, the order in which the turn rules were always applied:
+// awareness, regeneration, speed, enemies, digestion, freezing.
+//
+// The queue is a binary heap. Enemies are not taken out of a slot: one that is no longer due then (it was defeated
+// or parked) is skipped when the slot comes up. On a new level all enemy slots are dropped at once.
+
+public class TurnScheduler {
+    public static final int TURN = 120;             // time of one action at normal speed (divisible by many speeds)
+    public static final int NORMAL_SPEED = 10;
+
+    // phases, in the order they are handled within the same time
+    public static final int AWARENESS = 0;      // increased awareness wears off
+    public static final int REGENERATION = 1;   // the rogue regains a hit point
+    public static final int SPEED = 2;          // speed potion wears off
+    public static final int ENEMY = 3;          // enemies act
+    public static final int DIGESTION = 4;      // the rogue uses food
+    public static final int FREEZE = 5;         // the rogue can move again
+    private static final int PHASE_BITS = 3;
+
+    private static class Slot {
+        long key;                               // time << PHASE_BITS | phase
+        long order;                             // tie breaker for effects at the same time: order of scheduling
+        final Array<GameObject> enemies = new Array<>(false, 16);    // for ENEMY
+    }
+
+    public long now;                            // current game time
+
+    private Slot[] heap = new Slot[64];
+    private int size;
+    private long order;
+    private final LongMap<Slot> enemySlots = new LongMap<>();    // by time
+    private final Array<Slot> freeSlots = new Array<>();
+
+    private Enemies scheduledEnemies;           // the enemies that have slots
+    private int scheduledVersion;
+    private final Array<GameObject> due = new Array<>();
+
+    /** new game */
+    public void clear(){
+        while(size > 0) {
+            free(heap[--size]);
+            heap[size] = null;
+        }
+        enemySlots.clear();
+        now = 0;
+        order = 0;
+        scheduledEnemies = null;
+    }
+
+    /** time an actor at this speed needs for one action */
+    public static int delay(int speed){
+        return TURN * NORMAL_SPEED / Math.max(1, speed);
+    }
+
+    /** schedule an effect for Player to handle after this many turns, see the phases */
+    public void schedule(int phase, int turns){
+        scheduleAt(now + (long)turns * TURN, phase);
+    }
+
+    /** schedule an effect at this time */
+    public void scheduleAt(long time, int phase){
+        Slot slot = obtain();
+        slot.key = time << PHASE_BITS | phase;
+        add(slot);
+    }
+
+    /** take an enemy out of the queue until wake(), see ActivityZones */
+    public void park(GameObject enemy){
+        enemy.nextAction = -1;      // the slot it is in will skip it
+    }
+
+    /** give a parked enemy its next action */
+    public void wake(World world, GameObject enemy){
+        synchronizeEnemies(world);
+        long time = now + delay(enemy.type.speed);
+        if(enemy.nextAction != time)        // not in that slot yet
+            scheduleEnemy(enemy, time);
+    }
+
+    /** let the time run on by delay, with everyone who is due taking their turn */
+    public void advance(World world, int delay){
+        long until = now + delay;
+        synchronizeEnemies(world);
+        while(size > 0 && (heap[0].key >>> PHASE_BITS) <= until){
+            Slot slot = removeFirst();
+            long time = slot.key >>> PHASE_BITS;
+            int phase = (int)(slot.key & ((1 << PHASE_BITS) - 1));
+            now = time;
+            if(phase != ENEMY) {
+                free(slot);
+                world.player.onEffect(phase, time);
+                continue;
+            }
+            // the enemies that are still due at this time
+            enemySlots.remove(time);
+            due.clear();
+            for(GameObject enemy : slot.enemies)
+                if(enemy.nextAction == time && enemy.stats.hitPoints > 0)
+                    due.add(enemy);
+            free(slot);
+            if(due.size == 0)
+                continue;
+            world.enemies.step(world, due, Settings.parallelEnemyTurns && due.size >= EnemyTurn.PARALLEL_THRESHOLD);
+            for(GameObject enemy : due){
+                if(enemy.stats.hitPoints <= 0 || world.activityZones.parkIfAway(world, enemy))
+                    continue;       // defeated, or wandered off too far from the rogue
+                scheduleEnemy(enemy, time + delay(enemy.type.speed));
+            }
+        }
+        now = until;
+    }
+
+    /** the enemies that will act, by time and in the order they act at the same time (for SaveGame) */
+    public void getScheduledEnemies(World world, Array<GameObject> scheduled){
+        synchronizeEnemies(world);
+        LongArray times = enemySlots.keys().toArray();
+        times.sort();
+        for(int i = 0; i < times.size; i++){
+            long time = times.get(i);
+            for(GameObject enemy : enemySlots.get(time).enemies)
+                if(enemy.nextAction == time && enemy.stats.hitPoints > 0)
+                    scheduled.add(enemy);
+        }
+    }
+
+    /** after loading a game: give the enemies of the current level their slots at GameObject.nextAction, in this order */
+    public void restoreEnemies(World world, Array<GameObject> scheduled){
+        dropEnemySlots();
+        scheduledEnemies = world.enemies;
+        scheduledVersion = world.enemies.version;
+        for(GameObject enemy : scheduled)
+            scheduleEnemy(enemy, enemy.nextAction);
+    }
+
+    /** game time and the timed effects in the order they come up, for SaveGame. Enemies are saved with their level. */
+    public void writeEffects(DataOutput out) throws IOException {
+        out.writeLong(now);
+        Array<Slot> effects = getEffectSlots();
+        out.writeShort(effects.size);
+        for(Slot slot : effects)
+            out.writeLong(slot.key);
+    }
+
+    /** read what writeEffects() wrote into a scheduler of its own, see restoreEffects() */
+    public void readEffects(DataInput in) throws IOException {
+        clear();
+        now = in.readLong();
+        if(now < 0)
+            throw new IOException("Negative game time: " + now);
+        int count = in.readShort();
+        for(int i = 0; i < count; i++){
+            long key = in.readLong();
+            long time = key >>> PHASE_BITS;
+            int phase = (int)(key & ((1 << PHASE_BITS) - 1));
+            if(time < now || phase == ENEMY || phase > FREEZE)
+                throw new IOException("Invalid timed effect: phase " + phase + " at " + time);
+            scheduleAt(time, phase);
+        }
+    }
+
+    /** continue with the game time and timed effects of another scheduler, e.g. one read from a saved game */
+    public void restoreEffects(TurnScheduler saved){
+        clear();
+        now = saved.now;
+        for(Slot slot : saved.getEffectSlots())
+            scheduleAt(slot.key >>> PHASE_BITS, (int)(slot.key & ((1 << PHASE_BITS) - 1)));
+    }
+
+    // the slots of the timed effects, in the order they come up
+    private Array<Slot> getEffectSlots(){
+        Array<Slot> effects = new Array<>();
+        for(int i = 0; i < size; i++)
+            if((heap[i].key & ((1 << PHASE_BITS) - 1)) != ENEMY)
+                effects.add(heap[i]);
+        effects.sort((a, b) -> less(a, b) ? -1 : less(b, a) ? 1 : 0);
+        return effects;
+    }
+
+    /** number of time slots in the queue */
+    public int size(){
+        return size;
+    }
+
+    // give the enemies of the current level their slots, if they don't have them yet
+    private void synchronizeEnemies(World world){
+        Enemies enemies = world.enemies;
+        if(enemies == scheduledEnemies && enemies.version == scheduledVersion)
+            return;
+        // new level, or enemies were added: (re)schedule them all for their next action, in list order
+        dropEnemySlots();
+        scheduledEnemies = enemies;
+        scheduledVersion = enemies.version;
+        for(GameObject enemy : enemies.enemies)
+            if(enemy.dormantSince < 0)
+                scheduleEnemy(enemy, now + delay(enemy.type.speed));
+    }
+
+    private void scheduleEnemy(GameObject enemy, long time){
+        enemy.nextAction = time;
+        Slot slot = enemySlots.get(time);
+        if(slot == null){
+            slot = obtain();
+            slot.key = time << PHASE_BITS | ENEMY;
+            enemySlots.put(time, slot);
+            add(slot);
+        }
+        slot.enemies.add(enemy);
+    }
+
+    // take out the slots of all enemies, the effects stay
+    private void dropEnemySlots(){
+        int n = 0;
+        for(int i = 0; i < size; i++){
+            if((heap[i].key & ((1 << PHASE_BITS) - 1)) == ENEMY)
+                free(heap[i]);
+            else
+                heap[n++] = heap[i];
+        }
+        for(int i = n; i < size; i++)
+            heap[i] = null;
+        size = n;
+        enemySlots.clear();
+        // restore the heap order, from the last parent up
+        for(int i = size / 2 - 1; i >= 0; i--)
+            siftDown(i);
+    }
+
+    private Slot obtain(){
+        Slot slot = freeSlots.size > 0 ? freeSlots.pop() : new Slot();
+        slot.order = order++;
+        return slot;
+    }
+
+    private void free(Slot slot){
+        slot.enemies.clear();
+        freeSlots.add(slot);
+    }
+
+    private void add(Slot slot){
+        if(size == heap.length){
+            Slot[] bigger = new Slot[2 * heap.length];
+            System.arraycopy(heap, 0, bigger, 0, size);
+            heap = bigger;
+        }
+        int i = size++;
+        // sift up
+        while(i > 0){
+            int parent = (i - 1) >>> 1;
+            if(!less(slot, heap[parent]))
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    private Slot removeFirst(){
+        Slot first = heap[0];
+        size--;
+        heap[0] = heap[size];
+        heap[size] = null;
+        if(size > 0)
+            siftDown(0);
+        return first;
+    }
+
+    private void siftDown(int i){
+        Slot slot = heap[i];
+        while(true){
+            int child = 2 * i + 1;
+            if(child >= size)
+                break;
+            if(child + 1 < size && less(heap[child + 1], heap[child]))
+                child++;
+            if(!less(heap[child], slot))
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = slot;
+    }
+
+    private static boolean less(Slot a, Slot b){
+        return a.key < b.key || (a.key == b.key && a.order < b.order);
+    }
+}
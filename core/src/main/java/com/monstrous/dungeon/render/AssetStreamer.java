@@ -0,0 +1,271 @@
+package com.monstrous.dungeon.render;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g3d.Attribute;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectSet;
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.LevelData;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.GameObjectType;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+import com.monstrous.dungeon.populus.Inventory;
+import com.monstrous.dungeon.populus.Populator;
+
+
+// Loads the models of the game as they are needed, instead of all of them before the first frame.
+//
+// The first frame only waits for the models of the level the game starts on: the architecture, the floor of that
+// level and the types the Populator tables can place there (GameObjectType.startLevel/endLevel), plus whatever is
+// actually on the level and in the rogue's hands. While the player explores, the models for the levels above and
+// below are loaded in the background: AssetManager decodes them on its own thread and update() finishes them a bit
+// every frame. Entering a level only waits for the models that are still missing, if any.
+//
+// The two types of a pair that can change into each other (GameObjectType.alternative, e.g. arrows and a single arrow)
+// are always loaded together. If a model is missing anyway when an object needs it, DungeonScenes asks loadNow().
+//
+// Models that none of the current level, its neighbours, the levels still in memory (LevelCache) and the rogue's
+// inventory can use are unloaded. The inventory icons are kept, they are rendered once per type.
+//
+// With Settings.streamAssets off, all models are loaded at the start and kept, as before.
+
+public class AssetStreamer {
+
+    private final AssetManager assets;
+    private final DungeonScenes dungeonScenes;
+    private final GameObjectScenes gameObjectScenes;
+    private final ObjectSet<String> needed = new ObjectSet<>();     // for the level shown
+    private final ObjectSet<String> keep = new ObjectSet<>();       // for the level shown, its neighbours and the levels in memory
+    private final Array<String> requested = new Array<>();          // queued or loaded by us
+    private int boundCount = -1;        // nr of loaded assets when the models were last handed to the scenes
+    private long residentBytes;
+
+    private final long startTime;
+    public long firstFrameNanos;        // time from the start until the first frame of the game, 0 until then
+    public long waitNanos;              // time spent waiting for models when entering levels
+    public int waits;                   // nr of level changes that had to wait for models
+
+    public AssetStreamer(AssetManager assets, DungeonScenes dungeonScenes, GameObjectScenes gameObjectScenes) {
+        this.assets = assets;
+        this.dungeonScenes = dungeonScenes;
+        this.gameObjectScenes = gameObjectScenes;
+        dungeonScenes.setAssetStreamer(this);
+        startTime = System.nanoTime();
+    }
+
+    /** queue the models for the level the game starts on, or all of them without streaming */
+    public void start(World world){
+        needed.clear();
+        if(Settings.streamAssets) {
+            getLevelFiles(world.level, world.swordLevel, needed);
+            getFilesInUse(world.rogue, world.levelData, needed);
+        }
+        else
+            getAllFiles(needed);
+        for(String fileName : needed)
+            request(fileName);
+    }
+
+    /** advance loading, to be called every frame. Returns true when all the current level needs is loaded. */
+    public boolean update(){
+        assets.update();
+        for(String fileName : needed)
+            if(!assets.isLoaded(fileName, Model.class))
+                return false;
+        bind();
+        return true;
+    }
+
+    /** called when the first frame of the game was rendered, to report the time it took */
+    public void firstFrame(){
+        if(firstFrameNanos != 0)
+            return;
+        firstFrameNanos = System.nanoTime() - startTime;
+        Gdx.app.log("Assets", "first frame after " + firstFrameNanos / 1000000 + " ms with " + getLoadedCount() + " of "
+            + (DungeonScenes.fileNames.length + GameObjectScenes.fileNames.length) + " models, "
+            + residentBytes / 1024 + " KB");
+    }
+
+    /** before a level is shown: wait for its missing models, then prefetch the levels next to it and unload the rest */
+    public void enterLevel(World world){
+        if(Settings.streamAssets) {
+            needed.clear();
+            getLevelFiles(world.level, world.swordLevel, needed);
+            getFilesInUse(world.rogue, world.levelData, needed);
+            for(String fileName : needed)
+                request(fileName);
+        }
+        long waitStart = System.nanoTime();
+        boolean waited = false;
+        for(String fileName : needed) {
+            if(!assets.isLoaded(fileName, Model.class)) {
+                assets.finishLoadingAsset(fileName);
+                waited = true;
+            }
+        }
+        if(waited) {
+            waitNanos += System.nanoTime() - waitStart;
+            waits++;
+        }
+        if(Settings.streamAssets) {
+            getKeepFiles(world);
+            for(String fileName : keep)
+                request(fileName);      // prefetch
+            for(int i = requested.size - 1; i >= 0; i--) {
+                String fileName = requested.get(i);
+                if(!keep.contains(fileName)) {
+                    assets.unload(fileName);
+                    requested.removeIndex(i);
+                }
+            }
+        }
+        bind();
+    }
+
+    /** load the model of a type right away, for an object that needs it before it was streamed in.
+     * Returns false if it could not be loaded. */
+    public boolean loadNow(GameObjectType type){
+        ObjectSet<String> files = new ObjectSet<>();
+        addType(type, files);
+        long waitStart = System.nanoTime();
+        try {
+            for(String fileName : files) {
+                request(fileName);
+                if(!assets.isLoaded(fileName, Model.class))
+                    assets.finishLoadingAsset(fileName);
+            }
+        } catch (GdxRuntimeException e) {
+            Gdx.app.error("Assets", "could not load the model for " + type.name, e);
+        }
+        waitNanos += System.nanoTime() - waitStart;
+        waits++;
+        bind();
+        return type.sceneAsset != null;
+    }
+
+    private void request(String fileName){
+        if(requested.contains(fileName, false))
+            return;
+        requested.add(fileName);
+        assets.load(fileName, Model.class);
+    }
+
+    // models for the level shown, the levels next to it and what is still in memory
+    private void getKeepFiles(World world){
+        keep.clear();
+        keep.addAll(needed);
+        getLevelFiles(world.level + 1, world.swordLevel, keep);
+        if(world.level > 0)
+            getLevelFiles(world.level - 1, world.swordLevel, keep);
+        for(int level = Math.max(0, world.level - 1); level <= world.level + 1; level++)
+            if(level != world.level && world.levelCache.isHot(level))
+                getFilesInUse(world.rogue, world.levelCache.getLevelData(level), keep);
+    }
+
+    // hand the loaded models to the scenes, if anything changed since the last time
+    private void bind(){
+        int count = assets.getLoadedAssets();
+        if(count == boundCount)
+            return;
+        boundCount = count;
+        dungeonScenes.bindAssets(assets);
+        gameObjectScenes.bindAssets(assets);
+        residentBytes = 0;
+        ObjectSet<Texture> textures = new ObjectSet<>();
+        for(String fileName : requested)
+            if(assets.isLoaded(fileName, Model.class))
+                residentBytes += getBytes(assets.get(fileName, Model.class), textures);
+    }
+
+    /** nr of models loaded */
+    public int getLoadedCount(){
+        int count = 0;
+        for(String fileName : requested)
+            if(assets.isLoaded(fileName, Model.class))
+                count++;
+        return count;
+    }
+
+    /** estimated memory of the loaded models: vertices, indices and textures */
+    public long getResidentBytes(){
+        return residentBytes;
+    }
+
+    private static long getBytes(Model model, ObjectSet<Texture> textures){
+        long bytes = 0;
+        for(Mesh mesh : model.meshes)
+            bytes += (long)mesh.getNumVertices() * mesh.getVertexSize() + 2L * mesh.getNumIndices();
+        for(Material material : model.materials) {
+            for(Attribute attribute : material) {
+                if(!(attribute instanceof TextureAttribute))
+                    continue;
+                Texture texture = ((TextureAttribute) attribute).textureDescription.texture;
+                if(texture != null && textures.add(texture))    // textures can be shared between materials
+                    bytes += 4L * texture.getWidth() * texture.getHeight();
+            }
+        }
+        return bytes;
+    }
+
+    // the plan, without loading anything (also used by the headless tools)
+
+    /** all model files of the game */
+    public static void getAllFiles(ObjectSet<String> files){
+        files.addAll(DungeonScenes.fileNames);
+        files.addAll(GameObjectScenes.fileNames);
+    }
+
+    /** model files a level can need according to the Populator tables: architecture, floor and the types placed there */
+    public static void getLevelFiles(int level, int swordLevel, ObjectSet<String> files){
+        Array<String> architecture = new Array<>();
+        DungeonScenes.getArchitectureFiles(architecture);
+        files.addAll(architecture);
+        files.add(DungeonScenes.getFloorFile(level));
+        addType(GameObjectTypes.rogue, files);
+        addType(GameObjectTypes.gold, files);      // dropped by enemies
+        for(int t = 0; t < GameObjectTypes.types.size; t++) {
+            GameObjectType type = GameObjectTypes.types.get(t);
+            if(Populator.occursOnLevel(type, level))
+                addType(type, files);
+        }
+        if(level == swordLevel)
+            addType(GameObjectTypes.bigSword, files);
+    }
+
+    /** model files for what is on a level and what the rogue carries */
+    public static void getFilesInUse(GameObject rogue, LevelData levelData, ObjectSet<String> files){
+        if(levelData != null) {
+            Array<GameObject> objects = levelData.gameObjects.gameObjects;
+            for(int i = 0; i < objects.size; i++)
+                addType(objects.get(i).type, files);
+        }
+        if(rogue == null)
+            return;
+        addType(rogue.type, files);
+        if(rogue.stats.weaponItem != null)
+            addType(rogue.stats.weaponItem.type, files);
+        if(rogue.stats.armourItem != null)
+            addType(rogue.stats.armourItem.type, files);
+        for(Inventory.Slot slot : rogue.stats.inventory.slots)
+            if(!slot.isEmpty())
+                addType(slot.object.type, files);
+    }
+
+    // a type and the types it can change into or from, e.g. when a spell book is opened or a bundle of arrows is used up
+    private static void addType(GameObjectType type, ObjectSet<String> files){
+        files.add(GameObjectScenes.getModelFile(type));
+        if(type.alternative != null)
+            files.add(GameObjectScenes.getModelFile(type.alternative));
+        for(int t = 0; t < GameObjectTypes.types.size; t++)
+            if(GameObjectTypes.types.get(t).alternative == type)
+                files.add(GameObjectScenes.getModelFile(GameObjectTypes.types.get(t)));
+    }
+}
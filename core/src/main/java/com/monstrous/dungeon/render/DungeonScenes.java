@@ -9,20 +9,26 @@ import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.badlogic.gdx.graphics.g3d.model.Node;
 import com.badlogic.gdx.graphics.g3d.model.NodePart;
 import com.badlogic.gdx.graphics.g3d.utils.AnimationController;
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
-import com.monstrous.dungeon.MessageBox;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
 import com.monstrous.dungeon.World;
 import com.monstrous.dungeon.map.*;
 import com.monstrous.dungeon.populus.*;
+import com.monstrous.dungeon.rng.RandomStream;
+import com.monstrous.dungeon.rng.RandomStreams;
+import com.monstrous.dungeon.rng.Subsystem;
 import com.monstrous.gdx.webgpu.graphics.g3d.WgModel;
 
 
 public class DungeonScenes  {
     private final static float SCALE = 4f;
     public final static int MAX_TORCHES = 4;
+    private final static int CHUNK_SIZE = 8;        // corridor tiles are grouped in chunks of 8x8 tiles
+    private final static int FLOOR_TYPES = 3;       // the first file names are the floors
     final static String[] fileNames = {
         "models/floor_wood_large.gltf",
         "models/floor_tile_large.gltf",
@@ -41,8 +47,10 @@ public class DungeonScenes  {
     };
 
     private SceneManager sceneManager;
+    private AssetStreamer assetStreamer;    // to load a model that is missing, may be null
 
     private Model sceneAssetFloor;
+    private int floorLevel;
     private Model sceneAssetFloorA;
     private Model sceneAssetFloorB;
     private Model sceneAssetFloorC;
@@ -59,42 +67,65 @@ public class DungeonScenes  {
     private Model sceneAssetTorch;
 
     private final boolean useFogOfWar = false;
+    private final Array<GameObject> occupants = new Array<>();     // reused for spatial queries
+
+    // static architecture: one chunk per room, corridors per block of CHUNK_SIZE x CHUNK_SIZE tiles
+    private final IntMap<StaticChunk> roomChunks = new IntMap<>();
+    private final IntMap<StaticChunk> corridorChunks = new IntMap<>();
+    private int currentRoom = -1;       // room being shown, its tiles go to the room chunk
 
     public DungeonScenes(SceneManager sceneManager) {
         this.sceneManager = sceneManager;
     }
 
-    /** queue assets in the asset manager to start async loading. */
-    public void queueAssets(AssetManager assets){
-        for(int i = 0; i < fileNames.length; i++){
-            assets.load(fileNames[i], Model.class);
-        }
+    public void setAssetStreamer(AssetStreamer assetStreamer){
+        this.assetStreamer = assetStreamer;
     }
 
-    /** load models via asset manager (need to call queueAssets() first). */
-    public void loadAssets(AssetManager assets){
-        assets.finishLoading(); // just in case
+    /** model file of the floor tiles of a level */
+    public static String getFloorFile(int level){
+        // floor type depends on level
+        if(level == 0)
+            return fileNames[0];
+        else if (level < 4)
+            return fileNames[1];
+        else
+            return fileNames[2];
+    }
+
+    /** model files used on every level: all except the floors */
+    public static void getArchitectureFiles(Array<String> files){
+        for(int i = FLOOR_TYPES; i < fileNames.length; i++)
+            files.add(fileNames[i]);
+    }
 
+    /** take the models that are loaded, see AssetStreamer. The ones for the level to show must be loaded. */
+    public void bindAssets(AssetManager assets){
         int index = 0;
-        sceneAssetFloorA        = assets.get(fileNames[index++], Model.class);
-        sceneAssetFloorB        = assets.get(fileNames[index++], Model.class);
-        sceneAssetFloorC        = assets.get(fileNames[index++], Model.class);
-        sceneAssetWall          = assets.get(fileNames[index++], Model.class);
-        sceneAssetWall2         = assets.get(fileNames[index++], Model.class);
-        sceneAssetWall3         = assets.get(fileNames[index++], Model.class);
-        sceneAssetWall4         = assets.get(fileNames[index++], Model.class);
-        sceneAssetWall5         = assets.get(fileNames[index++], Model.class);
-        sceneAssetDoorWay       = assets.get(fileNames[index++], Model.class);
-        sceneAssetCorner        = assets.get(fileNames[index++], Model.class);
-        sceneAssetWallTsplit    = assets.get(fileNames[index++], Model.class);
-        sceneAssetWallCrossing  = assets.get(fileNames[index++], Model.class);
-        sceneAssetStairs        = assets.get(fileNames[index++], Model.class);
-        sceneAssetTorch         = assets.get(fileNames[index++], Model.class);
-
-        sceneAssetFloor  = sceneAssetFloorA;    // alias
+        sceneAssetFloorA        = get(assets, fileNames[index++]);
+        sceneAssetFloorB        = get(assets, fileNames[index++]);
+        sceneAssetFloorC        = get(assets, fileNames[index++]);
+        sceneAssetWall          = get(assets, fileNames[index++]);
+        sceneAssetWall2         = get(assets, fileNames[index++]);
+        sceneAssetWall3         = get(assets, fileNames[index++]);
+        sceneAssetWall4         = get(assets, fileNames[index++]);
+        sceneAssetWall5         = get(assets, fileNames[index++]);
+        sceneAssetDoorWay       = get(assets, fileNames[index++]);
+        sceneAssetCorner        = get(assets, fileNames[index++]);
+        sceneAssetWallTsplit    = get(assets, fileNames[index++]);
+        sceneAssetWallCrossing  = get(assets, fileNames[index++]);
+        sceneAssetStairs        = get(assets, fileNames[index++]);
+        sceneAssetTorch         = get(assets, fileNames[index++]);
+
+        selectFloorType(floorLevel);    // models may be rebound while a level is shown
+    }
+
+    private static Model get(AssetManager assets, String fileName){
+        return assets.isLoaded(fileName, Model.class) ? assets.get(fileName, Model.class) : null;
     }
 
     public void selectFloorType(int level){
+        floorLevel = level;
         // floor type depends on level
         if(level == 0)
             sceneAssetFloor  = sceneAssetFloorA;
@@ -107,266 +138,298 @@ public class DungeonScenes  {
     public void showMap(DungeonMap map, LevelData levelData){
         selectFloorType(levelData.level);
         for(Room room: map.rooms)
-            if(!useFogOfWar || levelData.seenRooms.contains(room.id, true)) // only show visited rooms
+            if(!useFogOfWar || levelData.fog.isRoomSeen(room.id)) // only show visited rooms
                 showRoom(map, levelData, room);
         showCorridors(map, levelData);
+        levelData.fog.clearChanges();      // everything seen is shown now
+    }
+
+    /** show what the fog of war revealed since the last call: new rooms with their occupants and new corridor tiles */
+    public void showRevealed(World world){
+        FogOfWar fog = world.levelData.fog;
+        IntArray rooms = fog.getRevealedRooms();
+        for(int i = 0; i < rooms.size; i++){
+            Room room = world.map.rooms.get(rooms.get(i));
+            showRoom(world.map, world.levelData, room);
+            populateRoom(world, room);
+        }
+        IntArray tiles = fog.getRevealedTiles();
+        for(int i = 0; i < tiles.size; i++)
+            showCorridorTile(world, tiles.get(i) % fog.width, tiles.get(i) / fog.width);
+        fog.clearChanges();
     }
 
     public void showRoom(DungeonMap map, LevelData levelData, Room room){
+        // per room stream, so the room looks the same every time it is shown
+        RandomStream rnd = RandomStreams.get(map.seed, map.levelNr, Subsystem.DECOR, room.id);
         int numTorches = 0;
         room.torchPositions.clear();
-        levelData.seenRooms.add(room.id);   // mark this room as seen
-        //room.uncovered = true;
+
+        // if the room was shown before, rebuild it from scratch
+        StaticChunk previous = roomChunks.remove(room.id);
+        if(previous != null)
+            sceneManager.removeChunk(previous);
+        currentRoom = room.id;
 
         for(int x = room.x; x <= room.x + room.width; x++){ // for every tile of the room
             for(int y = room.y; y <= room.y + room.height; y++){
-                levelData.tileSeen[y][x] = true;
-
                 // first the ground tile
-                ModelInstance tile;
                 TileType cell = map.getGrid(x,y);
                 // floor tile, e.g. under wall
-                if(cell!= TileType.VOID && cell != TileType.STAIRS_DOWN && cell != TileType.STAIRS_DOWN_DEEP){
-                    tile = new ModelInstance(sceneAssetFloor);
-                    setTransform(tile.transform, x, y, 0, Direction.NORTH);
-                    sceneManager.add(tile);
-                }
+                if(cell!= TileType.VOID && cell != TileType.STAIRS_DOWN && cell != TileType.STAIRS_DOWN_DEEP)
+                    addTile(sceneAssetFloor, x, y, 0, Direction.NORTH);
+
                 // then any walls or other structures for the same tile
-                tile = null;
+                Model tile = null;
                 int z = 0;  // default height (adjusted for stairs)
                 if(cell == TileType.WALL){
                     // randomize appearance of wall
-                    if(MathUtils.random(1.0f) < 0.1f)
-                        tile = new ModelInstance(sceneAssetWall2);
-                    else if(MathUtils.random(1.0f) < 0.1f)
-                        tile = new ModelInstance(sceneAssetWall3);
-                    else if(MathUtils.random(1.0f) < 0.1f)
-                        tile = new ModelInstance(sceneAssetWall4);
-                    else if(MathUtils.random(1.0f) < 0.1f)
-                        tile = new ModelInstance(sceneAssetWall5);
+                    if(rnd.random(1.0f) < 0.1f)
+                        tile = sceneAssetWall2;
+                    else if(rnd.random(1.0f) < 0.1f)
+                        tile = sceneAssetWall3;
+                    else if(rnd.random(1.0f) < 0.1f)
+                        tile = sceneAssetWall4;
+                    else if(rnd.random(1.0f) < 0.1f)
+                        tile = sceneAssetWall5;
                     else {
                         // randomly put some torches on north and west walls (the ones facing the viewer)
                         //
-                        if(numTorches < MAX_TORCHES-1 && (MathUtils.random(1.0f) < 0.5f)
-                            && (map.tileOrientation[y][x] == Direction.NORTH || map.tileOrientation[y][x] == Direction.WEST)) {
+                        if(numTorches < MAX_TORCHES-1 && (rnd.random(1.0f) < 0.5f)
+                            && (map.getOrientation(x,y) == Direction.NORTH || map.getOrientation(x,y) == Direction.WEST)) {
 
 
                             // put a lit torch on the wall
                             numTorches++;
-                            ModelInstance torch = new ModelInstance(sceneAssetTorch);
-                            setTransform(torch.transform, x, y, z, Direction.opposite(map.tileOrientation[y][x]));
-                            sceneManager.add(torch);
+                            addTile(sceneAssetTorch, x, y, z, Direction.opposite(map.getOrientation(x,y)));
                             // keep track of torch positions for the lighting
-                            Vector3 pos = new Vector3();
-                            torch.transform.getTranslation(pos);
+                            Vector3 pos = setPosition(new Vector3(), x, y, z);
                             pos.y += 3.14f;
                             pos.x += 0.5f;
                             pos.z += 0.5f;
                             room.torchPositions.add( pos );
                         }
-                        tile = new ModelInstance(sceneAssetWall);
+                        tile = sceneAssetWall;
                     }
                 }
                 else if(cell == TileType.DOORWAY){
-                    tile = new ModelInstance(sceneAssetDoorWay);
+                    tile = sceneAssetDoorWay;
                 }
                 else if(cell == TileType.WALL_CORNER){
-                    tile = new ModelInstance(sceneAssetCorner);
+                    tile = sceneAssetCorner;
                 }
                 else if(cell == TileType.WALL_T_SPLIT){
-                    tile = new ModelInstance(sceneAssetWallTsplit);
+                    tile = sceneAssetWallTsplit;
                 }
                 else if(cell == TileType.WALL_CROSSING){
-                    tile = new ModelInstance(sceneAssetWallCrossing);
+                    tile = sceneAssetWallCrossing;
                 }
                 else if(cell == TileType.STAIRS_DOWN){
-                    tile = new ModelInstance(sceneAssetWallCrossing);   // support for stairs from level below
                     z = -8;
-                    setTransform(tile.transform, x, y, z, map.tileOrientation[y][x]);
-                    sceneManager.add(tile);
-                    tile = new ModelInstance(sceneAssetStairs);
+                    addTile(sceneAssetWallCrossing, x, y, z, map.getOrientation(x,y));   // support for stairs from level below
+                    tile = sceneAssetStairs;
                     z = -4;
                 }
                 else if(cell == TileType.STAIRS_DOWN_DEEP){
-                    tile = new ModelInstance(sceneAssetStairs);
+                    tile = sceneAssetStairs;
                     z = -8;
                 }
                 else if(cell == TileType.STAIRS_UP){
-                    tile = new ModelInstance(sceneAssetStairs);
+                    tile = sceneAssetStairs;
                     z = 0;
                 }
                 else if(cell == TileType.STAIRS_UP_HIGH){
-                    tile = new ModelInstance(sceneAssetWallCrossing);   // support pillar for stairs
-                    setTransform(tile.transform, x, y, z, map.tileOrientation[y][x]);
-                    sceneManager.add(tile);
-                    tile = new ModelInstance(sceneAssetStairs);
+                    addTile(sceneAssetWallCrossing, x, y, z, map.getOrientation(x,y));   // support pillar for stairs
+                    tile = sceneAssetStairs;
                     z = 4;
                 }
 
-                if(tile != null) {
-                    setTransform(tile.transform, x, y, z, map.tileOrientation[y][x]);
-                    sceneManager.add(tile);
-                }
+                if(tile != null)
+                    addTile(tile, x, y, z, map.getOrientation(x,y));
             }
         }
+        currentRoom = -1;
+    }
+
+    /** add a static piece of architecture to the scene. Override to run without rendering, e.g. in benchmarks. */
+    protected void addTile(Model model, int x, int y, float z, Direction dir){
+        ModelInstance tile = new ModelInstance(model);
+        setTransform(tile.transform, x, y, z, dir);
+        getChunk(x, y).add(tile);
+    }
+
+    // chunk for a tile: the room being shown or else the corridor chunk covering x,y
+    private StaticChunk getChunk(int x, int y){
+        IntMap<StaticChunk> chunks = roomChunks;
+        int key = currentRoom;
+        if(currentRoom < 0) {
+            chunks = corridorChunks;
+            key = (y / CHUNK_SIZE) * 65536 + x / CHUNK_SIZE;
+        }
+        StaticChunk chunk = chunks.get(key);
+        if(chunk == null){
+            chunk = new StaticChunk();
+            chunk.roomId = currentRoom;
+            chunks.put(key, chunk);
+            sceneManager.addChunk(chunk);
+        }
+        return chunk;
     }
 
+    private final Vector3 tmpPosition = new Vector3();
+
     // The next few methods should be the only place where we convert logical x,y to a transform by applying SCALE
     //
     private void setTransform(Matrix4 transform, int x, int y, float z, Direction dir){
         transform.setToRotation(Vector3.Y, 180-dir.ordinal() * 90);
-        transform.setTranslation(SCALE*x, z, -SCALE*y);
+        transform.setTranslation(setPosition(tmpPosition, x, y, z));
     }
 
     private void setTransform(Matrix4 transform, float x, float y, float z, Direction dir){
         transform.setToRotation(Vector3.Y, 180-dir.ordinal() * 90);
-        transform.setTranslation(SCALE*x, z, -SCALE*y);
+        transform.setTranslation(setPosition(tmpPosition, x, y, z));
     }
 
     // leave orientation as it is
     private void setTransform(Matrix4 transform, int x, int y, float z){
-        transform.setTranslation(SCALE*x, z, -SCALE*y);
+        transform.setTranslation(setPosition(tmpPosition, x, y, z));
     }
 
-
-
-    // show corridor segment if not seen before, unmask a 3x3 grid of corridors and doorway tiles
-    public void visitCorridorSegment(World world, int x, int y){
-        for(int dx = -1; dx <= 1; dx++){
-            for(int dy = -1; dy <= 1; dy++){
-                showCorridorSegment(world, x+dx, y+dy);
-            }
-        }
+    // world position of logical x,y at height z, e.g. for lights
+    private static Vector3 setPosition(Vector3 position, float x, float y, float z){
+        return position.set(SCALE*x, z, -SCALE*y);
     }
 
-    public void showCorridorSegment(World world, int x, int y){
-        if(world.levelData.tileSeen[y][x])
-            return;
-        if( !TileType.hasFloor(world.map.getGrid(x,y)))
-            return;
 
-        world.levelData.tileSeen[y][x] = true;
 
+    // a corridor tile that was just revealed
+    private void showCorridorTile(World world, int x, int y){
         // add floor tile scene
-        ModelInstance tile = new ModelInstance(sceneAssetFloor);
-        setTransform(tile.transform, x, y, 0, Direction.NORTH);
-        sceneManager.add(tile);
+        addTile(sceneAssetFloor, x, y, 0, Direction.NORTH);
 
         // add doorway if needed
         // note: could be duplicated by showRoom()
         TileType cell = world.map.getGrid(x,y);
-        if(cell == TileType.DOORWAY){
-            ModelInstance doorway = new ModelInstance(sceneAssetDoorWay);
-            setTransform(doorway.transform, x, y, 0, world.map.tileOrientation[y][x]);
-            sceneManager.add(doorway);
-        }
+        if(cell == TileType.DOORWAY)
+            addTile(sceneAssetDoorWay, x, y, 0, world.map.getOrientation(x,y));
 
         // add any items on floor
-        GameObject occupant = world.levelData.gameObjects.getOccupant(x,y);
-        if(occupant != null && occupant.scene == null){
-            addScene(occupant);
-        }
+        occupants.clear();
+        for(GameObject occupant : world.levelData.gameObjects.getOccupants(x, y, occupants))
+            if(occupant.scene == null)
+                addScene(occupant);
     }
 
     public void showCorridors(DungeonMap map, LevelData levelData){
-        for(int x = 0; x < map.mapWidth; x++){
-            for(int y = 0; y < map.mapHeight; y++){
-                if(!useFogOfWar || levelData.tileSeen[y][x]){
-                    TileType cell = map.getGrid(x,y);
-                    if(TileType.hasFloor(cell)){                // todo: also adds tiles for rooms (duped?)
-                        ModelInstance tile = new ModelInstance(sceneAssetFloor);
-                        setTransform(tile.transform, x, y, 0, Direction.NORTH);
-                        sceneManager.add(tile);
-                    }
-                }
+        TileGrid tiles = map.getTiles();
+        if(useFogOfWar){
+            // only visit the seen tiles, in storage order
+            FogOfWar fog = levelData.fog;
+            for(int index = fog.nextSeenTile(0); index >= 0; index = fog.nextSeenTile(index+1)){
+                if(TileType.hasFloor(tiles.getType(index)))    // todo: also adds tiles for rooms (duped?)
+                    addTile(sceneAssetFloor, index % map.mapWidth, index / map.mapWidth, 0, Direction.NORTH);
+            }
+            return;
+        }
+        int index = 0;
+        for(int y = 0; y < map.mapHeight; y++){        // scan in storage order
+            for(int x = 0; x < map.mapWidth; x++, index++){
+                if(TileType.hasFloor(tiles.getType(index)))    // todo: also adds tiles for rooms (duped?)
+                    addTile(sceneAssetFloor, x, y, 0, Direction.NORTH);
             }
         }
     }
 
     public void populateMap(World world, LevelData levelData){
-        for(GameObject enemy: world.enemies.enemies)
+        for(GameObject enemy: world.enemies.enemies) {
             enemy.scene = null;
+            enemy.sceneHandle = InstanceBucket.NO_HANDLE;
+        }
 
-        for(int x = 0; x < world.map.mapWidth; x++) {
-            for (int y = 0; y < world.map.mapHeight; y++) {
-                if(levelData.tileSeen[y][x]) {
-                    GameObject occupant = world.levelData.gameObjects.getOccupant(x, y);
-                    if (occupant != null && occupant.scene == null) {
-                        // note monsters could be seen before outside this room
-                        addScene(occupant);
-                    }
-                }
-            }
+        // visit the objects rather than the tiles: there are far fewer of them
+        GameObjects gameObjects = world.levelData.gameObjects;
+        for(int i = 0; i < gameObjects.gameObjects.size; i++) {
+            GameObject occupant = gameObjects.gameObjects.get(i);
+            if(occupant.type.isPlayer || occupant.scene != null || !levelData.fog.isTileSeen(occupant.x, occupant.y))
+                continue;
+            if(!gameObjects.isOccupant(occupant))
+                continue;   // not on the grid
+            // note monsters could be seen before outside this room
+            addScene(occupant);
         }
     }
 
     public void populateRoom(World world, Room room){
-        for(int x = room.x; x < room.x+room.width; x++){
-            for(int y = room.y; y < room.y + room.height; y++){
-                GameObject occupant = world.levelData.gameObjects.getOccupant(x,y);
-                if(occupant != null && occupant.scene == null){
-                    // note monsters could be seen before outside this room
-                    addScene(occupant);
-                }
+        occupants.clear();
+        for(GameObject occupant : world.levelData.gameObjects.getOccupantsInRoom(room.id, occupants)){
+            if(occupant.scene == null){
+                // note monsters could be seen before outside this room
+                addScene(occupant);
             }
         }
     }
 
-    private final int[] dx = { 0, -1, 1, 0, 0, -1, -1, 1, 1 };
-    private final int[] dy = { 0, 0, 0, -1, 1, 1, -1, 1, -1 };
-
-    // drop item at location x,y
-    // if there is already something there of the same type, add it to the pile
-    // if there is something else there try a nearby tile
-    //
-    public void dropObject(DungeonMap map, GameObjects gameObjects, GameObject item, int x, int y){
-
-        for(int offset = 0; offset < 9; offset++){
-            int tx = x+dx[offset];
-            int ty = y+dy[offset];
-            TileType tile = map.getGrid(tx, ty);
-            if(!TileType.droppable(tile))       // don't drop item inside a wall, etc.
-                continue;
-            GameObject occupant = gameObjects.getOccupant(tx,ty);
-            // anything already there?
-            if(occupant == null) {  // empty spot
-                placeObject(gameObjects, item, tx, ty);
-                return;
-            }
-            else if(item.type.isCountable && (occupant.type == item.type || occupant.type.isArrow && item.type.isArrow)) {   // same type
-                occupant.quantity+= item.quantity;        // add to the pile
-                if(occupant.type.isArrow && occupant.quantity > 0){ // change single arrow to bundle
-                    removeScene(occupant);
-                    occupant.type = GameObjectTypes.arrows;
-                    addScene(occupant);
+    /** bring the scenes up to date with something that happened in the game, see GameEvents */
+    public void apply(World world, GameEvent event){
+        GameObject actor = event.actor;
+        GameObject other = event.other;
+        switch(event.kind){
+            case GameEvent.MOVED:
+                moveObject(actor, event.x, event.y, event.z);
+                if(!actor.type.isPlayer) {
+                    boolean seen = world.levelData.fog.isTileSeen(event.x, event.y);
+                    // if enemy goes into fog of war, hide it
+                    if (actor.scene != null && !seen)
+                        removeScene(actor);
+                    // and vice versa
+                    if (actor.scene == null && seen)
+                        addScene(actor);
                 }
-                return;
-            }
+                break;
+            case GameEvent.TURNED:
+                turnObject(actor, Direction.values()[event.value], event.x, event.y, event.z);
+                break;
+            case GameEvent.ANIMATED:
+                actor.startAnimation(event.text, event.value);
+                break;
+            case GameEvent.DEFEATED:
+                if(!other.type.isPlayer && other.scene != null)
+                    remove(other);
+                break;
+            case GameEvent.PICKED_UP:
+                if(other.scene != null)
+                    remove(other);
+                break;
+            case GameEvent.DROPPED:
+                if(event.has(GameEvent.SHOWN))
+                    addScene(other);
+                break;
+            case GameEvent.CHANGED:     // new model for the new type
+                removeScene(other);
+                addScene(other);
+                break;
+            case GameEvent.EQUIPPED:
+                if(actor.scene != null)
+                    attachModel(actor, event.text, other);
+                break;
+            case GameEvent.UNEQUIPPED:
+                if(actor.scene != null)
+                    detachModel(actor, event.text, other);
+                break;
+            case GameEvent.REVEALED:
+                showRevealed(world);
+                break;
         }
-        // can't place
-        MessageBox.addLine(item.type.name+ " dropped and disappeared.");
-    }
-
-    public void placeObject(GameObjects gameObjects, GameObjectType type, int x, int y){
-        GameObject go = new GameObject(type, x, y, Direction.SOUTH);
-        placeObject(gameObjects, go, x, y);
-    }
-
-    public void placeObject(GameObjects gameObjects, GameObject item, int x, int y){
-        item.x = x;
-        item.y = y;
-        item.z = item.type.z;
-
-        addScene(item);
-        gameObjects.add(item);
-        if(!item.type.isPlayer)
-            gameObjects.setOccupant(x, y, item);
-        // how to handle enemies walking over gold etc.
     }
 
 
-    /** add visual representation to game object, i.e. a ModelInstance plus animation controller */
+    /** add visual representation to game object, i.e. a ModelInstance plus animation controller.
+     * Override this, removeScene() and remove() to use the scenes without rendering. */
     public void addScene(GameObject gameObject){
+        if(gameObject.type.sceneAsset == null && (assetStreamer == null || !assetStreamer.loadNow(gameObject.type))) {
+            Gdx.app.error("DungeonScenes", "no model for " + gameObject.type.name + ", not shown");
+            return;
+        }
 
         if(gameObject.type.isPlayer || gameObject.type.isEnemy) {
             gameObject.scene = new ModelInstance(gameObject.type.sceneAsset, "Scene", "Rig");
@@ -377,12 +440,12 @@ public class DungeonScenes  {
             gameObject.scene = new ModelInstance(gameObject.type.sceneAsset);
         }
         setTransform(gameObject.scene.transform, gameObject.x, gameObject.y, gameObject.z, gameObject.direction);
-        sceneManager.add(gameObject.scene);
+        gameObject.sceneHandle = sceneManager.add(gameObject.scene);
     }
 
 
     public void removeScene(GameObject gameObject){
-        sceneManager.remove(gameObject.scene);
+        remove(gameObject);
         gameObject.scene = null;
     }
 
@@ -404,8 +467,10 @@ public class DungeonScenes  {
     }
 
     public void attachModel(GameObject character, String nodeName, GameObject item){
-        if(item == null || item.scene == null)
+        if(item == null)
             return;
+        if(item.scene == null)      // e.g. equipment of a loaded game
+            item.scene = new ModelInstance(item.type.sceneAsset);
         for(Node node : character.scene.nodes){
             attachToNode( node, nodeName, item.scene);
         }
@@ -444,18 +509,6 @@ public class DungeonScenes  {
         }
     }
 
-    // mark the room or corridor segment where Rogue is as 'uncovered'
-    public void uncoverAreaInPlayerView(World world){
-        int roomId = world.map.roomCode[world.rogue.y][world.rogue.x];
-        if(roomId >= 0) {
-            Room room = world.map.rooms.get(roomId);
-            //room.uncovered = true;
-            world.levelData.seenRooms.add(roomId);
-        }
-        else
-            visitCorridorSegment(world, world.rogue.x, world.rogue.y);
-    }
-
 
 
 
@@ -495,28 +548,26 @@ public class DungeonScenes  {
     }
 
 
-    public void turnObject(GameObject go, Direction dir, int x, int y ){
-        go.direction = dir;
+    public void turnObject(GameObject go, Direction dir, int x, int y, float z){
         if(go.scene != null)
-            setTransform(go.scene.transform, x, y, go.z, dir);
+            setTransform(go.scene.transform, x, y, z, dir);
     }
 
     public void moveObject(GameObject go, int x, int y, float z){
-        go.x = x;
-        go.y = y;
-        go.z = z;
-
         if(go.scene != null)    // characters can move offscreen, only update model instance if it exists
             setTransform(go.scene.transform, x, y, z);
     }
 
-    public void remove(ModelInstance scene){
-        if(scene != null)
-            sceneManager.remove(scene);
+    /** take the object's model instance out of the scene, but keep it (e.g. to attach it to a character) */
+    public void remove(GameObject gameObject){
+        sceneManager.remove(gameObject.sceneHandle);
+        gameObject.sceneHandle = InstanceBucket.NO_HANDLE;
     }
 
     public void clear(){
         sceneManager.clear();
+        roomChunks.clear();
+        corridorChunks.clear();
     }
 
 
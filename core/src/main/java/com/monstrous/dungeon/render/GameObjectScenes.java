@@ -2,19 +2,15 @@ package com.monstrous.dungeon.render;
 
 
 import com.badlogic.gdx.assets.AssetManager;
-import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g3d.Model;
 import com.monstrous.dungeon.ShowCase;
 import com.monstrous.dungeon.populus.GameObjectType;
 import com.monstrous.dungeon.populus.GameObjectTypes;
-import com.monstrous.gdx.webgpu.graphics.WgTexture;
 
-import static com.monstrous.dungeon.populus.GameObjectTypes.types;
 
 
-/** Class to load Model per game object type */
+/** Class to bind the Model per game object type */
 public class GameObjectScenes {
     public static final int ICON_SIZE = 64;
 
@@ -52,64 +48,45 @@ public class GameObjectScenes {
             "models/furryCactus.glb"
     };
     public static Sprite emptyIcon;
-
-    /** queue assets in the asset manager to start async loading. */
-    public void queueAssets(AssetManager assets){
-        for(int i = 0; i < fileNames.length; i++){
-            assets.load(fileNames[i], Model.class);
-        }
+    private ShowCase showCase;      // to render the icons
+
+    /** types in the order of fileNames */
+    private static GameObjectType[] modelTypes(){
+        return new GameObjectType[] {
+            GameObjectTypes.rogue, GameObjectTypes.warrior, GameObjectTypes.mage, GameObjectTypes.minion, GameObjectTypes.imp,
+            GameObjectTypes.gold, GameObjectTypes.knife, GameObjectTypes.crossbow, GameObjectTypes.explosive,
+            GameObjectTypes.arrows, GameObjectTypes.arrow, GameObjectTypes.shield1, GameObjectTypes.shield2,
+            GameObjectTypes.axe, GameObjectTypes.spellBookClosed, GameObjectTypes.spellBookOpen,
+            GameObjectTypes.spellBookClosedB, GameObjectTypes.spellBookOpenB, GameObjectTypes.spellBookClosedC,
+            GameObjectTypes.spellBookOpenC, GameObjectTypes.spellBookClosedD, GameObjectTypes.spellBookOpenD,
+            GameObjectTypes.food, GameObjectTypes.bottle_A_brown, GameObjectTypes.bottle_A_green,
+            GameObjectTypes.bottle_B_brown, GameObjectTypes.bottle_B_green, GameObjectTypes.bottle_C_brown,
+            GameObjectTypes.bottle_C_green, GameObjectTypes.bigSword, GameObjectTypes.cactus
+        };
     }
 
-    /** load models via asset manager (need to call queueAssets() first). */
-    public void loadAssets(AssetManager assets) {
-        assets.finishLoading(); // just in case
-        int index = 0;
-        GameObjectTypes.rogue.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.warrior.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.mage.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.minion.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.imp.sceneAsset = assets.get(fileNames[index++], Model.class);
-
-        GameObjectTypes.gold.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.knife.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.crossbow.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.explosive.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.arrows.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.arrow.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.shield1.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.shield2.sceneAsset = assets.get(fileNames[index++], Model.class);
-
-        GameObjectTypes.axe.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.spellBookClosed.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.spellBookOpen.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.spellBookClosedB.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.spellBookOpenB.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.spellBookClosedC.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.spellBookOpenC.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.spellBookClosedD.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.spellBookOpenD.sceneAsset = assets.get(fileNames[index++], Model.class);
-
-        GameObjectTypes.food.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.bottle_A_brown.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.bottle_A_green.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.bottle_B_brown.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.bottle_B_green.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.bottle_C_brown.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.bottle_C_green.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.bigSword.sceneAsset = assets.get(fileNames[index++], Model.class);
-        GameObjectTypes.cactus.sceneAsset = assets.get(fileNames[index++], Model.class);
-
-        addIcons();
+    /** model file of a game object type, the types must have been created (see GameObjectTypes) */
+    public static String getModelFile(GameObjectType type){
+        GameObjectType[] modelTypes = modelTypes();
+        for(int i = 0; i < modelTypes.length; i++)
+            if(modelTypes[i] == type)
+                return fileNames[i];
+        throw new IllegalArgumentException("No model for " + type.name);
     }
 
-
-    // generate icons for each type
-    private void addIcons(){
-
-        ShowCase showCase = new ShowCase();
-        emptyIcon = showCase.makeIcon(null, ICON_SIZE, ICON_SIZE, false);
-        for(GameObjectType type : types ){
-            type.icon = showCase.makeIcon(type.sceneAsset, ICON_SIZE, ICON_SIZE, type.isEnemy || type.isPlayer || type == GameObjectTypes.bigSword);
+    /** give every type the model that is loaded for it, or null, and make the icons of new ones.
+     * Models are loaded by AssetStreamer, which may only have part of them loaded at any time. */
+    public void bindAssets(AssetManager assets) {
+        if(showCase == null) {
+            showCase = new ShowCase();
+            emptyIcon = showCase.makeIcon(null, ICON_SIZE, ICON_SIZE, false);
+        }
+        GameObjectType[] modelTypes = modelTypes();
+        for(int i = 0; i < modelTypes.length; i++) {
+            GameObjectType type = modelTypes[i];
+            type.sceneAsset = assets.isLoaded(fileNames[i], Model.class) ? assets.get(fileNames[i], Model.class) : null;
+            if(type.sceneAsset != null && type.icon == null)    // icons are kept when the model is unloaded
+                type.icon = showCase.makeIcon(type.sceneAsset, ICON_SIZE, ICON_SIZE, type.isEnemy || type.isPlayer || type == GameObjectTypes.bigSword);
         }
     }
 
@@ -0,0 +1,113 @@
+package com.monstrous.dungeon.render;
+
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+
+// Unordered set of model instances with handles.
+//
+// The instances are kept densely packed in an array for the render loop. Adding an instance returns a handle
+// which stays valid until the instance is removed, whatever else is added or removed in the meantime.
+// Removing by handle is O(1): the last instance is moved into the hole.
+//
+// A handle is a slot number plus the generation of that slot. The generation is bumped whenever the slot is freed,
+// so a handle that is used after its instance was removed (or after clear()) is ignored instead of
+// removing whatever instance has taken the slot since.
+
+public class InstanceBucket {
+    private static final int SLOT_BITS = 20;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = 0x7FF;     // keeps handles positive
+
+    public static final int NO_HANDLE = -1;
+
+    private final Array<ModelInstance> instances = new Array<>();
+    private final IntArray slotOf = new IntArray();     // per position in instances, its slot
+    private int[] indexOf = new int[64];                // per slot, position in instances or -1 if free
+    private int[] generation = new int[64];
+    private final IntArray freeSlots = new IntArray();
+    private int numSlots = 0;
+
+    /** add instance, returns a handle for remove(int) */
+    public int add(ModelInstance instance){
+        int slot;
+        if(freeSlots.size > 0)
+            slot = freeSlots.pop();
+        else {
+            slot = numSlots++;
+            if(slot >= indexOf.length){
+                int[] newIndexOf = new int[indexOf.length * 2];
+                System.arraycopy(indexOf, 0, newIndexOf, 0, indexOf.length);
+                indexOf = newIndexOf;
+                int[] newGeneration = new int[generation.length * 2];
+                System.arraycopy(generation, 0, newGeneration, 0, generation.length);
+                generation = newGeneration;
+            }
+        }
+        indexOf[slot] = instances.size;
+        instances.add(instance);
+        slotOf.add(slot);
+        return (generation[slot] << SLOT_BITS) | slot;
+    }
+
+    public boolean contains(int handle){
+        if(handle < 0)
+            return false;
+        int slot = handle & SLOT_MASK;
+        return slot < numSlots && indexOf[slot] >= 0 && generation[slot] == (handle >>> SLOT_BITS);
+    }
+
+    /** remove instance by handle, returns false if the handle is no longer valid */
+    public boolean remove(int handle){
+        if(!contains(handle))
+            return false;
+        removeAt(indexOf[handle & SLOT_MASK]);
+        return true;
+    }
+
+    /** remove instance without a handle, this needs a linear search */
+    public boolean remove(ModelInstance instance){
+        int index = instances.indexOf(instance, true);
+        if(index < 0)
+            return false;
+        removeAt(index);
+        return true;
+    }
+
+    private void removeAt(int index){
+        int slot = slotOf.get(index);
+        int last = instances.size - 1;
+        if(index != last){
+            instances.set(index, instances.get(last));
+            int movedSlot = slotOf.get(last);
+            slotOf.set(index, movedSlot);
+            indexOf[movedSlot] = index;
+        }
+        instances.pop();
+        slotOf.pop();
+        freeSlot(slot);
+    }
+
+    private void freeSlot(int slot){
+        indexOf[slot] = -1;
+        generation[slot] = (generation[slot] + 1) & GENERATION_MASK;
+        freeSlots.add(slot);
+    }
+
+    public void clear(){
+        for(int i = 0; i < slotOf.size; i++)
+            freeSlot(slotOf.get(i));
+        instances.clear();
+        slotOf.clear();
+    }
+
+    public int size(){
+        return instances.size;
+    }
+
+    /** the instances in no particular order, do not modify */
+    public Array<ModelInstance> getInstances(){
+        return instances;
+    }
+}
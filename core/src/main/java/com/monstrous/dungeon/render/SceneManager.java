@@ -10,51 +10,175 @@ import com.badlogic.gdx.graphics.g3d.ModelInstance;
 import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
 import com.badlogic.gdx.graphics.g3d.environment.DirectionalLight;
 import com.badlogic.gdx.graphics.g3d.environment.PointLight;
+import com.badlogic.gdx.graphics.g3d.model.Node;
+import com.badlogic.gdx.graphics.g3d.model.NodePart;
+import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntSet;
+import com.monstrous.dungeon.map.Room;
 import com.monstrous.gdx.webgpu.graphics.g3d.WgModelBatch;
 import com.monstrous.gdx.webgpu.graphics.g3d.shaders.WgDefaultShader;
 import com.monstrous.gdx.webgpu.graphics.utils.WgScreenUtils;
 
+// Static architecture is added as StaticChunks (baked once, owned by the scene manager from then on), everything
+// that can move or animate as ModelInstances.
+// The two are kept in separate buckets. Dynamic instances are registered by handle, so they can be removed in O(1).
+//
+// Before rendering, chunks and instances outside the camera frustum are culled: chunks by their bounding box,
+// instances by a sphere around their position. Optionally, room chunks are also culled if they are not
+// the viewpoint room or one of its close neighbours (a coarse portal test, corridors are not affected).
+
 public class SceneManager implements Disposable {
-    private Array<ModelInstance> instances;
+    private final InstanceBucket instances;     // dynamic
+    private final Array<StaticChunk> chunks;
+    private final Array<StaticChunk> visibleChunks = new Array<>();
+    private final Array<ModelInstance> visibleInstances = new Array<>();
+    private final IntSet visibleRooms = new IntSet();
+    private Room viewpointRoom;         // null if the room filter is not used
+    private final Vector3 position = new Vector3();
+
+    private static final float INSTANCE_RADIUS = 3f;    // bounding sphere of characters and items
+    private static final float INSTANCE_HEIGHT = 1f;    // centre of the sphere above the origin
     private final WgModelBatch modelBatch;
     public Environment environment;
     public Color fogColor;
 
+    public boolean frustumCulling = true;
+
+    // statistics of the last frame
+    public int drawCalls;           // renderables submitted to the model batch
+    public int staticDrawCalls;     // of which from static chunks
+    public int staticInstances;     // tiles in the drawn chunks
+    public int dynamicInstances;    // instances drawn
+    public int drawnChunks;
+    public int culledChunks;
+    public int culledInstances;
+    public float cpuFrameTime;      // time spent in render() in milliseconds, smoothed over frames
+
     public SceneManager() {
         WgDefaultShader.Config config = new WgDefaultShader.Config();
         config.maxPointLights = 1+DungeonScenes.MAX_TORCHES;
         config.numBones = 48;
         modelBatch = new WgModelBatch(config);
-        instances = new Array<>();
+        instances = new InstanceBucket();
+        chunks = new Array<>();
         fogColor = Color.BLACK;
         environment = new Environment();
     }
 
 
 
-
-
     public void clear(){
         instances.clear();
+        for(StaticChunk chunk : chunks)
+            chunk.dispose();
+        chunks.clear();
+        visibleChunks.clear();
+        visibleInstances.clear();
+        setViewpointRoom(null);
     }
 
-    public void add(ModelInstance instance){
-        instances.add(instance);
+    /** add a dynamic instance, returns a handle to remove it with */
+    public int add(ModelInstance instance){
+        return instances.add(instance);
     }
 
+    /** remove a dynamic instance by handle, a handle that is no longer valid is ignored */
+    public void remove(int handle){
+        instances.remove(handle);
+    }
+
+    /** remove a dynamic instance without handle (linear search) */
     public void remove(ModelInstance instance){
-        instances.removeValue(instance, true);
+        instances.remove(instance);
+    }
+
+    public void addChunk(StaticChunk chunk){
+        chunks.add(chunk);
+    }
+
+    /** remove a chunk and dispose of it */
+    public void removeChunk(StaticChunk chunk){
+        chunks.removeValue(chunk, true);
+        chunk.dispose();
+    }
+
+    /** only draw the chunks of this room and its close neighbours (and corridors). Use null to draw all rooms. */
+    public void setViewpointRoom(Room room){
+        if(room == viewpointRoom)
+            return;
+        viewpointRoom = room;
+        visibleRooms.clear();
+        if(room == null)
+            return;
+        visibleRooms.add(room.id);
+        for(Room nbor : room.closeNeighbours)
+            visibleRooms.add(nbor.id);
     }
 
 
     public void render (Camera camera) {
+        long startTime = System.nanoTime();
         WgScreenUtils.clear(fogColor,true);
 
+        cull(camera);
         modelBatch.begin(camera);
-        modelBatch.render(instances, environment);
+        modelBatch.render(visibleChunks, environment);
+        modelBatch.render(visibleInstances, environment);
         modelBatch.end();
+
+        updateStats();
+        float ms = (System.nanoTime() - startTime) / 1_000_000f;
+        cpuFrameTime = cpuFrameTime == 0 ? ms : 0.95f * cpuFrameTime + 0.05f * ms;
+    }
+
+    private void cull(Camera camera){
+        visibleChunks.clear();
+        for(StaticChunk chunk : chunks){
+            if(viewpointRoom != null && chunk.roomId >= 0 && !visibleRooms.contains(chunk.roomId))
+                continue;
+            if(frustumCulling && !camera.frustum.boundsInFrustum(chunk.bounds))
+                continue;
+            visibleChunks.add(chunk);
+        }
+
+        visibleInstances.clear();
+        Array<ModelInstance> dynamic = instances.getInstances();
+        for(int i = 0; i < dynamic.size; i++){
+            ModelInstance instance = dynamic.get(i);
+            instance.transform.getTranslation(position);
+            if(frustumCulling && !camera.frustum.sphereInFrustum(position.x, position.y + INSTANCE_HEIGHT, position.z, INSTANCE_RADIUS))
+                continue;
+            visibleInstances.add(instance);
+        }
+    }
+
+    private void updateStats(){
+        staticDrawCalls = 0;
+        staticInstances = 0;
+        for(StaticChunk chunk : visibleChunks){
+            staticDrawCalls += chunk.getRenderableCount();
+            staticInstances += chunk.getInstanceCount();
+        }
+        drawCalls = staticDrawCalls;
+        for(ModelInstance instance : visibleInstances)
+            for(Node node : instance.nodes)
+                drawCalls += countParts(node);
+        drawnChunks = visibleChunks.size;
+        culledChunks = chunks.size - visibleChunks.size;
+        dynamicInstances = visibleInstances.size;
+        culledInstances = instances.size() - visibleInstances.size;
+    }
+
+    private static int countParts(Node node){
+        int count = 0;
+        for(NodePart part : node.parts)
+            if(part.enabled)
+                count++;
+        for(Node child : node.getChildren())
+            count += countParts(child);
+        return count;
     }
 
     public void dispose(){
@@ -0,0 +1,207 @@
+package com.monstrous.dungeon.render;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.graphics.g3d.utils.MeshBuilder;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.Pool;
+import com.monstrous.dungeon.Settings;
+import com.monstrous.gdx.webgpu.graphics.WgMesh;
+
+import java.util.Comparator;
+
+
+// Static architecture of one room or one block of corridor tiles.
+//
+// Tiles never move once they are shown, so instead of asking every tile's ModelInstance for its renderables
+// each frame (walking its nodes and multiplying transforms), the renderables are baked once when the chunk changes
+// and then handed to the model batch as they are.
+//
+// With Settings.mergeStaticChunks the bake also merges the tiles on the CPU: the parts that have equal materials
+// (and vertex layout and primitive type) are copied into one mesh of the chunk, with their vertices transformed
+// to world space by MeshBuilder. A room then takes one draw call per material (floor, walls, ...) instead of one
+// per tile part. A merged mesh is split where it would need more vertices than 16 bit indices can address.
+// The merged meshes belong to the chunk and are disposed with it or when it is baked again.
+//
+// Without merging, the baked renderables are sorted by mesh and material, so that all copies of the same tile model
+// are submitted one after the other, which lets the batch reuse its state.
+// The chunk keeps a bounding box of its tiles for culling.
+
+public class StaticChunk implements RenderableProvider, Disposable {
+    // how far a tile model can extend from its origin (tiles are 4m wide, walls 4m high, stairs go 4m up or down)
+    private static final float TILE_EXTENT = 5f;
+
+    public final BoundingBox bounds = new BoundingBox();
+    public int roomId = -1;             // room the chunk belongs to or -1 for a corridor chunk
+
+    private final Array<ModelInstance> instances = new Array<>();
+    private final Array<Renderable> renderables = new Array<>();     // baked, owned by this chunk
+    private final Array<Renderable> tmp = new Array<>();
+    private boolean dirty = false;
+    private boolean merged;             // value of Settings.mergeStaticChunks at the last bake
+    private final Array<Mesh> meshes = new Array<>();              // merged meshes, owned by this chunk
+    private final Vector3 position = new Vector3();
+
+    private static final MeshBuilder meshBuilder = new MeshBuilder();      // only used on the render thread
+
+    private static final Pool<Renderable> bakePool = new Pool<Renderable>() {
+        @Override
+        protected Renderable newObject() {
+            return new Renderable();
+        }
+    };
+
+    private static final Comparator<Renderable> byMeshAndMaterial = (a, b) -> {
+        int ha = System.identityHashCode(a.meshPart.mesh);
+        int hb = System.identityHashCode(b.meshPart.mesh);
+        if(ha != hb)
+            return Integer.compare(ha, hb);
+        if(a.meshPart.offset != b.meshPart.offset)
+            return Integer.compare(a.meshPart.offset, b.meshPart.offset);
+        return Integer.compare(System.identityHashCode(a.material), System.identityHashCode(b.material));
+    };
+
+    // parts that can go into the same mesh end up next to each other.
+    // Every ModelInstance has its own copy of the model's materials, so materials are compared by content.
+    private static final Comparator<Renderable> byMaterial = (a, b) -> {
+        int ha = a.material.hashCode();
+        int hb = b.material.hashCode();
+        if(ha != hb)
+            return Integer.compare(ha, hb);
+        int id = a.material.id.compareTo(b.material.id);
+        if(id != 0)
+            return id;
+        if(a.meshPart.primitiveType != b.meshPart.primitiveType)
+            return Integer.compare(a.meshPart.primitiveType, b.meshPart.primitiveType);
+        return Long.compare(a.meshPart.mesh.getVertexAttributes().getMask(), b.meshPart.mesh.getVertexAttributes().getMask());
+    };
+
+    public StaticChunk() {
+        bounds.inf();
+    }
+
+    public void add(ModelInstance instance){
+        instances.add(instance);
+        instance.transform.getTranslation(position);
+        bounds.ext(position.x - TILE_EXTENT, position.y - TILE_EXTENT, position.z - TILE_EXTENT);
+        bounds.ext(position.x + TILE_EXTENT, position.y + TILE_EXTENT, position.z + TILE_EXTENT);
+        dirty = true;
+    }
+
+    public int getInstanceCount(){
+        return instances.size;
+    }
+
+    /** number of renderables, i.e. draw calls */
+    public int getRenderableCount(){
+        if(dirty || merged != Settings.mergeStaticChunks)
+            bake();
+        return renderables.size;
+    }
+
+    private void bake(){
+        disposeMeshes();
+        int count = 0;
+        for(ModelInstance instance : instances){
+            tmp.clear();
+            instance.getRenderables(tmp, bakePool);
+            for(Renderable r : tmp){
+                if(count == renderables.size)
+                    renderables.add(new Renderable());
+                renderables.get(count++).set(r);
+            }
+            bakePool.freeAll(tmp);
+        }
+        renderables.truncate(count);
+        merged = Settings.mergeStaticChunks;
+        if(merged)
+            merge();
+        else
+            renderables.sort(byMeshAndMaterial);
+        dirty = false;
+    }
+
+    // replace the renderables by one per material, drawing a mesh that holds all their parts
+    private void merge(){
+        renderables.sort(byMaterial);
+        int count = 0;
+        int start = 0;
+        while(start < renderables.size){
+            Renderable first = renderables.get(start);
+            int end = start + 1;
+            while(end < renderables.size && canMerge(first, renderables.get(end)))
+                end++;
+            if(end - start == 1 || first.bones != null)
+                renderables.swap(count++, start);    // nothing to merge with, keep it as it is
+            else
+                count = mergeGroup(start, end, count);
+            start = end;
+        }
+        renderables.truncate(count);
+    }
+
+    private static boolean canMerge(Renderable a, Renderable b){
+        return a.material.equals(b.material) && a.meshPart.primitiveType == b.meshPart.primitiveType && b.bones == null
+            && a.meshPart.mesh.getNumIndices() > 0 && b.meshPart.mesh.getNumIndices() > 0     // MeshBuilder copies by index
+            && a.meshPart.mesh.getVertexAttributes().equals(b.meshPart.mesh.getVertexAttributes());
+    }
+
+    // merge renderables [start, end) into as few meshes as the index range allows, stored from position count on.
+    // Returns the new count. Positions up to start are free to be overwritten.
+    private int mergeGroup(int start, int end, int count){
+        Renderable first = renderables.get(start);
+        VertexAttributes attributes = first.meshPart.mesh.getVertexAttributes();
+        int primitiveType = first.meshPart.primitiveType;
+        Renderable result = new Renderable().set(first);
+        meshBuilder.begin(attributes, primitiveType);
+        for(int i = start; i < end; i++){
+            Renderable r = renderables.get(i);
+            if(meshBuilder.getNumVertices() > 0 && meshBuilder.getNumVertices() + r.meshPart.size > MeshBuilder.MAX_VERTICES){   // size: indices, at least as many as the vertices used
+                count = finishMesh(result, count);
+                result = new Renderable().set(first);
+                meshBuilder.begin(attributes, primitiveType);
+            }
+            meshBuilder.setVertexTransform(r.worldTransform);
+            meshBuilder.addMesh(r.meshPart);
+        }
+        return finishMesh(result, count);
+    }
+
+    // put the mesh that is being built into a renderable at position count
+    private int finishMesh(Renderable result, int count){
+        Mesh mesh = new WgMesh(true, meshBuilder.getNumVertices(), meshBuilder.getNumIndices(), meshBuilder.getAttributes());
+        meshBuilder.end(mesh);
+        meshes.add(mesh);
+        result.meshPart.set(null, mesh, 0, mesh.getNumIndices(), result.meshPart.primitiveType);
+        result.meshPart.update();
+        result.worldTransform.idt();
+        renderables.set(count, result);
+        return count + 1;
+    }
+
+    private void disposeMeshes(){
+        for(Mesh mesh : meshes)
+            mesh.dispose();
+        meshes.clear();
+    }
+
+    @Override
+    public void getRenderables(Array<Renderable> out, Pool<Renderable> pool) {
+        if(dirty || merged != Settings.mergeStaticChunks)
+            bake();
+        out.addAll(renderables);
+    }
+
+    @Override
+    public void dispose() {
+        disposeMeshes();
+        instances.clear();
+        renderables.clear();
+    }
+}
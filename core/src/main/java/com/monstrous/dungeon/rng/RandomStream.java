@@ -0,0 +1,45 @@
+package com.monstrous.dungeon.rng;
+
+import com.badlogic.gdx.math.RandomXS128;
+
+
+/** A random number generator with the same convenience methods as MathUtils.random(), but with its own state.
+ * Use one per task (e.g. generating a level) instead of the shared static generator in MathUtils,
+ * so that the task gives the same output whichever thread runs it and whatever else draws random numbers meanwhile.
+ * The seeds come from RandomStreams (SplitMix64 mixes of world seed, level, subsystem and entity), so the numbers
+ * differ from what MathUtils.random() gave for the world seed. Not thread safe: don't share an instance between threads. */
+public class RandomStream extends RandomXS128 {
+    private static final long serialVersionUID = 1L;    // Random is Serializable; saved games use getKey() and getState()
+    private final long key;     // the seed this stream was created with
+
+    public RandomStream(long seed) {
+        super(seed);
+        this.key = seed;
+    }
+
+    /** the seed this stream was created with. Together with getState(0) and getState(1) this restores the stream. */
+    public long getKey(){
+        return key;
+    }
+
+    /** Returns an independent stream derived from this stream's seed (not from its current state),
+     * so split(i) gives the same stream however many numbers were drawn from this one. */
+    public RandomStream split(int index){
+        return new RandomStream(RandomStreams.split(key, index));
+    }
+
+    /** Returns a random number between 0 (inclusive) and the specified value (inclusive). */
+    public int random(int range){
+        return nextInt(range + 1);
+    }
+
+    /** Returns a random number between start (inclusive) and end (inclusive). */
+    public int random(int start, int end){
+        return start + nextInt(end - start + 1);
+    }
+
+    /** Returns a random number between 0 (inclusive) and the specified value (exclusive). */
+    public float random(float range){
+        return nextFloat() * range;
+    }
+}
@@ -0,0 +1,43 @@
+package com.monstrous.dungeon.rng;
+
+
+/** Derives independent random streams from the world seed.
+ *
+ * Each stream is keyed by seed, level, subsystem and entity (e.g. a character or a room) and its output only depends on that key.
+ * So a level can be generated on any thread and in any order and still give the same result,
+ * and one character drawing more numbers, e.g. because the player did something different, doesn't affect any other stream.
+ */
+public class RandomStreams {
+    public static final int PLAYER_ENTITY = -1;     // entity number of the rogue in the AI subsystem
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    public static RandomStream get(int seed, int level, Subsystem subsystem){
+        return get(seed, level, subsystem, 0);
+    }
+
+    public static RandomStream get(int seed, int level, Subsystem subsystem, int entity){
+        return new RandomStream(key(seed, level, subsystem, entity));
+    }
+
+    /** seed of the stream for this combination */
+    public static long key(int seed, int level, Subsystem subsystem, int entity){
+        long key = mix(seed);
+        key = mix(key + GOLDEN_GAMMA + level);
+        key = mix(key + GOLDEN_GAMMA + subsystem.ordinal());
+        key = mix(key + GOLDEN_GAMMA + entity);
+        return key;
+    }
+
+    /** derive the seed of a sub-stream, see RandomStream.split() */
+    static long split(long key, int index){
+        return mix(key + GOLDEN_GAMMA + index);
+    }
+
+    // SplitMix64 finalizer: spreads every input bit over the whole output
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,12 @@
+package com.monstrous.dungeon.rng;
+
+/** The parts of the game that each get their own random streams, see RandomStreams. */
+public enum Subsystem {
+    WORLD,      // world-wide choices, e.g. the level where the sword is
+    MAP,        // dungeon architecture
+    LOOT,       // items placed in a level
+    ENEMIES,    // enemies placed in a level
+    PLAYER,     // start position of the player
+    AI,         // decisions and combat rolls during play, one stream per character
+    DECOR       // cosmetic choices such as wall variants and torches, one stream per room
+}
@@ -0,0 +1,142 @@
+package com.monstrous.dungeon.headless;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.ObjectSet;
+import com.monstrous.dungeon.LevelGenerator;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+import com.monstrous.dungeon.render.AssetStreamer;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.TreeSet;
+
+
+/** Reports which models AssetStreamer loads for each level, without a window or a GPU.
+ *
+ * Generates the levels of a game from level 0 down and shows per level the models the Populator tables allow there,
+ * the models kept in memory while on that level (the level and the levels next to it) and their size on disk, where
+ * the size of a .gltf includes the buffers and images it refers to. The first line is what has to be loaded before the
+ * first frame, compared with loading all models at the start. Objects that are placed on a level while their model is
+ * not in the plan for it are listed, as are model files that are missing from the assets folder.
+ *
+ * Options: --seed S (default 1)  --depth D (default: sword level + 2)  --assets DIR (default ../assets or assets)
+ */
+public class AssetPlanReport {
+
+    private static int seed = 1;
+    private static int depth = -1;
+    private static String assetsDir = null;
+
+    public static void main(String[] args) {
+        parseArguments(args);
+        File assets = new File(assetsDir != null ? assetsDir : new File("../assets").isDirectory() ? "../assets" : "assets");
+
+        HeadlessSupport.init();
+        PrintStream out = System.out;
+        new GameObjectTypes();
+
+        int swordLevel = World.getSwordLevel(seed);
+        int deepest = depth >= 0 ? depth : swordLevel + 2;
+        TreeSet<String> missing = new TreeSet<>();
+
+        ObjectSet<String> all = new ObjectSet<>();
+        AssetStreamer.getAllFiles(all);
+        long allBytes = diskBytes(assets, all, missing);
+
+        out.println("Seed " + seed + ", sword on level " + swordLevel + ", assets in " + assets.getPath());
+        out.printf("all models at the start:   %3d models %8.1f MB%n", all.size, allBytes / 1e6);
+
+        ObjectSet<String> planned = new ObjectSet<>();
+        ObjectSet<String> kept = new ObjectSet<>();
+        ObjectSet<String> placed = new ObjectSet<>();
+        Array<Room> stairsFromAbove = new Array<>();
+        GameObject rogue = null;
+        for (int level = 0; level <= deepest; level++) {
+            LevelGenerator.Level generated = LevelGenerator.generate(seed, level, swordLevel, stairsFromAbove, true, level == 0);
+            stairsFromAbove = generated.stairPortals;
+            if (generated.rogue != null)
+                rogue = generated.rogue;
+
+            planned.clear();
+            AssetStreamer.getLevelFiles(level, swordLevel, planned);
+            kept.clear();
+            kept.addAll(planned);
+            AssetStreamer.getLevelFiles(level + 1, swordLevel, kept);
+            if (level > 0)
+                AssetStreamer.getLevelFiles(level - 1, swordLevel, kept);
+            placed.clear();
+            AssetStreamer.getFilesInUse(rogue, generated.levelData, placed);
+            kept.addAll(placed);
+
+            if (level == 0) {
+                out.printf("level 0 before 1st frame: %3d models %8.1f MB%n%n", planned.size, diskBytes(assets, planned, missing) / 1e6);
+                out.println("level  planned       MB   resident       MB  objects not planned");
+            }
+            StringBuilder unplanned = new StringBuilder();
+            for (String fileName : placed)
+                if (!planned.contains(fileName))
+                    unplanned.append(' ').append(fileName);
+            out.printf("%5d %8d %8.1f %10d %8.1f  %s%n", level, planned.size, diskBytes(assets, planned, missing) / 1e6,
+                kept.size, diskBytes(assets, kept, missing) / 1e6, unplanned.length() == 0 ? "-" : unplanned.toString().trim());
+        }
+
+        if (!missing.isEmpty()) {
+            out.println();
+            out.println("Missing from " + assets.getPath() + ":");
+            for (String fileName : missing)
+                out.println("  " + fileName);
+        }
+    }
+
+    private static void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed":      seed = Integer.parseInt(args[++i]); break;
+                case "--depth":     depth = Integer.parseInt(args[++i]); break;
+                case "--assets":    assetsDir = args[++i]; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    // bytes on disk of the model files and the files a .gltf refers to, each file counted once
+    private static long diskBytes(File assets, ObjectSet<String> fileNames, TreeSet<String> missing) {
+        ObjectSet<String> counted = new ObjectSet<>();
+        long bytes = 0;
+        for (String fileName : fileNames) {
+            File file = new File(assets, fileName);
+            if (!file.isFile()) {
+                missing.add(fileName);
+                continue;
+            }
+            if (counted.add(file.getPath()))
+                bytes += file.length();
+            if (!fileName.endsWith(".gltf"))
+                continue;
+            JsonValue json = new JsonReader().parse(new FileHandle(file));
+            for (String section : new String[] {"buffers", "images"}) {
+                JsonValue entries = json.get(section);
+                if (entries == null)
+                    continue;
+                for (JsonValue entry = entries.child; entry != null; entry = entry.next) {
+                    String uri = entry.getString("uri", null);
+                    if (uri == null || uri.startsWith("data:"))
+                        continue;       // embedded, already in the file size
+                    File part = new File(file.getParentFile(), uri);
+                    if (!part.isFile())
+                        missing.add(fileName + " -> " + uri);
+                    else if (counted.add(part.getPath()))
+                        bytes += part.length();
+                }
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,182 @@
+package com.monstrous.dungeon.headless;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.LevelGenerator;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.GenerationProfile;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/** Generates maps and populations for many seeds and levels in parallel, without any graphics.
+ * Reports throughput, allocation rate and latency percentiles per generation stage,
+ * and lists the seeds for which generation failed.
+ *
+ * Each seed is generated from level 0 down, because a level needs the stairs of the level above.
+ * Different seeds run in parallel on all cores.
+ *
+ * Options: --seeds N (default 100)  --first-seed S (default 1)  --levels L (default 20)
+ *          --threads T (default: nr of cores)  --corridor-walls (include addCorridorWalls, which the game doesn't use yet)
+ */
+public class BatchGenerator {
+
+    private static int numSeeds = 100;
+    private static int firstSeed = 1;
+    private static int numLevels = 20;
+    private static int numThreads = Runtime.getRuntime().availableProcessors();
+    private static boolean corridorWalls = false;
+
+    // results per generated level, indexed by seed index * numLevels + level
+    private static long[][] stageNanos;     // [stage][level index]
+    private static long[] totalNanos;
+    private static long[] allocatedBytes;
+    private static boolean[] generated;
+
+    public static void main(String[] args) throws Exception {
+        parseArguments(args);
+
+        HeadlessSupport.init();
+        PrintStream out = System.out;
+
+        new GameObjectTypes();  // create the type tables before the worker threads use them
+
+        int count = numSeeds * numLevels;
+        stageNanos = new long[GenerationProfile.Stage.values().length][count];
+        totalNanos = new long[count];
+        allocatedBytes = new long[count];
+        generated = new boolean[count];
+
+        out.println("Generating " + numLevels + " levels for " + numSeeds + " seeds on " + numThreads + " threads...");
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<String>> failures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < numSeeds; i++) {
+            final int seedIndex = i;
+            failures.add(executor.submit(() -> generateSeed(seedIndex)));
+        }
+        StringBuilder failed = new StringBuilder();
+        for (Future<String> future : failures) {
+            String failure = future.get();
+            if (failure != null)
+                failed.append("  ").append(failure).append('\n');
+        }
+        long wallNanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        report(out, wallNanos);
+        out.print(failed.length() == 0 ? "failed seeds: none\n" : "failed seeds:\n" + failed);
+    }
+
+    private static void parseArguments(String[] args){
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seeds":         numSeeds = Integer.parseInt(args[++i]); break;
+                case "--first-seed":    firstSeed = Integer.parseInt(args[++i]); break;
+                case "--levels":        numLevels = Integer.parseInt(args[++i]); break;
+                case "--threads":       numThreads = Integer.parseInt(args[++i]); break;
+                case "--corridor-walls": corridorWalls = true; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    // generate all levels for one seed, returns a description of the failure or null if all went well
+    private static String generateSeed(int seedIndex){
+        int seed = firstSeed + seedIndex;
+        int swordLevel = World.getSwordLevel(seed);
+        Array<Room> stairsFromAbove = new Array<>();
+
+        for (int level = 0; level < numLevels; level++) {
+            int index = seedIndex * numLevels + level;
+            GenerationProfile profile = new GenerationProfile();
+            long bytes = getAllocatedBytes();
+            long start = System.nanoTime();
+            LevelGenerator.Level result;
+            try {
+                result = LevelGenerator.generate(seed, level, swordLevel, stairsFromAbove, true, level == 0, profile);
+                if (corridorWalls)
+                    result.map.addCorridorWalls();
+            } catch (RuntimeException e) {
+                return "seed " + seed + " level " + level + ": " + e;
+            }
+            totalNanos[index] = System.nanoTime() - start;
+            allocatedBytes[index] = getAllocatedBytes() - bytes;
+            for (GenerationProfile.Stage stage : GenerationProfile.Stage.values())
+                stageNanos[stage.ordinal()][index] = profile.getNanos(stage);
+            generated[index] = true;
+
+            result.map.dispose();
+            stairsFromAbove = result.stairPortals;
+        }
+        return null;
+    }
+
+    private static long getAllocatedBytes(){
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+
+    private static void report(PrintStream out, long wallNanos){
+        int levels = 0;
+        long bytes = 0;
+        for (int i = 0; i < generated.length; i++) {
+            if (generated[i]) {
+                levels++;
+                bytes += allocatedBytes[i];
+            }
+        }
+        double seconds = wallNanos / 1e9;
+        out.printf("%d levels in %.2f s: %.1f levels/s%n", levels, seconds, levels / seconds);
+        if (levels == 0)
+            return;
+        out.printf("allocated %.1f MB per level, %.1f MB/s%n", bytes / 1e6 / levels, bytes / 1e6 / seconds);
+
+        out.println("stage                     p50 ms    p90 ms    p99 ms    max ms   share");
+        long allStages = sum(totalNanos);
+        for (GenerationProfile.Stage stage : GenerationProfile.Stage.values()) {
+            if (stage == GenerationProfile.Stage.CORRIDOR_WALLS && !corridorWalls)
+                continue;
+            printLine(out, stage.name(), stageNanos[stage.ordinal()], allStages);
+        }
+        printLine(out, "TOTAL", totalNanos, allStages);
+    }
+
+    private static void printLine(PrintStream out, String name, long[] samples, long allStages){
+        long[] sorted = new long[samples.length];
+        int n = 0;
+        for (int i = 0; i < samples.length; i++)
+            if (generated[i])
+                sorted[n++] = samples[i];
+        sorted = Arrays.copyOf(sorted, n);
+        Arrays.sort(sorted);
+        out.printf("%-22s %9.3f %9.3f %9.3f %9.3f  %5.1f%%%n", name,
+            percentile(sorted, 50) / 1e6, percentile(sorted, 90) / 1e6, percentile(sorted, 99) / 1e6, sorted[n - 1] / 1e6,
+            100.0 * sum(sorted) / allStages);
+    }
+
+    private static long percentile(long[] sorted, int p){
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private static long sum(long[] values){
+        long total = 0;
+        for (long v : values)
+            total += v;
+        return total;
+    }
+}
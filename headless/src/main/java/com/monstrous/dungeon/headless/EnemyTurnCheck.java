@@ -0,0 +1,136 @@
+package com.monstrous.dungeon.headless;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.monstrous.dungeon.SaveGame;
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.Direction;
+import com.monstrous.dungeon.map.TileType;
+import com.monstrous.dungeon.populus.CharacterStats;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.GameObjectType;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+import com.monstrous.dungeon.populus.GameObjects;
+import com.monstrous.dungeon.rng.RandomStream;
+import com.monstrous.dungeon.rng.RandomStreams;
+import com.monstrous.dungeon.rng.Subsystem;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+
+/** Checks that enemy turns come out the same whether the enemies decide on worker threads or not, and times them.
+ *
+ * For each enemy count, a level is crowded with that many extra enemies and played for a number of turns,
+ * once with parallel enemy turns and once without. The saved games after every turn must be identical.
+ *
+ * Options: --seed S (default 1234)  --level L (default 40)  --turns T (default 50)  --enemies 10,100,... (default 10,100,1000,10000)
+ */
+public class EnemyTurnCheck {
+
+    private static int seed = 1234;
+    private static int level = 40;
+    private static int turns = 50;
+    private static int[] counts = { 10, 100, 1000, 10000 };
+
+    public static void main(String[] args) {
+        parseArguments(args);
+
+        HeadlessSupport.init();
+        PrintStream out = System.out;
+        Settings.preGenerateLevels = false;
+        new GameObjectTypes();
+
+        boolean allOk = true;
+
+        out.println("threads: " + Runtime.getRuntime().availableProcessors());
+        out.println("enemies  serial ms/turn  parallel ms/turn  result");
+        for (int count : counts) {
+            World serial = createWorld(count);
+            World parallel = createWorld(count);
+            int added = serial.enemies.enemies.size;
+            long serialNanos = 0;
+            long parallelNanos = 0;
+            boolean ok = true;
+            for (int t = 0; t < turns && ok; t++) {
+                serialNanos += turn(serial, false);
+                parallelNanos += turn(parallel, true);
+                ok = Arrays.equals(SaveGame.write(serial), SaveGame.write(parallel));
+            }
+            allOk &= ok;
+            out.printf("%7d %15.3f %17.3f  %s%n", added, serialNanos / 1e6 / turns, parallelNanos / 1e6 / turns, ok ? "ok" : "MISMATCH");
+            serial.dispose();
+            parallel.dispose();
+        }
+        out.println(allOk ? "all turns identical" : "parallel turns DIFFER");
+        System.exit(allOk ? 0 : 1);
+    }
+
+    private static void parseArguments(String[] args){
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed":      seed = Integer.parseInt(args[++i]); break;
+                case "--level":     level = Integer.parseInt(args[++i]); break;
+                case "--turns":     turns = Integer.parseInt(args[++i]); break;
+                case "--enemies":   counts = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    private static World createWorld(int count){
+        World world = new World();
+        world.seed = seed;
+        world.restart(true);
+        for (int i = 0; i < level; i++)
+            world.levelDown();
+        addEnemies(world, count);
+        return world;
+    }
+
+    // one enemy turn, with the rogue kept alive. Returns the time it took in nanoseconds.
+    private static long turn(World world, boolean parallel){
+        world.rogue.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+        Settings.parallelEnemyTurns = parallel;
+        long start = System.nanoTime();
+        world.enemies.step(world);
+        long end = System.nanoTime();
+        world.events.clear();       // nothing to play them back on
+        return end - start;
+    }
+
+    /** add up to count enemies to the current level, on free floor tiles picked at random, set up like the Populator does.
+     * The same world and count give the same enemies. */
+    public static void addEnemies(World world, int count){
+        GameObjectType[] types = { GameObjectTypes.warrior, GameObjectTypes.mage, GameObjectTypes.minion, GameObjectTypes.imp };
+        GameObjects gameObjects = world.levelData.gameObjects;
+        RandomStream rnd = RandomStreams.get(world.seed, world.level, Subsystem.ENEMIES, 1);     // not the stream of the Populator (entity 0)
+
+        IntArray free = new IntArray();     // x,y pairs
+        for (int y = 0; y < world.map.mapHeight; y++)
+            for (int x = 0; x < world.map.mapWidth; x++)
+                if (TileType.hasFloor(world.map.getGrid(x, y)) && gameObjects.getOccupant(x, y) == null)
+                    free.add(x, y);
+
+        for (int i = 0; i < count && free.size > 0; i++) {
+            int pick = 2 * rnd.random(0, free.size / 2 - 1);
+            int x = free.get(pick);
+            int y = free.get(pick + 1);
+            // take the tile out of the free list
+            free.set(pick, free.get(free.size - 2));
+            free.set(pick + 1, free.get(free.size - 1));
+            free.size -= 2;
+
+            GameObjectType type = types[rnd.random(0, types.length - 1)];
+            GameObject enemy = new GameObject(type, x, y, Direction.SOUTH);
+            gameObjects.setOccupant(x, y, enemy);
+            enemy.stats = new CharacterStats();
+            enemy.stats.experience = type.initXP;
+            enemy.stats.aggressive = type.initAggressive;
+            enemy.rnd = RandomStreams.get(world.seed, world.level, Subsystem.AI, world.enemies.enemies.size);
+            gameObjects.add(enemy);
+            world.enemies.add(enemy);
+        }
+    }
+}
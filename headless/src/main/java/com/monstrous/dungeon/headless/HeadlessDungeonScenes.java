@@ -0,0 +1,42 @@
+package com.monstrous.dungeon.headless;
+
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.monstrous.dungeon.map.Direction;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.render.DungeonScenes;
+
+
+/** DungeonScenes without a scene manager or models, so the scenes can be built and game events played back headless.
+ * Everything that is not about model instances (tiles seen, torch positions, object positions) still happens.
+ * Game objects never get a scene, so characters are treated as off-screen.
+ */
+public class HeadlessDungeonScenes extends DungeonScenes {
+
+    public int tilesAdded;      // number of tiles that would have been added to the scene
+
+    public HeadlessDungeonScenes() {
+        super(null);
+    }
+
+    @Override
+    protected void addTile(Model model, int x, int y, float z, Direction dir) {
+        tilesAdded++;
+    }
+
+    @Override
+    public void addScene(GameObject gameObject) {
+    }
+
+    @Override
+    public void removeScene(GameObject gameObject) {
+        gameObject.scene = null;
+    }
+
+    @Override
+    public void remove(GameObject gameObject) {
+    }
+
+    @Override
+    public void clear() {
+    }
+}
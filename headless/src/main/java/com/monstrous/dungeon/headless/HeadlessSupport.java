@@ -0,0 +1,31 @@
+package com.monstrous.dungeon.headless;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+
+/** Start-up shared by the command line tools. */
+public class HeadlessSupport {
+    private static boolean initialized = false;
+
+    /** start an application without a window, so the game code can log through Gdx.app.
+     * Only errors are shown, unless the system property dungeon.log is set to debug, info or none. */
+    public static synchronized void init(){
+        if(initialized)
+            return;
+        initialized = true;
+
+        HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+        config.updatesPerSecond = -1;   // no render loop needed
+        new HeadlessApplication(new ApplicationAdapter() {}, config);
+        switch (System.getProperty("dungeon.log", "error")) {
+            case "debug":   Gdx.app.setLogLevel(Application.LOG_DEBUG); break;
+            case "info":    Gdx.app.setLogLevel(Application.LOG_INFO); break;
+            case "none":    Gdx.app.setLogLevel(Application.LOG_NONE); break;
+            default:        Gdx.app.setLogLevel(Application.LOG_ERROR); break;
+        }
+    }
+}
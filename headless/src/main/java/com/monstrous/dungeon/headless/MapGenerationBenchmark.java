@@ -0,0 +1,79 @@
+package com.monstrous.dungeon.headless;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.Room;
+
+import java.io.PrintStream;
+
+
+/** Measures dungeon map generation time per level, from level 0 down to a maximum depth.
+ * Levels are chained via their stair portals in the same way as World does it.
+ *
+ * Arguments: [max level (default 50)] [number of runs per level (default 3)] [seed (default 1234)]
+ */
+public class MapGenerationBenchmark {
+
+    public static void main(String[] args) {
+        int maxLevel = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int seed = args.length > 2 ? Integer.parseInt(args[2]) : 1234;
+
+        HeadlessSupport.init();
+        PrintStream out = System.out;
+
+        // warm up the JIT on the smaller levels
+        generateAll(seed, Math.min(maxLevel, 10), null);
+
+        long[] best = new long[maxLevel+1];
+        for(int i = 0; i <= maxLevel; i++)
+            best[i] = Long.MAX_VALUE;
+        int[] rooms = new int[maxLevel+1];
+        int[] tileBytes = new int[maxLevel+1];
+        for(int run = 0; run < runs; run++) {
+            long[] times = new long[maxLevel+1];
+            generateAll(seed, maxLevel, times, rooms, tileBytes);
+            for(int i = 0; i <= maxLevel; i++)
+                best[i] = Math.min(best[i], times[i]);
+        }
+
+        // tile memory compared to the previous layout of three grids of row arrays (TileType[][], Direction[][], int[][]):
+        // per grid an outer array plus one row array per row, 4 bytes per entry with compressed references
+        out.println("level  width height  rooms     ms  tiles KB  (was KB)");
+        long total = 0;
+        for(int level = 0; level <= maxLevel; level++){
+            total += best[level];
+            int w = World.MAP_WIDTH + World.DELTA_WIDTH*level;
+            int h = World.MAP_HEIGHT + World.DELTA_HEIGHT*level;
+            int previousBytes = 3 * ((16 + 4*h) + h * (16 + 4*w));
+            out.printf("%5d %6d %6d %6d %9.3f %9.1f %9.1f%n", level, w, h, rooms[level], best[level]/1e6,
+                tileBytes[level]/1024f, previousBytes/1024f);
+        }
+        out.printf("total: %.1f ms (best of %d runs, seed %d)%n", total/1e6, runs, seed);
+    }
+
+    private static void generateAll(int seed, int maxLevel, long[] times){
+        generateAll(seed, maxLevel, times, new int[maxLevel+1], new int[maxLevel+1]);
+    }
+
+    private static void generateAll(int seed, int maxLevel, long[] times, int[] rooms, int[] tileBytes){
+        Array<Room> stairsFromAbove = new Array<>();
+        for(int level = 0; level <= maxLevel; level++){
+            Array<Room> stairsToBelow = new Array<>();
+            int w = World.MAP_WIDTH + World.DELTA_WIDTH*level;
+            int h = World.MAP_HEIGHT + World.DELTA_HEIGHT*level;
+
+            long start = System.nanoTime();
+            DungeonMap map = new DungeonMap(seed, level, w, h, stairsFromAbove, stairsToBelow);
+            long end = System.nanoTime();
+
+            if(times != null)
+                times[level] = end - start;
+            rooms[level] = map.rooms.size;
+            tileBytes[level] = map.getTiles().getMemoryBytes();
+            map.dispose();
+            stairsFromAbove = stairsToBelow;
+        }
+    }
+}
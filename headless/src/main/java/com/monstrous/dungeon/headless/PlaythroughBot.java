@@ -0,0 +1,171 @@
+package com.monstrous.dungeon.headless;
+
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.DistanceField;
+import com.monstrous.dungeon.map.Direction;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.map.TileType;
+import com.monstrous.dungeon.populus.CharacterStats;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+import com.monstrous.dungeon.populus.Inventory;
+import com.monstrous.dungeon.populus.Player;
+import com.monstrous.dungeon.rng.RandomStream;
+
+
+/** Plays the rogue's turns through Player, the same calls KeyController makes for key presses.
+ *
+ * The scripted bot knows the map (as if it had the book of maps): it walks down the stairs to the sword level,
+ * fetches the Sword of Yobled, climbs back up to level 0 and returns to the start room. Enemies in the way are
+ * attacked by walking into them and items in the way are picked up. It eats when hungry and equips better weapons
+ * and armour it picked up. The random bot only walks in random directions.
+ */
+public class PlaythroughBot {
+
+    private static final Direction[] directions = Direction.values();
+
+    private final World world;
+    private final Player player;
+    private final boolean scripted;
+    private final RandomStream rnd;
+    private final DistanceField field = new DistanceField(true);    // without the steps that take the stairs
+    private DungeonMap targetMap;       // where the stairs target was chosen
+    private TileType targetType;
+    private int targetX, targetY;       // -1 if there are no such stairs within reach
+
+    public PlaythroughBot(World world, boolean scripted, RandomStream rnd) {
+        this.world = world;
+        this.player = world.player;
+        this.scripted = scripted;
+        this.rnd = rnd;
+    }
+
+    /** play one turn */
+    public void turn(){
+        if(!player.isFrozen()) {      // while frozen, the turn passes without an action
+            if (!scripted)
+                player.move(randomStep());
+            else if (!eat() && !equip())
+                player.move(nextStep());
+        }
+        player.endTurn();
+    }
+
+    private boolean eat(){
+        CharacterStats stats = world.rogue.stats;
+        if(stats.food > 30)
+            return false;
+        Inventory.Slot[] slots = stats.inventory.slots;
+        for(int i = 0; i < slots.length; i++){
+            if(!slots[i].isEmpty() && slots[i].object.type.isEdible){
+                player.useSlot(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // equip a weapon or armour from the inventory that is better than the current one, by the rule enemies use
+    private boolean equip(){
+        CharacterStats stats = world.rogue.stats;
+        Inventory.Slot[] slots = stats.inventory.slots;
+        for(int i = 0; i < slots.length; i++){
+            if(slots[i].isEmpty())
+                continue;
+            GameObject item = slots[i].object;
+            boolean better = false;
+            if(item.type.isArmour)
+                better = stats.armourItem == null || item.protection > stats.armourItem.protection;
+            else if(item.type.isWeapon && !item.type.isRangeWeapon)
+                better = stats.weaponItem == null || item.damage > stats.weaponItem.damage;
+            if(better){
+                player.equipSlot(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean haveSword(){
+        CharacterStats stats = world.rogue.stats;
+        return (stats.weaponItem != null && stats.weaponItem.type.isBigSword) || stats.inventory.contains(GameObjectTypes.bigSword);
+    }
+
+    // the direction to move this turn
+    private Direction nextStep(){
+        GameObject rogue = world.rogue;
+        DungeonMap map = world.map;
+        TileType tile = map.getGrid(rogue.x, rogue.y);
+
+        if(!haveSword() && world.level < world.swordLevel) {
+            if(tile == TileType.STAIRS_DOWN_DEEP)
+                return map.getOrientation(rogue.x, rogue.y);     // take the stairs down
+            if(!setTarget(TileType.STAIRS_DOWN_DEEP))
+                return randomStep();
+        }
+        else if(!haveSword()) {
+            if(!setTargetSword())
+                return randomStep();
+        }
+        else if(world.level > 0) {
+            if(tile == TileType.STAIRS_UP_HIGH)
+                return Direction.opposite(map.getOrientation(rogue.x, rogue.y));    // take the stairs up
+            if(!setTarget(TileType.STAIRS_UP_HIGH))
+                return randomStep();
+        }
+        else {
+            Room start = map.rooms.get(world.startRoomId);
+            field.update(map, start.centre.x, start.centre.y, map.mapWidth * map.mapHeight);
+        }
+        Direction step = field.bestStep(rogue.x, rogue.y);
+        return step != null ? step : randomStep();
+    }
+
+    // aim for the nearest stairs tile of this type. Returns false if there is none that can be reached.
+    private boolean setTarget(TileType type){
+        DungeonMap map = world.map;
+        int maxDistance = map.mapWidth * map.mapHeight;
+        if(map != targetMap || type != targetType) {
+            // the stairs are chosen once per level
+            targetMap = map;
+            targetType = type;
+            targetX = -1;
+            targetY = -1;
+            GameObject rogue = world.rogue;
+            field.update(map, rogue.x, rogue.y, maxDistance);      // steps from each tile to the rogue, near enough to the other way round
+            int best = DistanceField.UNREACHABLE;
+            for (int y = 0; y < map.mapHeight; y++) {
+                for (int x = 0; x < map.mapWidth; x++) {
+                    if (map.getGrid(x, y) == type && field.getDistance(x, y) < best) {
+                        best = field.getDistance(x, y);
+                        targetX = x;
+                        targetY = y;
+                    }
+                }
+            }
+        }
+        if(targetX < 0)
+            return false;
+        field.update(map, targetX, targetY, maxDistance);
+        return true;
+    }
+
+    // aim for the sword, or for the enemy that picked it up
+    private boolean setTargetSword(){
+        DungeonMap map = world.map;
+        for(GameObject go : world.levelData.gameObjects.gameObjects){
+            boolean carried = go.stats != null && go != world.rogue &&
+                ((go.stats.weaponItem != null && go.stats.weaponItem.type.isBigSword) || go.stats.inventory.contains(GameObjectTypes.bigSword));
+            if(go.type.isBigSword || carried) {
+                field.update(map, go.x, go.y, map.mapWidth * map.mapHeight);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Direction randomStep(){
+        return directions[rnd.random(0, 3)];
+    }
+}
@@ -0,0 +1,189 @@
+package com.monstrous.dungeon.headless;
+
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+import com.monstrous.dungeon.rng.RandomStreams;
+import com.monstrous.dungeon.rng.Subsystem;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/** Plays many complete games with a bot instead of a player, as fast as possible and without any graphics or sound,
+ * e.g. to see how the spawn tables and the fight rules work out over many games.
+ *
+ * Each game has its own seed and World and runs on one thread, different games run in parallel on all cores.
+ * A game ends when the rogue wins, dies or runs out of turns. Reports turns per second, win and death rates
+ * per sword level and the memory allocated per game.
+ *
+ * Options: --games N (default 100)  --first-seed S (default 1)  --threads T (default: nr of cores)
+ *          --max-turns M (default 10000)  --bot scripted|random (default scripted, see PlaythroughBot)
+ */
+public class PlaythroughRunner {
+
+    private static final int WON = 0;
+    private static final int DIED = 1;
+    private static final int TIMED_OUT = 2;
+
+    private static int numGames = 100;
+    private static int firstSeed = 1;
+    private static int numThreads = Runtime.getRuntime().availableProcessors();
+    private static int maxTurns = 10000;
+    private static boolean scripted = true;
+
+    // results per game
+    private static int[] outcomes;
+    private static int[] turns;
+    private static int[] swordLevels;
+    private static int[] deepestLevels;
+    private static long[] allocatedBytes;
+
+    public static void main(String[] args) throws Exception {
+        parseArguments(args);
+
+        HeadlessSupport.init();
+        PrintStream out = System.out;
+        Settings.preGenerateLevels = false;     // the games already keep all cores busy
+        Settings.parallelEnemyTurns = false;
+        new GameObjectTypes();  // create the type tables before the worker threads use them
+
+        outcomes = new int[numGames];
+        turns = new int[numGames];
+        swordLevels = new int[numGames];
+        deepestLevels = new int[numGames];
+        allocatedBytes = new long[numGames];
+
+        out.println("Playing " + numGames + " games with the " + (scripted ? "scripted" : "random") + " bot on " + numThreads + " threads...");
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<?>> games = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < numGames; i++) {
+            final int gameIndex = i;
+            games.add(executor.submit(() -> play(gameIndex)));
+        }
+        for (Future<?> game : games)
+            game.get();
+        long wallNanos = System.nanoTime() - start;
+        executor.shutdown();
+
+        report(out, wallNanos);
+        System.exit(0);
+    }
+
+    private static void parseArguments(String[] args){
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games":         numGames = Integer.parseInt(args[++i]); break;
+                case "--first-seed":    firstSeed = Integer.parseInt(args[++i]); break;
+                case "--threads":       numThreads = Integer.parseInt(args[++i]); break;
+                case "--max-turns":     maxTurns = Integer.parseInt(args[++i]); break;
+                case "--bot":
+                    String bot = args[++i];
+                    if (!bot.equals("scripted") && !bot.equals("random"))
+                        throw new IllegalArgumentException("Unknown bot: " + bot);
+                    scripted = bot.equals("scripted");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    private static void play(int gameIndex){
+        int seed = firstSeed + gameIndex;
+        long bytes = getAllocatedBytes();
+
+        World world = new World();
+        world.events.enabled = false;       // nobody to show them to
+        world.seed = seed;
+        world.restart(true);
+        PlaythroughBot bot = new PlaythroughBot(world, scripted, RandomStreams.get(seed, 0, Subsystem.PLAYER, 1));
+
+        int turn = 0;
+        int deepest = 0;
+        while (!world.gameOver && turn < maxTurns) {
+            bot.turn();
+            turn++;
+            deepest = Math.max(deepest, world.level);
+        }
+        outcomes[gameIndex] = world.gameCompleted ? WON : world.gameOver ? DIED : TIMED_OUT;
+        turns[gameIndex] = turn;
+        swordLevels[gameIndex] = world.swordLevel;
+        deepestLevels[gameIndex] = deepest;
+        world.dispose();
+        allocatedBytes[gameIndex] = getAllocatedBytes() - bytes;
+    }
+
+    private static long getAllocatedBytes(){
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+
+    // sum of the peaks of the heap pools: an upper bound of the peak heap use
+    private static long getPeakHeapBytes(){
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null)
+                peak += pool.getPeakUsage().getUsed();
+        return peak;
+    }
+
+    private static void report(PrintStream out, long wallNanos){
+        long totalTurns = 0;
+        long bytes = 0;
+        for (int i = 0; i < numGames; i++) {
+            totalTurns += turns[i];
+            bytes += allocatedBytes[i];
+        }
+        double seconds = wallNanos / 1e9;
+        out.printf("%d games, %d turns in %.2f s: %.0f turns/s, %.1f games/s%n", numGames, totalTurns, seconds, totalTurns / seconds, numGames / seconds);
+        if (numGames == 0)
+            return;
+        out.printf("allocated %.1f MB per game, %.1f KB per turn; peak heap %.1f MB for %d games at a time%n",
+            bytes / 1e6 / numGames, bytes / 1e3 / Math.max(1, totalTurns), getPeakHeapBytes() / 1e6, numThreads);
+
+        out.println("sword level  games    won   died  timed out  avg turns  avg deepest");
+        int minLevel = Integer.MAX_VALUE;
+        int maxLevel = Integer.MIN_VALUE;
+        for (int level : swordLevels) {
+            minLevel = Math.min(minLevel, level);
+            maxLevel = Math.max(maxLevel, level);
+        }
+        for (int level = minLevel; level <= maxLevel; level++)
+            printLine(out, Integer.toString(level), level);
+        printLine(out, "all", -1);
+    }
+
+    // one line of results for the games with this sword level, or all games if level is -1
+    private static void printLine(PrintStream out, String name, int level){
+        int games = 0;
+        int[] counts = new int[3];
+        long turnSum = 0;
+        long deepestSum = 0;
+        for (int i = 0; i < numGames; i++) {
+            if (level >= 0 && swordLevels[i] != level)
+                continue;
+            games++;
+            counts[outcomes[i]]++;
+            turnSum += turns[i];
+            deepestSum += deepestLevels[i];
+        }
+        if (games == 0)
+            return;
+        out.printf("%-11s %6d %5.1f%% %5.1f%% %9.1f%% %10.0f %12.1f%n", name, games,
+            100.0 * counts[WON] / games, 100.0 * counts[DIED] / games, 100.0 * counts[TIMED_OUT] / games,
+            (double) turnSum / games, (double) deepestSum / games);
+    }
+}
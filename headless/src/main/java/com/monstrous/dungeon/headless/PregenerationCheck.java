@@ -0,0 +1,112 @@
+package com.monstrous.dungeon.headless;
+
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.LevelGenerator;
+import com.monstrous.dungeon.World;
+import com.monstrous.dungeon.map.DungeonMap;
+import com.monstrous.dungeon.map.LevelSnapshot;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+
+/** Generates all levels of a game at the start with LevelGenerator.pregenerate(), the way World does with
+ * Settings.eagerLevelGeneration, and compares that with generating them one after the other from level 0 down.
+ *
+ * Checks that every level built ahead is exactly the level built the usual way: the same tiles and the same population.
+ * Reports per seed the time until level 0 is ready (the first frame), the wall-clock time until all levels are ready
+ * and the time it takes to generate them one after the other.
+ *
+ * Options: --seeds N (default 10)  --first-seed S (default 1)  --depth D (default: sword level + 2)
+ */
+public class PregenerationCheck {
+
+    private static int numSeeds = 10;
+    private static int firstSeed = 1;
+    private static int depth = -1;
+
+    public static void main(String[] args) throws Exception {
+        parseArguments(args);
+
+        HeadlessSupport.init();
+        PrintStream out = System.out;
+        new GameObjectTypes();  // create the type tables before the worker threads use them
+
+        out.println("Generating levels ahead on " + Runtime.getRuntime().availableProcessors() + " cores");
+        out.println(" seed levels  first level ms   all levels ms   added up ms   serial ms  speed-up  same");
+        LevelGenerator generator = new LevelGenerator();
+        long wallSum = 0;
+        long serialSum = 0;
+        boolean allSame = true;
+        for (int seed = firstSeed; seed < firstSeed + numSeeds; seed++) {
+            int swordLevel = World.getSwordLevel(seed);
+            int deepest = depth >= 0 ? depth : swordLevel + 2;
+
+            // ahead: level 0 on this thread while the others are generated on the pool, as in World.create()
+            long start = System.nanoTime();
+            generator.pregenerate(seed, swordLevel, deepest);
+            LevelGenerator.Level first = LevelGenerator.generate(seed, 0, swordLevel, new Array<>(), true, true);
+            long firstNanos = System.nanoTime() - start;
+            long wallNanos = generator.awaitPregeneration();
+            long addedUpNanos = generator.getPregenerationSerialNanos();
+            LevelGenerator.Level[] ahead = new LevelGenerator.Level[deepest + 1];
+            ahead[0] = first;
+            for (int level = 1; level <= deepest; level++)
+                ahead[level] = generator.take(seed, level, true);
+
+            // one after the other
+            boolean same = true;
+            Array<Room> stairsFromAbove = new Array<>();
+            long serialNanos = 0;
+            for (int level = 0; level <= deepest; level++) {
+                long levelStart = System.nanoTime();
+                LevelGenerator.Level serial = LevelGenerator.generate(seed, level, swordLevel, stairsFromAbove, true, level == 0);
+                if (level > 0)
+                    serialNanos += System.nanoTime() - levelStart;
+                stairsFromAbove = serial.stairPortals;
+                if (ahead[level] == null || !sameLevel(ahead[level], serial)) {
+                    same = false;
+                    out.println("  seed " + seed + " level " + level + " differs");
+                }
+            }
+
+            out.printf("%5d %6d %15.1f %15.1f %13.1f %11.1f %9.2f  %s%n", seed, deepest + 1, firstNanos / 1e6, wallNanos / 1e6,
+                addedUpNanos / 1e6, serialNanos / 1e6, (double) serialNanos / Math.max(1, wallNanos), same ? "yes" : "NO");
+            wallSum += wallNanos;
+            serialSum += serialNanos;
+            allSame &= same;
+        }
+        generator.dispose();
+        out.printf("all seeds: %.1f ms ahead vs %.1f ms one after the other, speed-up %.2f%n", wallSum / 1e6, serialSum / 1e6,
+            (double) serialSum / Math.max(1, wallSum));
+        out.println(allSame ? "all levels identical" : "SOME LEVELS DIFFER");
+        System.exit(allSame ? 0 : 1);
+    }
+
+    private static void parseArguments(String[] args){
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seeds":         numSeeds = Integer.parseInt(args[++i]); break;
+                case "--first-seed":    firstSeed = Integer.parseInt(args[++i]); break;
+                case "--depth":         depth = Integer.parseInt(args[++i]); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    private static boolean sameLevel(LevelGenerator.Level a, LevelGenerator.Level b){
+        DungeonMap mapA = a.map;
+        DungeonMap mapB = b.map;
+        if (mapA.mapWidth != mapB.mapWidth || mapA.mapHeight != mapB.mapHeight || mapA.rooms.size != mapB.rooms.size)
+            return false;
+        for (int y = 0; y < mapA.mapHeight; y++)
+            for (int x = 0; x < mapA.mapWidth; x++)
+                if (mapA.getGrid(x, y) != mapB.getGrid(x, y) || mapA.getOrientation(x, y) != mapB.getOrientation(x, y)
+                    || mapA.getRoomCode(x, y) != mapB.getRoomCode(x, y))
+                    return false;
+        return Arrays.equals(LevelSnapshot.write(a.levelData), LevelSnapshot.write(b.levelData));
+    }
+}
@@ -0,0 +1,254 @@
+package com.monstrous.dungeon.headless;
+
+import com.monstrous.dungeon.ChannelSaveStorage;
+import com.monstrous.dungeon.SaveGame;
+import com.monstrous.dungeon.Settings;
+import com.monstrous.dungeon.World;
+import com.badlogic.gdx.utils.Array;
+import com.monstrous.dungeon.map.Direction;
+import com.monstrous.dungeon.map.FogOfWar;
+import com.monstrous.dungeon.map.Room;
+import com.monstrous.dungeon.populus.CharacterStats;
+import com.monstrous.dungeon.populus.GameObject;
+import com.monstrous.dungeon.populus.GameObjectTypes;
+import com.monstrous.dungeon.populus.Inventory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+
+/** Round trip check and timing of the save format, without graphics.
+ *
+ * For each depth, a game is played down to that level by a random walking bot, with the turns run by the TurnScheduler
+ * as in the game. The game is saved to a file and loaded into a new world. The loaded world must have the same values
+ * as the original: world fields, game time and timed effects, the rogue with its stats and inventory, the fog of war and
+ * the objects and enemies of the current level (positions, stats, next action, dormant or not) and the snapshots of the
+ * other levels. Then both worlds play on with the same moves and must stay the same: two levels up, where the rogue
+ * finds the enemies it left asleep (restored from snapshots, in the loaded world even the level next to it), and down again.
+ * Reports save size and save/load time per depth, or the first value that differs.
+ *
+ * Options: --seed S (default 1234)  --turns T (moves per level, default 50)  --depths 0,1,5,... (default 0,1,2,5,10,20)
+ */
+public class SaveGameCheck {
+
+    private static int seed = 1234;
+    private static int turns = 50;
+    private static int[] depths = { 0, 1, 2, 5, 10, 20 };
+    private static final int REPEATS = 20;
+
+    public static void main(String[] args) throws Exception {
+        parseArguments(args);
+
+        HeadlessSupport.init();
+        PrintStream out = System.out;
+        Settings.preGenerateLevels = false;
+        new GameObjectTypes();
+
+        Path file = Files.createTempFile("dungeon", ".sav");
+        ChannelSaveStorage storage = new ChannelSaveStorage(file);
+        HeadlessDungeonScenes scenes = new HeadlessDungeonScenes();
+        boolean allOk = true;
+
+        out.println("depth     bytes   save ms   load ms  round trip");
+        for (int depth : depths) {
+            World world = new World();
+            world.seed = seed;
+            world.restart(true);
+            for (int level = 0; level <= depth; level++) {
+                if (level > 0)
+                    changeLevel(world, true);
+                play(world, scenes, turns);
+            }
+
+            // time save and load, including the file
+            byte[] saved = null;
+            long saveNanos = Long.MAX_VALUE;
+            long loadNanos = Long.MAX_VALUE;
+            World loaded = new World();
+            for (int i = 0; i < REPEATS; i++) {
+                long start = System.nanoTime();
+                saved = SaveGame.write(world);
+                storage.write(saved);
+                long mid = System.nanoTime();
+                SaveGame.read(storage.read(), loaded);
+                long end = System.nanoTime();
+                saveNanos = Math.min(saveNanos, mid - start);
+                loadNanos = Math.min(loadNanos, end - mid);
+            }
+
+            String difference = compare(world, loaded);
+            // play on in both worlds, including a trip up the stairs
+            for (int step = 0; step < 3 && difference == null; step++) {
+                play(world, scenes, turns);
+                play(loaded, scenes, turns);
+                boolean up = step < 2 && world.level > 0;
+                changeLevel(world, !up);
+                changeLevel(loaded, !up);
+                difference = compare(world, loaded);
+                if (difference != null)
+                    difference = "after " + (step + 1) + " more levels: " + difference;
+            }
+            allOk &= difference == null;
+            out.printf("%5d %9d %9.3f %9.3f  %s%n", depth, saved.length, saveNanos / 1e6, loadNanos / 1e6,
+                difference == null ? "ok" : "MISMATCH " + difference);
+            world.dispose();
+            loaded.dispose();
+        }
+        Files.deleteIfExists(file);
+        out.println(allOk ? "all round trips ok" : "round trip FAILED");
+        System.exit(allOk ? 0 : 1);
+    }
+
+    private static void parseArguments(String[] args){
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed":      seed = Integer.parseInt(args[++i]); break;
+                case "--turns":     turns = Integer.parseInt(args[++i]); break;
+                case "--depths":    depths = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray(); break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    // take the stairs and put the rogue in the first room (the bot doesn't look for the stairs)
+    private static void changeLevel(World world, boolean down){
+        if (down)
+            world.levelDown();
+        else
+            world.levelUp();
+        for (Room room : world.map.rooms) {
+            if (!room.isStairWell) {
+                world.rogue.x = room.centre.x;
+                world.rogue.y = room.centre.y;
+                break;
+            }
+        }
+    }
+
+    // random walk of the rogue (kept alive) with the game time running on after every move
+    private static void play(World world, HeadlessDungeonScenes scenes, int turns){
+        scenes.showMap(world.map, world.levelData);
+        scenes.populateMap(world, world.levelData);
+        GameObject rogue = world.rogue;
+        for (int t = 0; t < turns; t++) {
+            rogue.stats.hitPoints = CharacterStats.MAX_HITPOINTS;
+            if (!world.player.isFrozen()) {
+                Direction dir = Direction.values()[rogue.rnd.random(0, 3)];
+                int dx = dir == Direction.EAST ? 1 : dir == Direction.WEST ? -1 : 0;
+                int dy = dir == Direction.NORTH ? 1 : dir == Direction.SOUTH ? -1 : 0;
+                rogue.tryMove(world, dx, dy, dir);
+            }
+            world.player.endTurn();
+            world.gameOver = false;
+            world.events.clear();       // nothing to play them back on
+        }
+    }
+
+    // the first value that differs between the worlds, null if they are the same
+    private static String compare(World a, World b) throws IOException {
+        String difference = compare("world", describeWorld(a), describeWorld(b));
+        if (difference == null)
+            difference = compare("rogue", describe(a.rogue), describe(b.rogue));
+        if (difference == null)
+            difference = compare("fog", describeFog(a.levelData.fog, a.map.rooms.size), describeFog(b.levelData.fog, b.map.rooms.size));
+        Array<GameObject> objectsA = getObjects(a);
+        Array<GameObject> objectsB = getObjects(b);
+        if (difference == null)
+            difference = compare("objects", String.valueOf(objectsA.size), String.valueOf(objectsB.size));
+        for (int i = 0; i < objectsA.size && difference == null; i++)
+            difference = compare("object " + i, describe(objectsA.get(i)), describe(objectsB.get(i)));
+        for (int y = 0; y < a.map.mapHeight && difference == null; y++)     // the rogue is not an occupant
+            for (int x = 0; x < a.map.mapWidth && difference == null; x++)
+                difference = compare("occupant " + x + "," + y,
+                    describe(a.levelData.gameObjects.getOccupant(x, y)), describe(b.levelData.gameObjects.getOccupant(x, y)));
+        if (difference == null)
+            difference = compare("enemies", describeAll(a.enemies.enemies), describeAll(b.enemies.enemies));
+        if (difference == null)
+            difference = compare("dormant", describeDormant(a), describeDormant(b));
+        for (int level = 0; level < a.levelCache.size() && difference == null; level++)
+            if (level != a.level && !Arrays.equals(a.levelCache.getSnapshot(level), b.levelCache.getSnapshot(level)))
+                difference = "snapshot of level " + level;
+        return difference;
+    }
+
+    // the objects on the current level except the rogue, which a restored level doesn't have among its objects
+    private static Array<GameObject> getObjects(World world){
+        Array<GameObject> objects = new Array<>();
+        for (GameObject go : world.levelData.gameObjects.gameObjects)
+            if (!go.type.isPlayer)
+                objects.add(go);
+        return objects;
+    }
+
+    private static String compare(String what, String a, String b){
+        return a.equals(b) ? null : what + ": " + a + " <> " + b;
+    }
+
+    private static String describeWorld(World world) throws IOException {
+        ByteArrayOutputStream effects = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(effects);
+        world.scheduler.writeEffects(out);
+        world.player.write(out);
+        return "seed " + world.seed + " level " + world.level + " sword " + world.swordLevel + " start " + world.startRoomId
+            + " over " + world.gameOver + " completed " + world.gameCompleted + " seconds " + world.secondsElapsed
+            + " levels " + world.levelCache.size() + " time " + world.scheduler.now + " slots " + world.scheduler.size()
+            + " frozen " + world.player.frozen + " fast " + world.player.fast + " digestion " + world.player.digestionSpeed
+            + " effects " + Arrays.toString(effects.toByteArray());
+    }
+
+    private static String describe(GameObject go){
+        if (go == null)
+            return "-";
+        StringBuilder sb = new StringBuilder();
+        sb.append(go.type.name).append(" at ").append(go.x).append(',').append(go.y).append(',').append(go.z)
+            .append(' ').append(go.direction).append(" quantity ").append(go.quantity).append(" protection ").append(go.protection)
+            .append(" damage ").append(go.damage).append(" accuracy ").append(go.accuracy);
+        if (go.attackedBy != null && !go.type.isPlayer)        // the rogue doesn't fight back on its own
+            sb.append(" attacked by ").append(go.attackedBy.type.name).append(" at ").append(go.attackedBy.x).append(',').append(go.attackedBy.y);
+        if (go.rnd != null)
+            sb.append(" rnd ").append(go.rnd.getKey()).append(':').append(go.rnd.getState(0)).append(':').append(go.rnd.getState(1));
+        if (go.type.isEnemy && go.stats.hitPoints > 0)
+            sb.append(go.dormantSince >= 0 ? " dormant since " + go.dormantSince : " next action " + go.nextAction);
+        CharacterStats stats = go.stats;
+        if (stats != null) {
+            sb.append(" hp ").append(stats.hitPoints).append(" xp ").append(stats.experience).append(" food ").append(stats.food)
+                .append(" aggressive ").append(stats.aggressive).append(" awareness ").append(stats.increasedAwareness)
+                .append(" maps ").append(stats.haveBookOfMaps)
+                .append(" armour [").append(describe(stats.armourItem)).append("] weapon [").append(describe(stats.weaponItem)).append(']');
+            for (Inventory.Slot slot : stats.inventory.slots)
+                sb.append(" [").append(slot.count).append(' ').append(describe(slot.object)).append(']');
+        }
+        return sb.toString();
+    }
+
+    private static String describeAll(Array<GameObject> objects){
+        StringBuilder sb = new StringBuilder();
+        for (GameObject go : objects)
+            sb.append(describe(go)).append("; ");
+        return sb.toString();
+    }
+
+    private static String describeDormant(World world){
+        Array<GameObject> sleeping = new Array<>();
+        if (world.activityZones.isCurrent(world))
+            world.activityZones.getDormant(sleeping);
+        return describeAll(sleeping);
+    }
+
+    private static String describeFog(FogOfWar fog, int numRooms){
+        StringBuilder sb = new StringBuilder();
+        for (int y = 0; y < fog.height; y++)
+            for (int x = 0; x < fog.width; x++)
+                sb.append(fog.isTileSeen(x, y) ? '#' : '.');
+        sb.append(' ');
+        for (int id = 0; id < numRooms; id++)
+            sb.append(fog.isRoomSeen(id) ? '#' : '.');
+        return sb.toString();
+    }
+}
@@ -1,10 +1,14 @@
 package com.monstrous.dungeon.lwjgl3;
 
 
+import com.monstrous.dungeon.ChannelSaveStorage;
 import com.monstrous.dungeon.Main;
+import com.monstrous.dungeon.SaveGame;
 import com.monstrous.gdx.webgpu.backends.desktop.WgDesktopApplication;
 import com.monstrous.gdx.webgpu.backends.desktop.WgDesktopApplicationConfiguration;
 
+import java.nio.file.Paths;
+
 /** Launches the desktop (LWJGL3) application. */
 public class Launcher {
     public static void main(String[] args) {
@@ -21,6 +25,9 @@ public class Launcher {
         config.useVsync(true);
         config.samples = 1;
         config.setWindowIcon("libgdx128.png", "libgdx64.png", "libgdx32.png", "libgdx16.png");
+
+        // F5 saves and F9 loads the game (desktop only)
+        SaveGame.storage = new ChannelSaveStorage(Paths.get(System.getProperty("user.home"), ".return-to-the-dungeon", "save.bin"));
         new WgDesktopApplication(new Main(), config);
     }
 }
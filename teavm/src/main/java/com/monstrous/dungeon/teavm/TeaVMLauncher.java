@@ -3,6 +3,7 @@ package com.monstrous.dungeon.teavm;
 import com.github.xpenatan.gdx.backends.teavm.TeaApplicationConfiguration;
 import com.github.xpenatan.gdx.backends.teavm.TeaApplication;
 import com.monstrous.dungeon.Main;
+import com.monstrous.dungeon.Settings;
 import com.monstrous.gdx.webgpu.backends.teavm.WgTeaApplication;
 
 /**
@@ -24,6 +25,9 @@ public class TeaVMLauncher {
         //config.preloadAssets = true;
         //config.useGL30 = true;
 
+        Settings.preGenerateLevels = false;     // no worker threads in the browser
+        Settings.parallelEnemyTurns = false;
+
         new WgTeaApplication(new Main(), config);
     }
 }